@@ -0,0 +1,106 @@
+package es.uvigo.det.labredes.epon;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class benchmarks a DBA cycle of the OLT: the allocation of each DBA algorithm and the sorting of the report array.
+ * Every operation first refills the report array with the same traffic reports (half of the ONUs are active), so the refill benchmark gives the cost to be subtracted from the others.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DbaBenchmark {
+    /**
+     * Number of ONUs.
+     */
+    @Param({"32", "1024", "100000"})
+    public int num_onus;
+
+    /**
+     * DBA algorithm.
+     */
+    @Param({"fixed", "fair", "proportional", "gated", "limited", "limitedExcess"})
+    public String algorithm;
+
+    private DbaAlgorithm dba_algorithm;
+    private long dba_size;
+    private ReportArray report_array;
+    private int[] qsizes;
+
+    @Setup
+    public void setUp() {
+	SimulationConfig config = new SimulationConfig();
+	dba_algorithm = DBA.getAlgorithm(algorithm);
+	dba_size = (long) Math.floor((config.dba_cycle - config.dba_guard_time * num_onus) * config.uplink_capacity);
+	if (dba_size < (long) num_onus * EponSimulator.REPORT_SIZE) {
+	    dba_size = (long) num_onus * EponSimulator.REPORT_SIZE * 4;
+	}
+	report_array = new ReportArray(num_onus);
+	SplittableRandom rng = new SplittableRandom(1);
+	qsizes = new int[num_onus];
+	for (int id = 0; id < num_onus; id++) {
+	    qsizes[id] = rng.nextBoolean() ? 8 * rng.nextInt(64, 200000) : 0;
+	}
+    }
+
+    /**
+     * Adds the traffic reports of the active ONUs to the empty report array.
+     */
+    private void refillReports() {
+	report_array.clear();
+	for (int id = 0; id < num_onus; id++) {
+	    if (qsizes[id] > 0) {
+		report_array.addReport(id, qsizes[id]);
+	    }
+	}
+    }
+
+    /**
+     * Refills the report array.
+     */
+    @Benchmark
+    public ReportArray refill() {
+	refillReports();
+	return report_array;
+    }
+
+    /**
+     * Refills the report array and runs the DBA algorithm.
+     */
+    @Benchmark
+    public ReportArray allocate() {
+	refillReports();
+	dba_algorithm.allocate(dba_size, report_array);
+	return report_array;
+    }
+
+    /**
+     * Refills the report array, runs the DBA algorithm and sorts the reports by transmission size, as the OLT does in each DBA cycle.
+     */
+    @Benchmark
+    public ReportArray allocateAndSort() {
+	refillReports();
+	dba_algorithm.allocate(dba_size, report_array);
+	report_array.sortReports("onu_tsize", false);
+	return report_array;
+    }
+}
@@ -0,0 +1,111 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class benchmarks EventList.handleEvent with the reflective dispatch of Event class and with the typed dispatch implemented by the simulator events.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+    /**
+     * Object that handles the benchmark events.
+     */
+    public static class Counter {
+	public long count;
+
+	public void handleCountEvent(CountEvent event) {
+	    count++;
+	}
+    }
+
+    /**
+     * Event handled through the reflective dispatch of Event class.
+     */
+    public static class CountEvent extends Event<Counter> {
+	public CountEvent(Counter counter) {
+	    super(0.0, counter, "handleCountEvent");
+	}
+
+	public void printEvent(PrintStream out) {
+	}
+
+	public void traceEvent(TraceWriter trace) {
+	}
+
+	public int getType() {
+	    return TraceWriter.GATE_MESSAGES;
+	}
+    }
+
+    /**
+     * Event handled through a typed dispatch, as the simulator events.
+     */
+    public static class TypedCountEvent extends CountEvent {
+	public TypedCountEvent(Counter counter) {
+	    super(counter);
+	}
+
+	protected String getUsualHandlerMethod() {
+	    return "handleCountEvent";
+	}
+
+	public void dispatch() {
+	    if (usual_handler) {
+		handler.handleCountEvent(this);
+	    } else {
+		super.dispatch();
+	    }
+	}
+    }
+
+    private EventList event_list;
+    private Counter counter;
+    private CountEvent reflective_event;
+    private CountEvent typed_event;
+
+    @Setup
+    public void setUp() {
+	event_list = new EventList(Double.MAX_VALUE, "heap");
+	counter = new Counter();
+	reflective_event = new CountEvent(counter);
+	typed_event = new TypedCountEvent(counter);
+    }
+
+    /**
+     * Handles an event through reflection.
+     */
+    @Benchmark
+    public long reflective() {
+	event_list.handleEvent(reflective_event);
+	return counter.count;
+    }
+
+    /**
+     * Handles an event through its typed dispatch method.
+     */
+    @Benchmark
+    public long typed() {
+	event_list.handleEvent(typed_event);
+	return counter.count;
+    }
+}
@@ -0,0 +1,68 @@
+package es.uvigo.det.labredes.epon;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class benchmarks the event list engines with the hold model: each operation removes the earliest event and adds it again at a later random time, so the number of pending events stays constant.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventListBenchmark {
+    /**
+     * Number of pending events.
+     */
+    @Param({"16", "1024", "65536"})
+    public int depth;
+
+    /**
+     * Event list engine.
+     */
+    @Param({"list", "heap", "calendar"})
+    public String engine;
+
+    private EventList event_list;
+    private SplittableRandom rng;
+    private double mean_increment;
+
+    @Setup
+    public void setUp() {
+	event_list = new EventList(Double.MAX_VALUE, engine);
+	rng = new SplittableRandom(1);
+	// Same density of events as a DBA cycle of 1.5 ms with one pending event per ONU
+	mean_increment = 1.5e-3;
+	for (int i = 0; i < depth; i++) {
+	    event_list.addEvent(new GateMessagesEvent(rng.nextDouble() * mean_increment, null, "handleGateMessagesEvent"));
+	}
+    }
+
+    /**
+     * Removes the earliest event and adds it again.
+     */
+    @Benchmark
+    public Event hold() {
+	Event event = event_list.getNextEvent(true);
+	event.time += -mean_increment * Math.log(1.0 - rng.nextDouble());
+	event_list.addEvent(event);
+	return event;
+    }
+}
@@ -0,0 +1,83 @@
+package es.uvigo.det.labredes.epon;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class benchmarks the generation of packet arrivals by each traffic generator at a high packet rate (10 Gb/s of 64-byte packets), one by one and in blocks.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrafficGeneratorBenchmark {
+    /**
+     * Number of packet arrivals generated at once by fillNextArrivals.
+     */
+    private static final int ARRIVALS = 1024;
+
+    /**
+     * Traffic distribution.
+     */
+    @Param({"deterministic", "poisson", "pareto"})
+    public String distribution;
+
+    /**
+     * Random number generator algorithm (see RandomStreams).
+     */
+    @Param({"Xoshiro256PlusPlus", "legacy"})
+    public String rng;
+
+    private TrafficGenerator traffic_generator;
+    private double[] arrivals = new double[ARRIVALS];
+
+    @Setup
+    public void setUp() {
+	long rate = 10000000000L;
+	int size = 8 * 64;
+	if (distribution.equals("deterministic")) {
+	    traffic_generator = new DeterministicTrafficGenerator(rate, size);
+	} else if (distribution.equals("poisson")) {
+	    traffic_generator = new PoissonTrafficGenerator(rate, size);
+	    ((PoissonTrafficGenerator) traffic_generator).setRandomGenerator(RandomStreams.createStreams(rng, 1, 0, 1)[0]);
+	} else {
+	    traffic_generator = new ParetoTrafficGenerator(rate, size);
+	    ((ParetoTrafficGenerator) traffic_generator).setRandomGenerator(RandomStreams.createStreams(rng, 1, 0, 1)[0]);
+	}
+    }
+
+    /**
+     * Returns the next packet arrival.
+     */
+    @Benchmark
+    public double getNextArrival() {
+	return traffic_generator.getNextArrival();
+    }
+
+    /**
+     * Returns the last of a block of packet arrivals generated at once.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ARRIVALS)
+    public double fillNextArrivals() {
+	traffic_generator.fillNextArrivals(arrivals, ARRIVALS);
+	return arrivals[ARRIVALS - 1];
+    }
+}
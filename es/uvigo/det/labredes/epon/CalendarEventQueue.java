@@ -0,0 +1,213 @@
+package es.uvigo.det.labredes.epon;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * This class implements an event queue as a calendar queue (R. Brown, Communications of the ACM, 1988).
+ * Pending events are spread over an array of buckets, each one covering an interval of time of fixed width and containing its events sorted by event time.
+ * The number of buckets and their width are adjusted as the queue grows and shrinks, so insertions and extractions take O(1) expected time.
+ * Events occurring at the same instant are ordered by their sequence number, so they are returned in FIFO order.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class CalendarEventQueue implements EventQueue {
+    private static final int MIN_BUCKETS = 16;
+    private static final int WIDTH_SAMPLES = 25;
+
+    private Event[][] buckets;
+    private int[] bucket_sizes;
+    private long bucket_width;
+    private int size;
+    /**
+     * The index of the earliest bucket of time that may contain pending events.
+     */
+    private long current_bucket;
+
+    /**
+     * Creates a new calendar queue whose buckets initially cover the specified interval of time.
+     *
+     * @param width initial width of the buckets (in ticks)
+     */
+    public CalendarEventQueue(long width) {
+	if (width <= 0) {
+	    throw new SimulationException("Invalid calendar queue bucket width!");
+	}
+	bucket_width = width;
+	size = 0;
+	current_bucket = 0;
+	allocateBuckets(MIN_BUCKETS);
+    }
+
+    private void allocateBuckets(int n) {
+	buckets = new Event[n][];
+	bucket_sizes = new int[n];
+    }
+
+    private long bucketOf(Event event) {
+	return event.tick / bucket_width;
+    }
+
+    public boolean add(Event event) {
+	if (size + 1 > 2 * buckets.length) {
+	    resize(2 * buckets.length);
+	}
+	insert(event);
+	size++;
+	return true;
+    }
+
+    /**
+     * Inserts the specified event in its bucket keeping the bucket sorted.
+     */
+    private void insert(Event event) {
+	long b = bucketOf(event);
+	if (size == 0 || b < current_bucket) {
+	    current_bucket = b;
+	}
+	int i = (int) (b % buckets.length);
+	Event[] bucket = buckets[i];
+	int n = bucket_sizes[i];
+	if (bucket == null) {
+	    bucket = buckets[i] = new Event[4];
+	} else if (n == bucket.length) {
+	    bucket = buckets[i] = Arrays.copyOf(bucket, 2 * n);
+	}
+	// Events are usually added in increasing time order, so the bucket is scanned from its tail
+	int j = n;
+	while (j > 0 && event.precedes(bucket[j - 1])) {
+	    bucket[j] = bucket[j - 1];
+	    j--;
+	}
+	bucket[j] = event;
+	bucket_sizes[i] = n + 1;
+    }
+
+    public Event peek() {
+	int i = findFirst();
+	return i < 0 ? null : buckets[i][0];
+    }
+
+    public Event poll() {
+	int i = findFirst();
+	if (i < 0) {
+	    return null;
+	}
+	Event event = removeFromBucket(i, 0);
+	if (size < buckets.length / 2 && buckets.length > MIN_BUCKETS) {
+	    resize(buckets.length / 2);
+	}
+	return event;
+    }
+
+    public boolean remove(Event event) {
+	if (event == null || size == 0) {
+	    return false;
+	}
+	int i = (int) (bucketOf(event) % buckets.length);
+	Event[] bucket = buckets[i];
+	for (int j = 0; j < bucket_sizes[i]; j++) {
+	    if (bucket[j] == event) {
+		removeFromBucket(i, j);
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public Event[] toArray() {
+	Event[] events = new Event[size];
+	int k = 0;
+	for (int i = 0; i < buckets.length; i++) {
+	    for (int j = 0; j < bucket_sizes[i]; j++) {
+		events[k++] = buckets[i][j];
+	    }
+	}
+	Arrays.sort(events, new Comparator<Event>() {
+		public int compare(Event e1, Event e2) {
+		    return e1.precedes(e2) ? -1 : (e2.precedes(e1) ? 1 : 0);
+		}
+	    });
+	return events;
+    }
+
+    private Event removeFromBucket(int i, int j) {
+	Event[] bucket = buckets[i];
+	Event event = bucket[j];
+	int n = --bucket_sizes[i];
+	System.arraycopy(bucket, j + 1, bucket, j, n - j);
+	bucket[n] = null;
+	size--;
+	return event;
+    }
+
+    /**
+     * Returns the position of the bucket that contains the earliest event or -1 if this queue is empty.
+     */
+    private int findFirst() {
+	if (size == 0) {
+	    return -1;
+	}
+	// Scans one year of the calendar looking for an event in its own bucket of time
+	int n = buckets.length;
+	for (int k = 0; k < n; k++) {
+	    int i = (int) (current_bucket % n);
+	    if (bucket_sizes[i] > 0 && bucketOf(buckets[i][0]) <= current_bucket) {
+		return i;
+	    }
+	    current_bucket++;
+	}
+	// All the pending events are more than one year ahead: direct search of the earliest one
+	int first = -1;
+	for (int i = 0; i < n; i++) {
+	    if (bucket_sizes[i] > 0 && (first < 0 || buckets[i][0].precedes(buckets[first][0]))) {
+		first = i;
+	    }
+	}
+	current_bucket = bucketOf(buckets[first][0]);
+	return first;
+    }
+
+    /**
+     * Rebuilds this calendar queue with the specified number of buckets and a bucket width adapted to the current separation between events.
+     */
+    private void resize(int n) {
+	Event[] events = toArray();
+	long width = estimateWidth(events);
+	if (width > 0) {
+	    bucket_width = width;
+	}
+	allocateBuckets(n);
+	size = 0;
+	for (int k = 0; k < events.length; k++) {
+	    insert(events[k]);
+	    size++;
+	}
+    }
+
+    /**
+     * Estimates the bucket width as three times the average separation between the earliest events, discarding unusually large separations.
+     */
+    private static long estimateWidth(Event[] events) {
+	int samples = Math.min(events.length, WIDTH_SAMPLES);
+	if (samples < 2) {
+	    return 0;
+	}
+	double average = (double) (events[samples - 1].tick - events[0].tick) / (samples - 1);
+	long sum = 0;
+	int count = 0;
+	for (int k = 1; k < samples; k++) {
+	    long separation = events[k].tick - events[k - 1].tick;
+	    if (separation <= 2 * average) {
+		sum += separation;
+		count++;
+	    }
+	}
+	return count > 0 ? 3 * sum / count : 0;
+    }
+}
@@ -1,15 +1,112 @@
 package es.uvigo.det.labredes.epon;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
 /**
- * This class implements DBA algorithms.
+ * This class implements DBA algorithms and keeps the registry of the available DbaAlgorithm implementations.
  *
  * @author Sergio Herreria-Alonso 
  * @version 1.0
  */
 public final class DBA {
+    /**
+     * The available DBA algorithms indexed by name (null until the first lookup).
+     */
+    private static Map<String, DbaAlgorithm> algorithms;
 
     private DBA() {}
 
+    /**
+     * DBA algorithm implemented by a static method of this class.
+     */
+    private static abstract class BuiltinAlgorithm implements DbaAlgorithm {
+	private String name;
+	private boolean adaptive_cycle;
+
+	BuiltinAlgorithm(String name, boolean adaptive_cycle) {
+	    this.name = name;
+	    this.adaptive_cycle = adaptive_cycle;
+	}
+
+	public String getName() {
+	    return name;
+	}
+
+	public boolean hasAdaptiveCycle() {
+	    return adaptive_cycle;
+	}
+    }
+
+    /**
+     * Returns the built-in DBA algorithms followed by those found on the classpath.
+     */
+    private static Map<String, DbaAlgorithm> loadAlgorithms() {
+	DbaAlgorithm[] builtins = {
+	    new BuiltinAlgorithm("fixed", false) {
+		public void allocate(long dba_size, ReportArray report_array) {
+		    fixedAllocation(dba_size, report_array);
+		}
+	    },
+	    new BuiltinAlgorithm("fair", false) {
+		public void allocate(long dba_size, ReportArray report_array) {
+		    fairAllocation(dba_size, report_array);
+		}
+	    },
+	    new BuiltinAlgorithm("proportional", false) {
+		public void allocate(long dba_size, ReportArray report_array) {
+		    proportionalAllocation(dba_size, report_array);
+		}
+	    },
+	    new BuiltinAlgorithm("gated", true) {
+		public void allocate(long dba_size, ReportArray report_array) {
+		    gatedAllocation(report_array);
+		}
+	    },
+	    new BuiltinAlgorithm("limited", true) {
+		public void allocate(long dba_size, ReportArray report_array) {
+		    limitedAllocation(dba_size, report_array);
+		}
+	    },
+	    new BuiltinAlgorithm("limitedExcess", true) {
+		public void allocate(long dba_size, ReportArray report_array) {
+		    limitedExcessDistributionAllocation(dba_size, report_array);
+		}
+	    }
+	};
+	Map<String, DbaAlgorithm> map = new LinkedHashMap<String, DbaAlgorithm>();
+	for (DbaAlgorithm algorithm : builtins) {
+	    map.put(algorithm.getName(), algorithm);
+	}
+	try {
+	    for (DbaAlgorithm algorithm : ServiceLoader.load(DbaAlgorithm.class)) {
+		if (!map.containsKey(algorithm.getName())) {
+		    map.put(algorithm.getName(), algorithm);
+		}
+	    }
+	} catch (ServiceConfigurationError e) {
+	    throw new SimulationException("Invalid DBA algorithm provider: " + e.getMessage());
+	}
+	return map;
+    }
+
+    /**
+     * Returns the DBA algorithm with the specified name.
+     * The built-in algorithms are fixed, fair, proportional, gated, limited and limitedExcess. Algorithms found on the classpath cannot replace them.
+     *
+     * @param name the name of the DBA algorithm
+     * @return the DBA algorithm with the specified name or null if there is no such algorithm
+     * @throws SimulationException if a DBA algorithm provider of the classpath cannot be loaded
+     */
+    public static synchronized DbaAlgorithm getAlgorithm(String name) {
+	if (algorithms == null) {
+	    algorithms = loadAlgorithms();
+	}
+	return algorithms.get(name);
+    }
+
     /**
      * Shares the available bandwidth among all active ONUs in a fair manner.
      *
@@ -17,20 +114,16 @@ public final class DBA {
      * @param report_array the report array to be handled
      */
     public static void fairAllocation(long dba_size, ReportArray report_array) {
-	long remaining_dba_size = dba_size - (EponSimulator.num_onus - report_array.num_active_onus) * EponSimulator.REPORT_SIZE;
+	long remaining_dba_size = dba_size - (report_array.getNumOnus() - report_array.num_active_onus) * EponSimulator.REPORT_SIZE;
 	int fair_sharing = report_array.num_active_onus > 0 ? (int) (remaining_dba_size / report_array.num_active_onus) : 0;
-	Report report;
-	for (int id = 0; id < EponSimulator.num_onus; id++) {
-	    report = report_array.getReport(id);
-	    if (report != null) {
-		report.onu_tsize = report.onu_qsize > 0 ? fair_sharing : EponSimulator.REPORT_SIZE;
-		report_array.overall_tsize += report.onu_tsize;
-	    } else {
-		report = new Report(id, 0);
-		report.onu_tsize = EponSimulator.REPORT_SIZE;
-		report_array.addReport(report);
-	    }
+	int[] qsizes = report_array.getQueueSizes();
+	int[] tsizes = report_array.getTransmissionSizes();
+	for (int i = 0; i < report_array.getNumReports(); i++) {
+	    int id = report_array.getReportingOnu(i);
+	    tsizes[id] = qsizes[id] > 0 ? fair_sharing : EponSimulator.REPORT_SIZE;
+	    report_array.overall_tsize += tsizes[id];
 	}
+	report_array.addEmptyReports(EponSimulator.REPORT_SIZE);
     }
 
     /**
@@ -40,19 +133,14 @@ public final class DBA {
      * @param report_array the report array to be handled
      */
     public static void fixedAllocation(long dba_size, ReportArray report_array) {
-	int fixed_sharing = (int) (dba_size / EponSimulator.num_onus);
-	Report report;
-	for (int id = 0; id < EponSimulator.num_onus; id++) {
-	    report = report_array.getReport(id);
-	    if (report != null) {
-		report.onu_tsize = fixed_sharing;
-		report_array.overall_tsize += report.onu_tsize;
-	    } else {
-		report = new Report(id, 0);
-		report.onu_tsize = fixed_sharing;
-		report_array.addReport(report);
-	    }
+	int fixed_sharing = (int) (dba_size / report_array.getNumOnus());
+	int[] tsizes = report_array.getTransmissionSizes();
+	for (int i = 0; i < report_array.getNumReports(); i++) {
+	    int id = report_array.getReportingOnu(i);
+	    tsizes[id] = fixed_sharing;
+	    report_array.overall_tsize += tsizes[id];
 	}
+	report_array.addEmptyReports(fixed_sharing);
     }
 
     /**
@@ -61,18 +149,14 @@ public final class DBA {
      * @param report_array the report array to be handled
      */
     public static void gatedAllocation(ReportArray report_array) {
-	Report report;
-	for (int id = 0; id < EponSimulator.num_onus; id++) {
-	    report = report_array.getReport(id);
-	    if (report != null) {
-		report.onu_tsize = report.onu_qsize + EponSimulator.REPORT_SIZE;
-		report_array.overall_tsize += report.onu_tsize;
-	    } else {
-		report = new Report(id, 0);
-		report.onu_tsize = EponSimulator.REPORT_SIZE;
-		report_array.addReport(report);
-	    }
+	int[] qsizes = report_array.getQueueSizes();
+	int[] tsizes = report_array.getTransmissionSizes();
+	for (int i = 0; i < report_array.getNumReports(); i++) {
+	    int id = report_array.getReportingOnu(i);
+	    tsizes[id] = qsizes[id] + EponSimulator.REPORT_SIZE;
+	    report_array.overall_tsize += tsizes[id];
 	}
+	report_array.addEmptyReports(EponSimulator.REPORT_SIZE);
     }
 
     /**
@@ -82,20 +166,16 @@ public final class DBA {
      * @param report_array the report array to be handled
      */
     public static void limitedAllocation(long dba_size, ReportArray report_array) {
-	//int limited_sharing = (int) (dba_size / EponSimulator.num_onus);
+	//int limited_sharing = (int) (dba_size / report_array.getNumOnus());
 	int limited_sharing = 120000 + EponSimulator.REPORT_SIZE;
-	Report report;
-	for (int id = 0; id < EponSimulator.num_onus; id++) {
-	    report = report_array.getReport(id);
-	    if (report != null) {
-		report.onu_tsize = report.onu_qsize + EponSimulator.REPORT_SIZE > limited_sharing ? limited_sharing : report.onu_qsize + EponSimulator.REPORT_SIZE;
-		report_array.overall_tsize += report.onu_tsize;
-	    } else {
-		report = new Report(id, 0);
-		report.onu_tsize = EponSimulator.REPORT_SIZE;
-		report_array.addReport(report);
-	    }
+	int[] qsizes = report_array.getQueueSizes();
+	int[] tsizes = report_array.getTransmissionSizes();
+	for (int i = 0; i < report_array.getNumReports(); i++) {
+	    int id = report_array.getReportingOnu(i);
+	    tsizes[id] = qsizes[id] + EponSimulator.REPORT_SIZE > limited_sharing ? limited_sharing : qsizes[id] + EponSimulator.REPORT_SIZE;
+	    report_array.overall_tsize += tsizes[id];
 	}
+	report_array.addEmptyReports(EponSimulator.REPORT_SIZE);
     }
 
     /**
@@ -106,36 +186,32 @@ public final class DBA {
      * @param report_array the report array to be handled
      */
     public static void limitedExcessDistributionAllocation(long dba_size, ReportArray report_array) {
-	//int limited_sharing = (int) (dba_size / EponSimulator.num_onus);
+	//int limited_sharing = (int) (dba_size / report_array.getNumOnus());
 	int limited_sharing = 120000 + EponSimulator.REPORT_SIZE;
 	int overall_excess = 0;
 	int num_overloaded_onus = 0;
-	Report report;
-	for (int id = 0; id < EponSimulator.num_onus; id++) {
-	    report = report_array.getReport(id);
-	    if (report != null) {
-		if (report.onu_qsize + EponSimulator.REPORT_SIZE < limited_sharing) {
-		    report.onu_tsize = report.onu_qsize + EponSimulator.REPORT_SIZE;
-		    overall_excess += limited_sharing - report.onu_tsize;
-		} else {
-		    report.onu_tsize = limited_sharing;
-		    num_overloaded_onus++;
-		}
-		report_array.overall_tsize += report.onu_tsize;
+	int[] qsizes = report_array.getQueueSizes();
+	int[] tsizes = report_array.getTransmissionSizes();
+	for (int i = 0; i < report_array.getNumReports(); i++) {
+	    int id = report_array.getReportingOnu(i);
+	    if (qsizes[id] + EponSimulator.REPORT_SIZE < limited_sharing) {
+		tsizes[id] = qsizes[id] + EponSimulator.REPORT_SIZE;
+		overall_excess += limited_sharing - tsizes[id];
 	    } else {
-		report = new Report(id, 0);
-		report.onu_tsize = EponSimulator.REPORT_SIZE;
-		report_array.addReport(report);
-		overall_excess += limited_sharing - report.onu_tsize;
+		tsizes[id] = limited_sharing;
+		num_overloaded_onus++;
 	    }
+	    report_array.overall_tsize += tsizes[id];
 	}
+	report_array.addEmptyReports(EponSimulator.REPORT_SIZE);
+	overall_excess += report_array.getNumEmptyReports() * (limited_sharing - EponSimulator.REPORT_SIZE);
 	if (num_overloaded_onus > 0 && overall_excess > 0) {
 	    int excess_sharing = limited_sharing + overall_excess / num_overloaded_onus;
-	    for (int id = 0; id < EponSimulator.num_onus; id++) {
-		report = report_array.getReport(id);
-		if (report.onu_tsize == limited_sharing) {
-		    report.onu_tsize = report.onu_qsize + EponSimulator.REPORT_SIZE > excess_sharing ? excess_sharing : report.onu_qsize + EponSimulator.REPORT_SIZE;
-		    report_array.overall_tsize += report.onu_tsize - limited_sharing;
+	    for (int i = 0; i < report_array.getNumReports(); i++) {
+		int id = report_array.getReportingOnu(i);
+		if (tsizes[id] == limited_sharing) {
+		    tsizes[id] = qsizes[id] + EponSimulator.REPORT_SIZE > excess_sharing ? excess_sharing : qsizes[id] + EponSimulator.REPORT_SIZE;
+		    report_array.overall_tsize += tsizes[id] - limited_sharing;
 		}
 	    }
 	}
@@ -148,21 +224,17 @@ public final class DBA {
      * @param report_array the report array to be handled
      */
     public static void proportionalAllocation(long dba_size, ReportArray report_array) {
-	long remaining_dba_size = dba_size - (EponSimulator.num_onus - report_array.num_active_onus) * EponSimulator.REPORT_SIZE;
-	Report report;
-	for (int id = 0; id < EponSimulator.num_onus; id++) {
-	    report = report_array.getReport(id);
-	    if (report != null) {
-		report.onu_tsize = (int) Math.round((double) report.onu_qsize * remaining_dba_size / report_array.overall_qsize);
-		if (report.onu_tsize < EponSimulator.REPORT_SIZE) {
-		    report.onu_tsize = EponSimulator.REPORT_SIZE;
-		}
-		report_array.overall_tsize += report.onu_tsize;
-	    } else {
-		report = new Report(id, 0);
-		report.onu_tsize = EponSimulator.REPORT_SIZE;
-		report_array.addReport(report);
+	long remaining_dba_size = dba_size - (report_array.getNumOnus() - report_array.num_active_onus) * EponSimulator.REPORT_SIZE;
+	int[] qsizes = report_array.getQueueSizes();
+	int[] tsizes = report_array.getTransmissionSizes();
+	for (int i = 0; i < report_array.getNumReports(); i++) {
+	    int id = report_array.getReportingOnu(i);
+	    tsizes[id] = (int) Math.round((double) qsizes[id] * remaining_dba_size / report_array.overall_qsize);
+	    if (tsizes[id] < EponSimulator.REPORT_SIZE) {
+		tsizes[id] = EponSimulator.REPORT_SIZE;
 	    }
+	    report_array.overall_tsize += tsizes[id];
 	}
+	report_array.addEmptyReports(EponSimulator.REPORT_SIZE);
     }
 }
@@ -0,0 +1,35 @@
+package es.uvigo.det.labredes.epon;
+
+/**
+ * This interface represents the DBA algorithms used by the OLT to size the transmission slots of the ONUs.
+ * Algorithms are looked up by name with DBA.getAlgorithm. Besides the algorithms implemented by DBA class, any implementation listed in a META-INF/services/es.uvigo.det.labredes.epon.DbaAlgorithm file of the classpath is available.
+ * The same instance is shared by all the simulations, so implementations must not keep any state between calls.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public interface DbaAlgorithm {
+    /**
+     * Returns the name used to select this DBA algorithm (see SimulationConfig.dba_algorithm).
+     *
+     * @return the name of this DBA algorithm
+     */
+    public String getName();
+
+    /**
+     * Returns true if the DBA cycle is adapted to the data granted in each cycle.
+     * If true, the length of the DBA cycle is recomputed after each allocation and dozing ONUs wake up as soon as their queue threshold is crossed or their refresh timeout expires, instead of at the beginning of a DBA cycle.
+     *
+     * @return true if this DBA algorithm adapts the length of the DBA cycle
+     */
+    public boolean hasAdaptiveCycle();
+
+    /**
+     * Sizes the transmission slot of each reporting ONU (the transmission size column) from the traffic reports of the report array and updates its overall amount of data to transmit.
+     * ONUs that did not send a traffic report must be given a common transmission size with ReportArray.addEmptyReports, so the allocation only visits the reporting ONUs.
+     *
+     * @param dba_size maximum amount of data that can be sent from all the ONUs to the OLT in a DBA cycle
+     * @param report_array the report array to be handled
+     */
+    public void allocate(long dba_size, ReportArray report_array);
+}
@@ -0,0 +1,44 @@
+package es.uvigo.det.labredes.epon;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This class represents the Java Flight Recorder event emitted by the OLT for each DBA cycle, whose duration is the time spent by the DBA algorithm and by the scheduling of the granted transmission slots.
+ * It is disabled by default, so it must be enabled in the recording settings (e.g. -XX:StartFlightRecording:+es.uvigo.det.labredes.epon.DbaCycle#enabled=true).
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+@Name("es.uvigo.det.labredes.epon.DbaCycle")
+@Label("DBA Cycle")
+@Category("EPON Simulator")
+@Description("Allocation and scheduling of the transmission slots of a DBA cycle by the OLT")
+@Enabled(false)
+@StackTrace(false)
+public class DbaCycleFlightEvent extends jdk.jfr.Event {
+    /**
+     * The instant of the gate messages event (in seconds of simulated time).
+     */
+    @Label("Simulation Time")
+    public double simulation_time;
+    /**
+     * The length of the next DBA cycle (in seconds of simulated time).
+     */
+    @Label("Cycle Length")
+    public double cycle_length;
+    /**
+     * The overall amount of data granted to the ONUs (in bits).
+     */
+    @Label("Granted Bits")
+    public long granted_bits;
+    /**
+     * The number of ONUs that sent a traffic report in the last DBA cycle.
+     */
+    @Label("Active ONUs")
+    public int active_onus;
+}
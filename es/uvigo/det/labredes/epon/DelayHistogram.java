@@ -0,0 +1,182 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This class implements a histogram of packet delays with log-linear buckets.
+ * Delays are recorded in nanoseconds: values below 128 ns have their own bucket and each power of two above is split into 64 buckets of equal width, so any percentile is estimated with a relative error below 1%.
+ * Recording a delay takes constant time and the memory used only depends on the maximum delay recorded.
+ * Histograms can be merged, for instance to obtain the delay distribution of a whole EPON from those of its ONUs.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class DelayHistogram {
+    /**
+     * Unit of the recorded values (1 ns).
+     */
+    public static final double UNIT = 1e-9;
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+
+    private long[] counts;
+    private long total_count;
+    private long maximum_value;
+
+    /**
+     * Creates an empty histogram.
+     */
+    public DelayHistogram() {
+	counts = new long[SUB_BUCKET_COUNT];
+	total_count = 0;
+	maximum_value = 0;
+    }
+
+    /**
+     * Returns the index of the bucket that contains the specified value.
+     */
+    private static int getIndex(long value) {
+	if (value < SUB_BUCKET_COUNT) {
+	    return (int) value;
+	}
+	int magnitude = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+	return magnitude * SUB_BUCKET_HALF_COUNT + (int) (value >>> magnitude);
+    }
+
+    /**
+     * Returns the lowest value contained in the bucket with the specified index.
+     */
+    private static long getLowestValue(int index) {
+	if (index < SUB_BUCKET_COUNT) {
+	    return index;
+	}
+	int magnitude = index / SUB_BUCKET_HALF_COUNT - 1;
+	return (long) (index - magnitude * SUB_BUCKET_HALF_COUNT) << magnitude;
+    }
+
+    /**
+     * Returns the number of values contained in the bucket with the specified index.
+     */
+    private static long getWidth(int index) {
+	return index < SUB_BUCKET_COUNT ? 1 : 1L << (index / SUB_BUCKET_HALF_COUNT - 1);
+    }
+
+    /**
+     * Makes room for at least the specified number of buckets.
+     */
+    private void ensureCapacity(int length) {
+	if (length > counts.length) {
+	    counts = Arrays.copyOf(counts, Math.max(length, 2 * counts.length));
+	}
+    }
+
+    /**
+     * Records the specified delay.
+     *
+     * @param delay the delay (in seconds)
+     */
+    public void recordDelay(double delay) {
+	long value = delay > 0 ? (long) (delay / UNIT + 0.5) : 0;
+	int index = getIndex(value);
+	if (index >= counts.length) {
+	    ensureCapacity(index + 1);
+	}
+	counts[index]++;
+	total_count++;
+	if (value > maximum_value) {
+	    maximum_value = value;
+	}
+    }
+
+    /**
+     * Adds the delays recorded in the specified histogram to this histogram.
+     *
+     * @param other the histogram to be merged
+     */
+    public void merge(DelayHistogram other) {
+	ensureCapacity(other.counts.length);
+	for (int i = 0; i < other.counts.length; i++) {
+	    counts[i] += other.counts[i];
+	}
+	total_count += other.total_count;
+	maximum_value = Math.max(maximum_value, other.maximum_value);
+    }
+
+    /**
+     * Returns the number of delays recorded.
+     *
+     * @return the number of delays recorded
+     */
+    public long getTotalCount() {
+	return total_count;
+    }
+
+    /**
+     * Returns an estimation of the specified percentile of the recorded delays.
+     * The estimation is the middle of the bucket that contains the percentile, limited to the maximum delay recorded.
+     *
+     * @param percentile the percentile (between 0 and 100)
+     * @return the delay (in seconds) below which the specified percentage of delays fall or NaN if no delay was recorded
+     */
+    public double getPercentile(double percentile) {
+	if (total_count == 0) {
+	    return Double.NaN;
+	}
+	long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total_count));
+	long count = 0;
+	int i = 0;
+	while (i < counts.length - 1 && (count += counts[i]) < rank) {
+	    i++;
+	}
+	double value = getLowestValue(i) + (getWidth(i) - 1) / 2.0;
+	return Math.min(value, maximum_value) * UNIT;
+    }
+
+    /**
+     * Writes the recorded delays on the specified checkpoint stream (see Simulation.writeCheckpoint).
+     * Only the buckets that contain any delay are written.
+     *
+     * @param out the checkpoint stream
+     * @throws IOException if the delays cannot be written
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+	int num_buckets = 0;
+	for (int i = 0; i < counts.length; i++) {
+	    if (counts[i] > 0) {
+		num_buckets++;
+	    }
+	}
+	out.writeInt(counts.length);
+	out.writeInt(num_buckets);
+	for (int i = 0; i < counts.length; i++) {
+	    if (counts[i] > 0) {
+		out.writeInt(i);
+		out.writeLong(counts[i]);
+	    }
+	}
+	out.writeLong(total_count);
+	out.writeLong(maximum_value);
+    }
+
+    /**
+     * Replaces the recorded delays with those read from the specified checkpoint stream.
+     *
+     * @param in the checkpoint stream
+     * @throws IOException if the delays cannot be read
+     */
+    public void readState(DataInputStream in) throws IOException {
+	counts = new long[in.readInt()];
+	int num_buckets = in.readInt();
+	for (int i = 0; i < num_buckets; i++) {
+	    int index = in.readInt();
+	    counts[index] = in.readLong();
+	}
+	total_count = in.readLong();
+	maximum_value = in.readLong();
+    }
+}
@@ -18,12 +18,11 @@ public class DeterministicTrafficGenerator extends TrafficGenerator {
     }
 
     /**
-     * Returns the instant at which the next packet arrives.
+     * Returns the time elapsed between the last packet arrival and the next one.
      *
-     * @return instant at which the next packet arrives (in seconds)
+     * @return time between consecutive packet arrivals (in seconds)
      */
-    public double getNextArrival() {
-	arrival_time += 1.0 / packet_rate;
-	return arrival_time;
+    protected double getNextInterarrivalTime() {
+	return 1.0 / packet_rate;
     }    
 }
\ No newline at end of file
@@ -1,7 +1,6 @@
 package es.uvigo.det.labredes.epon;
 
-import java.io.FileReader;
-import java.io.BufferedReader;
+import java.util.Arrays;
 
 /**
  * This class simulates the upstream channel of EPON (Ethernet Passive Optical Network) systems.
@@ -10,77 +9,6 @@ import java.io.BufferedReader;
  * @version 1.0
  */
 public final class EponSimulator {
-    /* Simulation parameters */
-    /**
-     * Length of the simulation (in seconds). Default = 1.
-     */
-    public static double simulation_len = 1;
-    /**
-     * Seed for the simulation. Default = 1.
-     */
-    public static long simulation_seed = 1;
-    /**
-     * If true a message for each simulated event is printed on standard output. Default = false.
-     */
-    public static boolean simulation_verbose = false;
-    /**
-     * Event handler.
-     */
-    public static EventList handler;
-
-    /* EPON parameters */
-    /**
-     * Uplink capacity (in b/s). Default = 10000000000.
-     */
-    public static long uplink_capacity = 10000000000L;
-    /**
-     * Length of DBA cycle (in seconds). Default = 0.0015.
-     */
-    public static double dba_cycle = 1.5e-3;
-    /**
-     * Guard time required between the transmission slots of each pair of ONUs (in seconds). Default = 0.000001.
-     */
-    public static double dba_guard_time = 1e-6;
-    /**
-     * DBA sizing algorithm (fixed|fair|proportional|gated|limited|limitedExcess). Default = fixed.
-     */
-    public static String dba_algorithm = "fixed";
-    /**
-     * Number of ONUs. Default = 1.
-     */
-    public static int num_onus = 1;
-    /**
-     * If true ONUs can enter into a low power mode that makes their transmitter sleep when there is no traffic to transmit (doze mode). Default = true.
-     */
-    public static boolean onu_energy_aware = true;
-    /**
-     * Maximum number of packets that can be stored in each ONU upstream queue. Default = 0 (infinite capacity).
-     */
-    public static int onu_maximum_queue = 0;
-    /**
-     * Minimum number of packets in the upstream queue required to reactivate an ONU in the doze mode. If 0, a dynamic algorithm that adjusts the queue threshold with the goal of maintaining packet delay around a given target value is applied. Default = 10.
-     */
-    public static int onu_queue_threshold = 10;
-    /**
-     * Target delay value for the dynamic queue threshold algorithm (if onu_queue_threshold = 0). Default = 0.005.
-     */
-    public static double onu_dynamic_target_delay = 5e-3;
-    /**
-     * Parameter that controls the speed of adjustment to the target delay value (if onu_queue_threshold = 0). Default = 1.
-     */
-    public static int onu_dynamic_gamma = 1;
-    /**
-     * Time required to power up ONU transmitters (in seconds). Default = 0.002.
-     */
-    public static double onu_wakeup_len = 2e-3;
-    /**
-     * Upper limit on the time an ONU can remain continously in the doze mode (in seconds). Default = 0.05.
-     */
-    public static double onu_refresh_to = 50e-3;
-    /**
-     * Doze mode to active mode energy consumption ratio. Default = 0.3.
-     */
-    public static double onu_doze_mode_energy_ratio = 0.3;
     /**
      * Size of traffic report messages (512 bits).
      */
@@ -89,199 +17,236 @@ public final class EponSimulator {
     private EponSimulator() {}
 
     /**
-     * Prints on standard error the specified message and exits.
+     * Prints on standard error the specified error message.
      */
     public static void printError(String s) {
 	System.err.println("ERROR: " + s);
-	System.exit(1);
     }
 
     /**
-     * Main method.
-     * Usage: java EponSimulator [-n num_onus] [-l simulation_length (s)] [-s simulation_seed] [-t traffic_rate (b/s)] [-p packet_size (bytes)] [-g traffic_distribution (deterministic|poisson|pareto)] [-q queue_threshold (packets)] [-m maximum_queue_size (packets)] [-c uplink_capacity (b/s)] [-d dba_cycle (s)] [-a dba_algorithm (fixed|fair|proportional|gated|limited|limitedExcess)] [-w onu_wakeup (s)] [-r onu_refresh_timeout (s)] [-e onu_doze_mode_energy_ratio] [-f traffic_profiles] [-u] [-v]
+     * Usage of the simulator command line.
      */
-    public static void main(String[] args) {
-	// Default traffic parameters
-	long traffic_rate = 100000000; // in b/s
-	int packet_size = 1500; // in bytes
-	String traffic_distribution = "pareto";
-	String traffic_profile = "";
+    public static final String USAGE = "java EponSimulator [-n num_onus] [-l simulation_length (s)] [-s simulation_seed] [-R rng (legacy|Xoshiro256PlusPlus|L64X128MixRandom)] [-k replication] [-t traffic_rate (b/s)] [-p packet_size (bytes)] [-g traffic_distribution (deterministic|poisson|pareto)] [-q queue_threshold (packets)] [-m maximum_queue_size (packets)] [-c uplink_capacity (b/s)] [-d dba_cycle (s)] [-a dba_algorithm (fixed|fair|proportional|gated|limited|limitedExcess)] [-w onu_wakeup (s)] [-r onu_refresh_timeout (s)] [-e onu_doze_mode_energy_ratio] [-f traffic_profiles] [-x event_list (list|heap|calendar), heap and calendar may reorder events less than 0.1 ns apart] [-P threads] [-b] [-B] [-A] [-W] [-T trace_file] [-K trace_onus] [-E trace_events] [-C checkpoint_file] [-I checkpoint_interval (s)] [--resume] [-G] [-M] [-H metrics_port] [-i] [-z] [-y] [-u] [-v]";
 
-	// Arguments parsing
+    /**
+     * Returns the simulation parameters specified by the command line arguments.
+     *
+     * @param args the command line arguments
+     * @return the simulation parameters
+     * @throws SimulationException if any argument is invalid
+     */
+    public static SimulationConfig parseArguments(String[] args) {
+	SimulationConfig config = new SimulationConfig();
 	for (int i = 0; i < args.length; i++) {
 	    if (args[i].equals("-n")) {
 		try {
-		    num_onus = Integer.parseInt(args[i+1]);
+		    config.num_onus = Integer.parseInt(args[i+1]);
 		} catch (NumberFormatException e) {
-		    printError("Invalid number of onus!");
+		    throw new SimulationException("Invalid number of onus!");
 		}
 		i++;
 	    } else if (args[i].equals("-l")) {
 		try {
-		    simulation_len = Double.parseDouble(args[i+1]);
+		    config.simulation_len = Double.parseDouble(args[i+1]);
 		} catch (NumberFormatException e) {
-		    printError("Invalid simulation length!");
+		    throw new SimulationException("Invalid simulation length!");
 		}
 		i++;
 	    } else if (args[i].equals("-s")) {
 		try {
-		    simulation_seed = Integer.parseInt(args[i+1]);
+		    config.simulation_seed = Integer.parseInt(args[i+1]);
 		} catch (NumberFormatException e) {
-		    printError("Invalid simulation seed!");
+		    throw new SimulationException("Invalid simulation seed!");
+		}
+		i++;
+	    } else if (args[i].equals("-R")) {
+		if (RandomStreams.isValidAlgorithm(args[i+1])) {
+		    config.simulation_rng = args[i+1];
+		} else {
+		    throw new SimulationException("Invalid random number generator!");
+		}
+		i++;
+	    } else if (args[i].equals("-k")) {
+		try {
+		    config.simulation_replication = Integer.parseInt(args[i+1]);
+		} catch (NumberFormatException e) {
+		    throw new SimulationException("Invalid replication!");
 		}
 		i++;
 	    } else if (args[i].equals("-t")) {
 		try {
-		    traffic_rate = Long.parseLong(args[i+1]);
+		    config.traffic_rate = Long.parseLong(args[i+1]);
 		} catch (NumberFormatException e) {
-		    printError("Invalid traffic rate!");
+		    throw new SimulationException("Invalid traffic rate!");
 		}
 		i++;
 	    } else if (args[i].equals("-p")) {
 		try {
-		    packet_size = Integer.parseInt(args[i+1]);
+		    config.packet_size = Integer.parseInt(args[i+1]);
 		} catch (NumberFormatException e) {
-		    printError("Invalid packet size!");
+		    throw new SimulationException("Invalid packet size!");
 		}
 		i++;
 	    } else if (args[i].equals("-g")) {
 		if (args[i+1].equals("deterministic") || args[i+1].equals("poisson") || args[i+1].equals("pareto")) {
-		    traffic_distribution = args[i+1];
+		    config.traffic_distribution = args[i+1];
 		} else {
-		    printError("Invalid traffic distribution!");
+		    throw new SimulationException("Invalid traffic distribution!");
 		}
 		i++;
 	    } else if (args[i].equals("-q")) {
 		try {
-		    onu_queue_threshold = Integer.parseInt(args[i+1]);
+		    config.onu_queue_threshold = Integer.parseInt(args[i+1]);
 		} catch (NumberFormatException e) {
-		    printError("Invalid queue threshold!");
+		    throw new SimulationException("Invalid queue threshold!");
 		}
 		i++;
 	    } else if (args[i].equals("-m")) {
 		try {
-		    onu_maximum_queue = Integer.parseInt(args[i+1]);
+		    config.onu_maximum_queue = Integer.parseInt(args[i+1]);
 		} catch (NumberFormatException e) {
-		    printError("Invalid maximum queue size!");
+		    throw new SimulationException("Invalid maximum queue size!");
 		}
 		i++;
 	    } else if (args[i].equals("-c")) {
 		try {
-		    uplink_capacity = Long.parseLong(args[i+1]);
+		    config.uplink_capacity = Long.parseLong(args[i+1]);
 		} catch (NumberFormatException e) {
-		    printError("Invalid uplink capacity!");
+		    throw new SimulationException("Invalid uplink capacity!");
 		}
 		i++;
 	    } else if (args[i].equals("-d")) {
 		try {
-		    dba_cycle = Double.parseDouble(args[i+1]);
+		    config.dba_cycle = Double.parseDouble(args[i+1]);
 		} catch (NumberFormatException e) {
-		    printError("Invalid DBA cycle!");
+		    throw new SimulationException("Invalid DBA cycle!");
 		}
 		i++;
 	    } else if (args[i].equals("-a")) {
-		if (args[i+1].equals("fixed") || args[i+1].equals("fair") || args[i+1].equals("proportional") || args[i+1].equals("gated") || args[i+1].equals("limited") || args[i+1].equals("limitedExcess")) {
-		    dba_algorithm = args[i+1];
+		if (DBA.getAlgorithm(args[i+1]) != null) {
+		    config.dba_algorithm = args[i+1];
 		} else {
-		    printError("Invalid DBA algorithm!");
+		    throw new SimulationException("Invalid DBA algorithm!");
 		}
 		i++;
 	    } else if (args[i].equals("-w")) {
 		try {
-		    onu_wakeup_len = Double.parseDouble(args[i+1]);
+		    config.onu_wakeup_len = Double.parseDouble(args[i+1]);
 		} catch (NumberFormatException e) {
-		    printError("Invalid ONU wakeup length!");
+		    throw new SimulationException("Invalid ONU wakeup length!");
 		}
 		i++;
 	    } else if (args[i].equals("-r")) {
 		try {
-		    onu_refresh_to = Double.parseDouble(args[i+1]);
+		    config.onu_refresh_to = Double.parseDouble(args[i+1]);
 		} catch (NumberFormatException e) {
-		    printError("Invalid ONU refresh timeout!");
+		    throw new SimulationException("Invalid ONU refresh timeout!");
 		}
 		i++;
 	    } else if (args[i].equals("-e")) {
 		try {
-		    onu_doze_mode_energy_ratio = Double.parseDouble(args[i+1]);
+		    config.onu_doze_mode_energy_ratio = Double.parseDouble(args[i+1]);
 		} catch (NumberFormatException e) {
-		    printError("Invalid ONU doze mode energy ratio!");
+		    throw new SimulationException("Invalid ONU doze mode energy ratio!");
 		}
 		i++;
 	    } else if (args[i].equals("-f")) {
-		traffic_profile = args[i+1];
+		config.traffic_profile = args[i+1];
+		i++;
+	    } else if (args[i].equals("-x")) {
+		if (args[i+1].equals("list") || args[i+1].equals("heap") || args[i+1].equals("calendar")) {
+		    config.simulation_engine = args[i+1];
+		} else {
+		    throw new SimulationException("Invalid event list engine!");
+		}
+		i++;
+	    } else if (args[i].equals("-P")) {
+		try {
+		    config.simulation_threads = Integer.parseInt(args[i+1]);
+		} catch (NumberFormatException e) {
+		    throw new SimulationException("Invalid number of threads!");
+		}
+		i++;
+	    } else if (args[i].equals("-b")) {
+		config.simulation_bursts = true;
+	    } else if (args[i].equals("-B")) {
+		config.simulation_aggregation = true;
+	    } else if (args[i].equals("-A")) {
+		config.simulation_active_set = true;
+	    } else if (args[i].equals("-W")) {
+		config.simulation_warmup = true;
+	    } else if (args[i].equals("-T")) {
+		config.simulation_trace = args[i+1];
+		i++;
+	    } else if (args[i].equals("-K")) {
+		config.trace_onus = args[i+1];
 		i++;
+	    } else if (args[i].equals("-E")) {
+		config.trace_events = args[i+1];
+		i++;
+	    } else if (args[i].equals("-C")) {
+		config.simulation_checkpoint = args[i+1];
+		i++;
+	    } else if (args[i].equals("-I")) {
+		try {
+		    config.checkpoint_interval = Double.parseDouble(args[i+1]);
+		} catch (NumberFormatException e) {
+		    throw new SimulationException("Invalid checkpoint interval!");
+		}
+		i++;
+	    } else if (args[i].equals("--resume")) {
+		config.simulation_resume = true;
+	    } else if (args[i].equals("-G")) {
+		config.simulation_profile = true;
+	    } else if (args[i].equals("-M")) {
+		config.simulation_metrics = true;
+	    } else if (args[i].equals("-H")) {
+		try {
+		    config.metrics_port = Integer.parseInt(args[i+1]);
+		} catch (NumberFormatException e) {
+		    throw new SimulationException("Invalid metrics port!");
+		}
+		i++;
+	    } else if (args[i].equals("-i")) {
+		config.simulation_ticks = true;
+	    } else if (args[i].equals("-z")) {
+		config.simulation_recycling = true;
+	    } else if (args[i].equals("-y")) {
+		config.simulation_allocation_report = true;
 	    } else if (args[i].equals("-u")) {
-		onu_energy_aware = false;
+		config.onu_energy_aware = false;
 	    } else if (args[i].equals("-v")) {
-		simulation_verbose = true;
+		config.simulation_verbose = true;
 	    } else {
-		printError("Unknown argument: " + args[i] + "\nUsage: java EponSimulator [-n num_onus] [-l simulation_length (s)] [-s simulation_seed] [-t traffic_rate (b/s)] [-p packet_size (bytes)] [-g traffic_distribution (deterministic|poisson|pareto)] [-q queue_threshold (packets)] [-m maximum_queue_size (packets)] [-c uplink_capacity (b/s)] [-d dba_cycle (s)] [-a dba_algorithm (fixed|fair|proportional|gated|limited|limitedExcess)] [-w onu_wakeup (s)] [-r onu_refresh_timeout (s)] [-e onu_doze_mode_energy_ratio] [-f traffic_profiles] [-u] [-v]");
+		throw new SimulationException("Unknown argument: " + args[i] + "\nUsage: " + USAGE);
 	    }
 	}
+	return config;
+    }
 
-	// Event handler initialization
-	handler = new EventList(simulation_len);
-
-	// OLT initialization
-	OLT olt = new OLT();
-
-	// Traffic profiles initialization
-	String[] onu_traffic_distribution = new String[num_onus];
-	long[] onu_traffic_rate = new long[num_onus];
-	int[] onu_packet_size = new int[num_onus];	
-	if (traffic_profile.isEmpty()) {
-	    for (int id = 0; id < num_onus; id++) {
-		onu_traffic_distribution[id] = traffic_distribution;
-		onu_traffic_rate[id] = traffic_rate;
-		onu_packet_size[id] = 8 * packet_size;
+    /**
+     * Main method.
+     * Sweep usage: java EponSimulator -S sweep_file [-j threads] [-o results_file (.csv|.json)] [-O output_dir] [-F fork_time (s)] [simulation arguments]
+     * Usage: java EponSimulator [-n num_onus] [-l simulation_length (s)] [-s simulation_seed] [-R rng (legacy|Xoshiro256PlusPlus|L64X128MixRandom)] [-k replication] [-t traffic_rate (b/s)] [-p packet_size (bytes)] [-g traffic_distribution (deterministic|poisson|pareto)] [-q queue_threshold (packets)] [-m maximum_queue_size (packets)] [-c uplink_capacity (b/s)] [-d dba_cycle (s)] [-a dba_algorithm (fixed|fair|proportional|gated|limited|limitedExcess)] [-w onu_wakeup (s)] [-r onu_refresh_timeout (s)] [-e onu_doze_mode_energy_ratio] [-f traffic_profiles] [-x event_list (list|heap|calendar), heap and calendar may reorder events less than 0.1 ns apart] [-P threads] [-b] [-B] [-A] [-W] [-T trace_file] [-K trace_onus] [-E trace_events] [-C checkpoint_file] [-I checkpoint_interval (s)] [--resume] [-G] [-M] [-H metrics_port] [-i] [-z] [-y] [-u] [-v]
+     */
+    public static void main(String[] args) {
+	try {
+	    if (Arrays.asList(args).contains("-S")) {
+		ParameterSweep.runCommandLine(args);
+		return;
 	    }
-	} else {
-	    try {
-		BufferedReader file = new BufferedReader(new FileReader(traffic_profile));
-		for (int id = 0; id < num_onus; id++) {
-		    try {
-			String line = file.readLine();
-			String[] line_fields = line.split("\\s+");
-			onu_traffic_distribution[id] = line_fields[0];
-			onu_traffic_rate[id] = Long.parseLong(line_fields[1]);
-			onu_packet_size[id] = 8 * Integer.parseInt(line_fields[2]);
-		    } catch (Exception e) {
-			printError("Invalid traffic profile: Error in ONU " + id + "!");
-		    }
-		}
-		file.close();
-	    } catch (Exception e) {
-		printError("Invalid traffic profile: File not found!");
+	    SimulationConfig config = parseArguments(args);
+	    SimulationResult result = new Simulation(config).run();
+	    result.printStatistics(System.out);
+	    if (config.simulation_allocation_report) {
+		result.printAllocationStatistics(System.out);
 	    }
-	}
-
-	// ONUs initialization
-	TrafficGenerator tg = null;
-	ONU[] onus = new ONU[num_onus];
-        for (int id = 0; id < num_onus; id++) {
-	    if (onu_traffic_distribution[id].equals("deterministic")) {
-		tg = new DeterministicTrafficGenerator(onu_traffic_rate[id], onu_packet_size[id]);
-	    } else if (onu_traffic_distribution[id].equals("poisson")) {
-		tg = new PoissonTrafficGenerator(onu_traffic_rate[id], onu_packet_size[id]);
-		((PoissonTrafficGenerator) tg).setSeed(simulation_seed + id);
-	    } else if (onu_traffic_distribution[id].equals("pareto")) {
-		tg = new ParetoTrafficGenerator(onu_traffic_rate[id], onu_packet_size[id]);
-		((ParetoTrafficGenerator) tg).setSeed(simulation_seed + id);
-	    } else {
-		printError("Invalid traffic distribution for ONU " + id + "!");
+	    if (result.profile != null) {
+		result.profile.printProfile(System.out);
 	    }
-            onus[id] = new ONU(id, olt, tg);
-        }
-
-	// Events processing
-	Event event;
-        while ((event = handler.getNextEvent(true)) != null) {
-	    handler.handleEvent(event);
-	}
-
-	// ONUs statistics
-	for (int id = 0; id < num_onus; id++) {
-	    onus[id].printStatistics();
+	} catch (SimulationException e) {
+	    printError(e.getMessage());
+	    System.exit(1);
 	}
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,8 @@
 package es.uvigo.det.labredes.epon;
 
+import java.io.PrintStream;
+import java.lang.reflect.*;
+
 /**
  * This class implements the events for the EPON simulator.
  *
@@ -7,18 +10,39 @@ package es.uvigo.det.labredes.epon;
  * @version 1.0
  */
 abstract public class Event<T> implements Comparable {
+    /**
+     * Time resolution of event lists (in ticks per second, that is, 0.1 ns per tick).
+     */
+    public static final double TICKS_PER_SECOND = 1e10;
+
     /**
      * The object responsible for handling the event.
      */
     public T handler;
     /**
-     * The name of the method that handles the event.
+     * The name of the method that handles the event (see setHandlerMethod).
      */
     public String handler_method_name;
+    /**
+     * True if the method that handles the event is the usual handler method of its class (see getUsualHandlerMethod).
+     */
+    protected boolean usual_handler;
     /**
      * The instant at which the event occurs.
      */
     public double time;
+    /**
+     * The instant at which this event occurs rounded to the time resolution of event lists. Events whose instants differ by less than this resolution are considered simultaneous.
+     */
+    public long tick;
+    /**
+     * The order in which this event was added to its event list. Events occurring at the same instant are handled in increasing sequence order.
+     */
+    public long sequence;
+    /**
+     * The position of this event in the heap that contains it (-1 if none).
+     */
+    int queue_index = -1;
 
     /**
      * Creates a new event ocurring at the specified time.
@@ -30,21 +54,114 @@ abstract public class Event<T> implements Comparable {
     public Event (double time, T object, String method) {
 	this.time = time;
 	handler = object;
+	setHandlerMethod(method);
+    }
+
+    /**
+     * Sets the name of the method that handles this event and checks once whether it is the usual handler method of its class.
+     *
+     * @param method name of the method that handles this event
+     */
+    public void setHandlerMethod(String method) {
 	handler_method_name = method;
+	usual_handler = method.equals(getUsualHandlerMethod());
+    }
+
+    /**
+     * Returns the name of the method that usually handles the events of this class, which subclasses call directly from dispatch.
+     * This implementation returns null, so every handler method is looked up through reflection.
+     *
+     * @return the name of the usual handler method or null if none
+     */
+    protected String getUsualHandlerMethod() {
+	return null;
     }
 
     /**
      * Compares two events based on the instant at which each event occurs.
+     * Events whose instants differ by less than 0.1 ns are considered simultaneous. The difference is truncated to a long, so it does not overflow for distant instants.
      *
      * @param event the Event to be compared
      * @return the value 0 if both the argument event and this event occur at the same instant; a value less than 0 if this event is later than the event argument; and a value greater than 0 if this event is earlier than the event argument
      */
     public int compareTo(Object event) {
-        return (int) (10e9 * (((Event) event).time - this.time));
+	long difference = (long) (10e9 * (((Event) event).time - this.time));
+	return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
     }
 
     /**
-     * Prints on standard output a message describing this event.
+     * Returns the number of ticks of the specified instant.
+     *
+     * @param time the instant (in seconds)
+     * @return the instant rounded to the time resolution of event lists (in ticks)
+     */
+    public static long toTicks(double time) {
+	return Math.round(time * TICKS_PER_SECOND);
+    }
+
+    /**
+     * Returns the instant corresponding to the specified number of ticks.
+     *
+     * @param ticks the number of ticks
+     * @return the instant (in seconds)
+     */
+    public static double toTime(long ticks) {
+	return ticks / TICKS_PER_SECOND;
+    }
+
+    /**
+     * Returns true if this event must be handled before the specified event, that is, if it occurs earlier or at the same tick but was added before.
+     *
+     * @param event the Event to be compared
+     * @return true if this event precedes the event argument
+     */
+    public boolean precedes(Event event) {
+	return tick < event.tick || (tick == event.tick && sequence < event.sequence);
+    }
+
+    /**
+     * Invokes the method that handles this event on the corresponding object.
+     * This implementation looks up the handler method by name through reflection. Subclasses override it to call their usual handler method directly and only fall back on this lookup when another method name was given.
+     * Unchecked exceptions thrown by the handler method are propagated unchanged.
+     *
+     * @throws SimulationException if the handler method cannot be invoked or throws a checked exception
+     */
+    public void dispatch() {
+	try {
+	    Method handler_method = handler.getClass().getMethod(handler_method_name, getClass());
+	    handler_method.invoke(handler, this);
+	} catch (InvocationTargetException e) {
+	    Throwable cause = e.getCause();
+	    if (cause instanceof RuntimeException) {
+		throw (RuntimeException) cause;
+	    }
+	    if (cause instanceof Error) {
+		throw (Error) cause;
+	    }
+	    throw new SimulationException("Handler method exception: " + handler_method_name + ": " + cause);
+	} catch (ReflectiveOperationException e) {
+	    throw new SimulationException("Handler method invoke exception: " + handler_method_name + ": " + e);
+	}
+    }
+
+    /**
+     * Prints on the specified output stream a message describing this event.
+     *
+     * @param out the output stream
+     */
+    abstract public void printEvent(PrintStream out);
+
+    /**
+     * Writes on the specified trace a record describing this event.
+     *
+     * @param trace the trace writer
+     */
+    abstract public void traceEvent(TraceWriter trace);
+
+    /**
+     * Returns the type of this event, which is also the type of its trace records.
+     *
+     * @return the type of this event (see TraceWriter)
      */
-    abstract public void printEvent();
+    abstract public int getType();
 }
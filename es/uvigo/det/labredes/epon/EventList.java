@@ -1,8 +1,9 @@
 package es.uvigo.det.labredes.epon;
 
-import java.util.List;
-import java.util.ArrayList;
-import java.lang.reflect.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 
 /**
  * This class implements a discrete sequence of events sorted by event time.
@@ -11,19 +12,58 @@ import java.lang.reflect.*;
  * @version 1.0
  */
 public class EventList {
-    private List<Event> list;
+    private EventQueue queue;
     private double current_time;
+    private long current_tick;
+    private long current_sequence;
     private double end_time;
+    private long next_sequence;
+    private long handled_events;
+    private boolean ticks;
+    private EventPool event_pool;
+    private EventProfile profile;
 
     /**
-     * Creates a new list of events.
+     * Creates a new list of events using the specified event list engine.
      *
-     * @param t the end of time
+     * @param t      the end of time
+     * @param engine the data structure that keeps the events sorted (list|heap|calendar)
      */
-    public EventList(double t) {
-	list = new ArrayList<Event>();
+    public EventList(double t, String engine) {
+	this(t, engine, Event.toTicks(1e-6), false, null);
+    }
+
+    /**
+     * Creates a new list of events for a simulation with the specified parameters.
+     * The buckets of the calendar queue engine are initially as wide as the transmission slots of the ONUs.
+     *
+     * @param config the simulation parameters
+     * @param pool   the pool to which handled events are released
+     */
+    public EventList(SimulationConfig config, EventPool pool) {
+	this(config.simulation_len, config.simulation_engine, Math.max(1, Event.toTicks(config.dba_cycle / config.num_onus)), config.simulation_ticks, pool);
+	if (config.simulation_profile) {
+	    profile = new EventProfile();
+	}
+    }
+
+    private EventList(double t, String engine, long calendar_width, boolean tick_clock, EventPool pool) {
+	if (engine.equals("list")) {
+	    queue = new SortedListEventQueue();
+	} else if (engine.equals("heap")) {
+	    queue = new HeapEventQueue(4);
+	} else if (engine.equals("calendar")) {
+	    queue = new CalendarEventQueue(calendar_width);
+	} else {
+	    throw new SimulationException("Invalid event list engine!");
+	}
 	current_time = 0.0;
+	current_tick = 0;
+	current_sequence = -1;
 	end_time = t;
+	next_sequence = handled_events = 0;
+	ticks = tick_clock;
+	event_pool = pool;
     }
 
     /**
@@ -33,23 +73,57 @@ public class EventList {
      * @return true if the specified event is correctly added to this event list
      */
     public boolean addEvent(Event event) {
-	if (event.time < current_time) {
-	    EponSimulator.printError("Trying to add an event with an invalid event time!");
+	if (event.time > end_time) {
+	    return false;
 	}
+	return addEvent(event, next_sequence++);
+    }
+
+    /**
+     * Adds the specified event to this event list with a sequence number previously reserved with reserveSequences.
+     * The event is handled as if it had been added when the sequence numbers were reserved.
+     *
+     * @param event    the Event to be added
+     * @param sequence the reserved sequence number
+     * @return true if the specified event is correctly added to this event list
+     */
+    public boolean addEvent(Event event, long sequence) {
 	if (event.time > end_time) {
 	    return false;
 	}
 
-	int i = 0;
-	int list_size = list.size();
-	while (i < list_size && event.compareTo(list.get(i)) <= 0) {
-	    i++;
+	event.tick = Event.toTicks(event.time);
+	if (event.tick < current_tick) {
+	    throw new SimulationException("Trying to add an event with an invalid event time!");
 	}
-	if (i == list_size) {
-	    return list.add(event);
+	if (ticks) {
+	    event.time = Event.toTime(event.tick);
 	}
-	list.add(i,event);
-	return true;
+	event.sequence = sequence;
+	return profile == null ? queue.add(event) : profile.add(queue, event);
+    }
+
+    /**
+     * Reserves the specified number of consecutive sequence numbers, so that events can be added later as if they had been added now.
+     *
+     * @param count the number of sequence numbers
+     * @return the first reserved sequence number
+     */
+    public long reserveSequences(int count) {
+	long first = next_sequence;
+	next_sequence += count;
+	return first;
+    }
+
+    /**
+     * Returns true if an event with the specified tick and sequence number has not been handled yet, that is, if it does not precede the last event handled.
+     *
+     * @param tick     the tick of the event
+     * @param sequence the sequence number of the event
+     * @return true if the event would still be pending in this event list
+     */
+    public boolean isPending(long tick, long sequence) {
+	return tick > current_tick || (tick == current_tick && sequence > current_sequence);
     }
 
     /**
@@ -68,13 +142,34 @@ public class EventList {
      * @return the next event in this event list or null if the list is empty
      */
     public Event getNextEvent(boolean remove) {
-	Event event;
-	try {
-	    event = remove ? list.remove(0) : list.get(0);
-	} catch (Exception e) {
-	    event = null;
-	}
-	return event;
+	return remove ? queue.poll() : queue.peek();
+    }
+
+    /**
+     * Returns the sequence number that will be assigned to the next event added to this event list.
+     *
+     * @return the number of events added so far
+     */
+    public long getNextSequence() {
+	return next_sequence;
+    }
+
+    /**
+     * Returns the number of events handled so far.
+     *
+     * @return the number of events handled so far
+     */
+    public long getHandledEvents() {
+	return handled_events;
+    }
+
+    /**
+     * Returns the profile of the events handled so far.
+     *
+     * @return the profile of this event list or null if profiling is disabled
+     */
+    public EventProfile getProfile() {
+	return profile;
     }
 
     /**
@@ -84,25 +179,42 @@ public class EventList {
      */
     public void handleEvent(Event event) {
 	current_time = event.time;
-	try {
-	    Method handler_method = event.handler.getClass().getMethod(event.handler_method_name, event.getClass());
-	    try {
-		handler_method.invoke(event.handler, event);
-	    } catch (Exception e) {
-		EponSimulator.printError("Handler method invoke exception: " + event.handler_method_name + ": " + e.getMessage());
-	    }
-	} catch (Exception e) {
-	    EponSimulator.printError("Handler method exception: " + e.getMessage());
+	current_tick = event.tick;
+	current_sequence = event.sequence;
+	handled_events++;
+	if (profile == null) {
+	    event.dispatch();
+	} else {
+	    profile.dispatch(event);
+	}
+	if (event_pool != null) {
+	    event_pool.releaseEvent(event);
 	}
     }
 
     /**
-     * Prints on standard output a message for each event contained in this event list.
+     * Handles, in order, all the events of this event list that precede the specified position.
+     * An event precedes the position if its tick is lower or if it has the same tick and a lower sequence number.
+     *
+     * @param tick     the tick of the position
+     * @param sequence the sequence number of the position
      */
-    public void printEvents() {
+    public void handleEventsBefore(long tick, long sequence) {
 	Event event;
-	for (int i = 0; i < list.size(); i++) {
-	    list.get(i).printEvent();
+	while ((event = queue.peek()) != null && (event.tick < tick || (event.tick == tick && event.sequence < sequence))) {
+	    handleEvent(queue.poll());
+	}
+    }
+
+    /**
+     * Prints on the specified output stream a message for each event contained in this event list.
+     *
+     * @param out the output stream
+     */
+    public void printEvents(PrintStream out) {
+	Event[] events = queue.toArray();
+	for (int i = 0; i < events.length; i++) {
+	    events[i].printEvent(out);
 	}
     }
 
@@ -113,6 +225,122 @@ public class EventList {
      * @return true if this event list contained the specified event 
      */
     public boolean removeEvent(Event event) {
-	return list.remove(event);
+	return queue.remove(event);
+    }
+
+    /**
+     * Returns the number of events contained in this event list.
+     *
+     * @return the number of events contained in this event list
+     */
+    public int size() {
+	return queue.size();
+    }
+
+    /**
+     * Writes the state of this event list, including its pending events, on the specified checkpoint stream (see Simulation.writeCheckpoint).
+     * Each event is written as its record type (see TraceWriter), the identifier of its ONU (-1 for the OLT), its time, tick and sequence number, and its size or new state.
+     *
+     * @param out the checkpoint stream
+     * @throws IOException if the state cannot be written
+     * @throws SimulationException if an event of an unknown type is pending
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+	out.writeDouble(current_time);
+	out.writeLong(current_tick);
+	out.writeLong(current_sequence);
+	out.writeLong(next_sequence);
+	out.writeLong(handled_events);
+	Event[] events = queue.toArray();
+	out.writeInt(events.length);
+	for (Event event : events) {
+	    int type;
+	    int value = 0;
+	    if (event instanceof PacketArrivalEvent) {
+		type = TraceWriter.PACKET_ARRIVAL;
+		value = ((PacketArrivalEvent) event).packet_size;
+	    } else if (event instanceof PacketDropEvent) {
+		type = TraceWriter.PACKET_DROP;
+		value = ((PacketDropEvent) event).packet_size;
+	    } else if (event instanceof PacketTransmissionEvent) {
+		type = TraceWriter.PACKET_TRANSMISSION;
+		value = ((PacketTransmissionEvent) event).packet_size;
+	    } else if (event instanceof TransmissionSlotEvent) {
+		type = TraceWriter.TRANSMISSION_SLOT;
+		value = ((TransmissionSlotEvent) event).data_amount;
+	    } else if (event instanceof TrafficReportEvent) {
+		type = TraceWriter.TRAFFIC_REPORT;
+	    } else if (event instanceof StateTransitionEvent) {
+		type = TraceWriter.STATE_TRANSITION;
+		value = ((StateTransitionEvent) event).new_state.ordinal();
+	    } else if (event instanceof GateMessagesEvent) {
+		type = TraceWriter.GATE_MESSAGES;
+	    } else {
+		throw new SimulationException("Trying to save an invalid event: " + event.getClass().getName());
+	    }
+	    out.writeByte(type);
+	    out.writeInt(event.handler instanceof ONU ? ((ONU) event.handler).onu_id : -1);
+	    out.writeDouble(event.time);
+	    out.writeLong(event.tick);
+	    out.writeLong(event.sequence);
+	    out.writeInt(value);
+	}
+    }
+
+    /**
+     * Replaces the state and the pending events of this event list with those read from the specified checkpoint stream.
+     * The ONU events are also given to their ONUs (see ONU.restorePendingEvent).
+     *
+     * @param in   the checkpoint stream
+     * @param olt  the OLT that handles the gate messages events
+     * @param onus the ONUs that handle the rest of events
+     * @throws IOException if the state cannot be read
+     * @throws SimulationException if the checkpoint contains an invalid event
+     */
+    public void readState(DataInputStream in, OLT olt, ONU[] onus) throws IOException {
+	current_time = in.readDouble();
+	current_tick = in.readLong();
+	current_sequence = in.readLong();
+	next_sequence = in.readLong();
+	handled_events = in.readLong();
+	while (queue.poll() != null) {
+	}
+	int num_events = in.readInt();
+	for (int i = 0; i < num_events; i++) {
+	    int type = in.readByte();
+	    int id = in.readInt();
+	    double time = in.readDouble();
+	    long tick = in.readLong();
+	    long sequence = in.readLong();
+	    int value = in.readInt();
+	    if ((id < 0) != (type == TraceWriter.GATE_MESSAGES) || id >= onus.length) {
+		throw new SimulationException("Invalid checkpoint file: Invalid event!");
+	    }
+	    ONU onu = id < 0 ? null : onus[id];
+	    Event event;
+	    if (type == TraceWriter.PACKET_ARRIVAL) {
+		event = new PacketArrivalEvent(time, onu, "handlePacketArrivalEvent", value);
+	    } else if (type == TraceWriter.PACKET_DROP) {
+		event = new PacketDropEvent(time, onu, "handlePacketDropEvent", value);
+	    } else if (type == TraceWriter.PACKET_TRANSMISSION) {
+		event = new PacketTransmissionEvent(time, onu, "handlePacketTransmissionEvent", value);
+	    } else if (type == TraceWriter.TRANSMISSION_SLOT) {
+		event = new TransmissionSlotEvent(time, onu, "handleTransmissionSlotEvent", value);
+	    } else if (type == TraceWriter.TRAFFIC_REPORT) {
+		event = new TrafficReportEvent(time, onu, "handleTrafficReportEvent");
+	    } else if (type == TraceWriter.STATE_TRANSITION) {
+		event = new StateTransitionEvent(time, onu, "handleStateTransitionEvent", OnuState.values()[value]);
+	    } else if (type == TraceWriter.GATE_MESSAGES) {
+		event = new GateMessagesEvent(time, olt, "handleGateMessagesEvent");
+	    } else {
+		throw new SimulationException("Invalid checkpoint file: Invalid event!");
+	    }
+	    event.tick = tick;
+	    event.sequence = sequence;
+	    queue.add(event);
+	    if (onu != null) {
+		onu.restorePendingEvent(event);
+	    }
+	}
     }
 }
@@ -0,0 +1,191 @@
+package es.uvigo.det.labredes.epon;
+
+import java.util.ArrayDeque;
+
+/**
+ * This class implements a pool of reusable events.
+ * If recycling is enabled, the events handled by the event list are kept in per-type free lists and reused by subsequent requests instead of allocating new objects.
+ * State transition events are not recycled since ONUs keep references to their pending refresh timeout events.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class EventPool {
+    private boolean recycling;
+    private ArrayDeque<PacketArrivalEvent> free_packet_arrival_events;
+    private ArrayDeque<PacketDropEvent> free_packet_drop_events;
+    private ArrayDeque<PacketTransmissionEvent> free_packet_transmission_events;
+    private ArrayDeque<TransmissionSlotEvent> free_transmission_slot_events;
+    private ArrayDeque<TrafficReportEvent> free_traffic_report_events;
+    private ArrayDeque<GateMessagesEvent> free_gate_messages_events;
+
+    /**
+     * Creates a new pool of events.
+     *
+     * @param recycle if true released objects are reused; otherwise new objects are always allocated
+     */
+    public EventPool(boolean recycle) {
+	recycling = recycle;
+	free_packet_arrival_events = new ArrayDeque<PacketArrivalEvent>();
+	free_packet_drop_events = new ArrayDeque<PacketDropEvent>();
+	free_packet_transmission_events = new ArrayDeque<PacketTransmissionEvent>();
+	free_transmission_slot_events = new ArrayDeque<TransmissionSlotEvent>();
+	free_traffic_report_events = new ArrayDeque<TrafficReportEvent>();
+	free_gate_messages_events = new ArrayDeque<GateMessagesEvent>();
+    }
+
+    /**
+     * Returns true if released objects are reused.
+     *
+     * @return true if released objects are reused
+     */
+    public boolean isRecycling() {
+	return recycling;
+    }
+
+    /**
+     * Returns an event representing the arrival of a new packet at the specified ONU.
+     *
+     * @param time   instant at which the new packet arrives at the ONU
+     * @param onu    onu that receives the new packet
+     * @param method name of the method that handles this packet arrival
+     * @param psize  size of the arriving packet
+     * @return a new or recycled PacketArrivalEvent
+     */
+    public PacketArrivalEvent newPacketArrivalEvent(double time, ONU onu, String method, int psize) {
+	PacketArrivalEvent event = free_packet_arrival_events.pollLast();
+	if (event == null) {
+	    return new PacketArrivalEvent(time, onu, method, psize);
+	}
+	event.time = time;
+	event.handler = onu;
+	event.setHandlerMethod(method);
+	event.packet_size = psize;
+	return event;
+    }
+
+    /**
+     * Returns an event representing the drop of a new arriving packet at the specified ONU.
+     *
+     * @param time   instant at which the new arriving packet is discarded at the ONU
+     * @param onu    onu that discards the new packet
+     * @param method name of the method that handles this packet drop
+     * @param psize  size of the packet discarded
+     * @return a new or recycled PacketDropEvent
+     */
+    public PacketDropEvent newPacketDropEvent(double time, ONU onu, String method, int psize) {
+	PacketDropEvent event = free_packet_drop_events.pollLast();
+	if (event == null) {
+	    return new PacketDropEvent(time, onu, method, psize);
+	}
+	event.time = time;
+	event.handler = onu;
+	event.setHandlerMethod(method);
+	event.packet_size = psize;
+	return event;
+    }
+
+    /**
+     * Returns an event representing the transmission of one packet from the specified ONU to the OLT.
+     *
+     * @param time   instant at which the ONU ends packet transmission
+     * @param onu    onu that transmits the packet
+     * @param method name of the method that handles this packet transmission
+     * @param psize  size of the transmitted packet
+     * @return a new or recycled PacketTransmissionEvent
+     */
+    public PacketTransmissionEvent newPacketTransmissionEvent(double time, ONU onu, String method, int psize) {
+	PacketTransmissionEvent event = free_packet_transmission_events.pollLast();
+	if (event == null) {
+	    return new PacketTransmissionEvent(time, onu, method, psize);
+	}
+	event.time = time;
+	event.handler = onu;
+	event.setHandlerMethod(method);
+	event.packet_size = psize;
+	return event;
+    }
+
+    /**
+     * Returns an event representing the beginning of a transmission slot from the specified ONU to the OLT.
+     *
+     * @param time   instant at which the transmission slot starts
+     * @param onu    onu that handles the transmission slot
+     * @param method name of the method that handles the transmission slot
+     * @param amount maximum amount of data allowed to transmit in the transmission slot
+     * @return a new or recycled TransmissionSlotEvent
+     */
+    public TransmissionSlotEvent newTransmissionSlotEvent(double time, ONU onu, String method, int amount) {
+	TransmissionSlotEvent event = free_transmission_slot_events.pollLast();
+	if (event == null) {
+	    return new TransmissionSlotEvent(time, onu, method, amount);
+	}
+	event.time = time;
+	event.handler = onu;
+	event.setHandlerMethod(method);
+	event.data_amount = amount;
+	return event;
+    }
+
+    /**
+     * Returns an event representing the transmission of a traffic report from the specified ONU to the OLT.
+     *
+     * @param time   instant at which the ONU ends transmission of the traffic report
+     * @param onu    ONU that sends the traffic report
+     * @param method name of the method that handles traffic reports
+     * @return a new or recycled TrafficReportEvent
+     */
+    public TrafficReportEvent newTrafficReportEvent(double time, ONU onu, String method) {
+	TrafficReportEvent event = free_traffic_report_events.pollLast();
+	if (event == null) {
+	    return new TrafficReportEvent(time, onu, method);
+	}
+	event.time = time;
+	event.handler = onu;
+	event.setHandlerMethod(method);
+	return event;
+    }
+
+    /**
+     * Returns an event representing the transmission of gate messages from the specified OLT to the ONUs.
+     *
+     * @param time   instant at which all the ONUs have received their gate message
+     * @param olt    OLT that sends gate messages
+     * @param method name of the method that handles gate messages
+     * @return a new or recycled GateMessagesEvent
+     */
+    public GateMessagesEvent newGateMessagesEvent(double time, OLT olt, String method) {
+	GateMessagesEvent event = free_gate_messages_events.pollLast();
+	if (event == null) {
+	    return new GateMessagesEvent(time, olt, method);
+	}
+	event.time = time;
+	event.handler = olt;
+	event.setHandlerMethod(method);
+	return event;
+    }
+
+    /**
+     * Returns the specified event to this pool once it has been handled. Events of types that are not recycled are ignored.
+     *
+     * @param event the Event to be released
+     */
+    public void releaseEvent(Event event) {
+	if (!recycling) {
+	    return;
+	}
+	if (event instanceof PacketArrivalEvent) {
+	    free_packet_arrival_events.addLast((PacketArrivalEvent) event);
+	} else if (event instanceof PacketTransmissionEvent) {
+	    free_packet_transmission_events.addLast((PacketTransmissionEvent) event);
+	} else if (event instanceof TransmissionSlotEvent) {
+	    free_transmission_slot_events.addLast((TransmissionSlotEvent) event);
+	} else if (event instanceof TrafficReportEvent) {
+	    free_traffic_report_events.addLast((TrafficReportEvent) event);
+	} else if (event instanceof PacketDropEvent) {
+	    free_packet_drop_events.addLast((PacketDropEvent) event);
+	} else if (event instanceof GateMessagesEvent) {
+	    free_gate_messages_events.addLast((GateMessagesEvent) event);
+	}
+    }
+}
@@ -0,0 +1,176 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.PrintStream;
+
+/**
+ * This class profiles the handling of the events of an event list: it counts the handled events of each type and estimates the time spent in their handlers and in the insertions into the event list.
+ * Times are only measured for one out of SAMPLE_PERIOD events of each type (and insertions), and then scaled by the number of events, so profiling does not slow down the simulation noticeably.
+ * The time of a handler includes that of the insertions it makes.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class EventProfile {
+    /**
+     * Number of event types (see TraceWriter).
+     */
+    public static final int NUM_TYPES = TraceWriter.GATE_MESSAGES + 1;
+    /**
+     * One out of this number of handled events of each type (and of insertions) is timed. Must be a power of two.
+     */
+    public static final int SAMPLE_PERIOD = 64;
+
+    /**
+     * Number of handled events of each type.
+     */
+    private long[] events;
+    /**
+     * Number of timed events of each type and their overall handling time (in nanoseconds).
+     */
+    private long[] sampled_events, sampled_nanos;
+    /**
+     * Number of insertions into the event list, number of timed insertions and their overall time (in nanoseconds).
+     */
+    private long insertions, sampled_insertions, sampled_insertion_nanos;
+
+    /**
+     * Creates a new empty profile.
+     */
+    public EventProfile() {
+	events = new long[NUM_TYPES];
+	sampled_events = new long[NUM_TYPES];
+	sampled_nanos = new long[NUM_TYPES];
+	insertions = sampled_insertions = sampled_insertion_nanos = 0;
+    }
+
+    /**
+     * Invokes the method that handles the specified event, counting it and timing it if it is sampled.
+     *
+     * @param event the Event to be handled
+     */
+    public void dispatch(Event event) {
+	int type = event.getType();
+	if ((events[type]++ & (SAMPLE_PERIOD - 1)) != 0) {
+	    event.dispatch();
+	    return;
+	}
+	long start = System.nanoTime();
+	event.dispatch();
+	sampled_nanos[type] += System.nanoTime() - start;
+	sampled_events[type]++;
+    }
+
+    /**
+     * Adds the specified event to the specified queue, counting the insertion and timing it if it is sampled.
+     *
+     * @param queue the queue of the event list
+     * @param event the Event to be added
+     * @return true if the event is correctly added to the queue
+     */
+    public boolean add(EventQueue queue, Event event) {
+	if ((insertions++ & (SAMPLE_PERIOD - 1)) != 0) {
+	    return queue.add(event);
+	}
+	long start = System.nanoTime();
+	boolean added = queue.add(event);
+	sampled_insertion_nanos += System.nanoTime() - start;
+	sampled_insertions++;
+	return added;
+    }
+
+    /**
+     * Adds the counters of the specified profile to those of this profile.
+     *
+     * @param profile the profile to be added
+     */
+    public void merge(EventProfile profile) {
+	for (int type = 0; type < NUM_TYPES; type++) {
+	    events[type] += profile.events[type];
+	    sampled_events[type] += profile.sampled_events[type];
+	    sampled_nanos[type] += profile.sampled_nanos[type];
+	}
+	insertions += profile.insertions;
+	sampled_insertions += profile.sampled_insertions;
+	sampled_insertion_nanos += profile.sampled_insertion_nanos;
+    }
+
+    /**
+     * Returns the number of handled events of the specified type.
+     *
+     * @param type the event type (see TraceWriter)
+     * @return the number of handled events of the specified type
+     */
+    public long getEvents(int type) {
+	return events[type];
+    }
+
+    /**
+     * Returns the estimated time spent handling the events of the specified type.
+     *
+     * @param type the event type (see TraceWriter)
+     * @return the estimated handling time (in seconds)
+     */
+    public double getHandlerTime(int type) {
+	return sampled_events[type] == 0 ? 0.0 : 1e-9 * sampled_nanos[type] * events[type] / sampled_events[type];
+    }
+
+    /**
+     * Returns the number of insertions into the event list.
+     *
+     * @return the number of insertions
+     */
+    public long getInsertions() {
+	return insertions;
+    }
+
+    /**
+     * Returns the estimated time spent inserting events into the event list.
+     *
+     * @return the estimated insertion time (in seconds)
+     */
+    public double getInsertionTime() {
+	return sampled_insertions == 0 ? 0.0 : 1e-9 * sampled_insertion_nanos * insertions / sampled_insertions;
+    }
+
+    /**
+     * Prints on the specified output stream a table with the number of events, the share of the handling time and the average handling time of each event type, followed by the insertion cost.
+     *
+     * @param out the output stream
+     */
+    public void printProfile(PrintStream out) {
+	double total_time = 0.0;
+	long total_events = 0;
+	for (int type = 0; type < NUM_TYPES; type++) {
+	    total_time += getHandlerTime(type);
+	    total_events += events[type];
+	}
+	out.println("EVENT PROFILE ");
+	out.format("%-24s %14s %14s %8s %12s %n", "Event type", "Events", "Handler time", "Share", "ns/event");
+	for (int type = 0; type < NUM_TYPES; type++) {
+	    if (events[type] > 0) {
+		double time = getHandlerTime(type);
+		out.format("%-24s %14d %14.6f %7.2f%% %12.1f %n", TraceWriter.TYPE_NAMES[type], events[type], time, total_time > 0 ? 100 * time / total_time : 0.0, 1e9 * time / events[type]);
+	    }
+	}
+	out.format("%-24s %14d %14.6f %7.2f%% %12.1f %n", "Total", total_events, total_time, total_time > 0 ? 100.0 : 0.0, total_events > 0 ? 1e9 * total_time / total_events : 0.0);
+	out.format("Event list insertions: %d (%.1f ns/insertion) %n", insertions, insertions > 0 ? 1e9 * getInsertionTime() / insertions : 0.0);
+    }
+
+    /**
+     * Returns this profile as a JSON object.
+     *
+     * @return this profile in JSON format
+     */
+    public String toJson() {
+	StringBuilder sb = new StringBuilder("{\"events\": {");
+	boolean first = true;
+	for (int type = 0; type < NUM_TYPES; type++) {
+	    if (events[type] > 0) {
+		sb.append(first ? "" : ", ").append('"').append(TraceWriter.TYPE_NAMES[type]).append("\": {\"count\": ").append(events[type]).append(", \"handler_time\": ").append(OnuStatistics.formatValue(getHandlerTime(type))).append('}');
+		first = false;
+	    }
+	}
+	sb.append("}, \"insertions\": {\"count\": ").append(insertions).append(", \"insertion_time\": ").append(OnuStatistics.formatValue(getInsertionTime())).append("}}");
+	return sb.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package es.uvigo.det.labredes.epon;
+
+/**
+ * This interface represents the data structures that keep the pending events of an event list sorted by event time.
+ * Events occurring at the same instant are returned in the same order in which they were added (FIFO order).
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public interface EventQueue {
+    /**
+     * Adds the specified event to this event queue.
+     *
+     * @param event the Event to be added
+     * @return true if the specified event is correctly added to this event queue
+     */
+    public boolean add(Event event);
+
+    /**
+     * Returns, but does not remove, the earliest event in this event queue.
+     *
+     * @return the earliest event in this event queue or null if the queue is empty
+     */
+    public Event peek();
+
+    /**
+     * Returns and removes the earliest event in this event queue.
+     *
+     * @return the earliest event in this event queue or null if the queue is empty
+     */
+    public Event poll();
+
+    /**
+     * Removes the specified event from this event queue. If the queue does not contain the event, it is unchanged.
+     *
+     * @param event the Event to be removed
+     * @return true if this event queue contained the specified event
+     */
+    public boolean remove(Event event);
+
+    /**
+     * Returns the number of events in this event queue.
+     *
+     * @return the number of events in this event queue
+     */
+    public int size();
+
+    /**
+     * Returns an array containing all the events in this event queue sorted by event time.
+     *
+     * @return an array containing all the events in this event queue
+     */
+    public Event[] toArray();
+}
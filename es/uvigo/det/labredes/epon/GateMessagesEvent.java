@@ -1,5 +1,7 @@
 package es.uvigo.det.labredes.epon;
 
+import java.io.PrintStream;
+
 /**
  * This class extends Event class to represent the transmission of gate messages from the OLT to the ONUs.
  *
@@ -19,9 +21,49 @@ public class GateMessagesEvent extends Event<OLT> {
     }
     
     /**
-     * Prints on standard output a message describing this gate messages event.
+     * Returns the name of the method that usually handles this event.
+     *
+     * @return "handleGateMessagesEvent"
+     */
+    protected String getUsualHandlerMethod() {
+	return "handleGateMessagesEvent";
+    }
+
+    /**
+     * Invokes the method that handles this event on the corresponding object.
+     */
+    public void dispatch() {
+	if (usual_handler) {
+	    handler.handleGateMessagesEvent(this);
+	} else {
+	    super.dispatch();
+	}
+    }
+
+    /**
+     * Prints on the specified output stream a message describing this gate messages event.
+     *
+     * @param out the output stream
+     */
+    public void printEvent(PrintStream out) {
+	out.format("%.9f OLT GateMessagesEvent%n", time);
+    }
+
+    /**
+     * Writes on the specified trace a record describing this gate messages event.
+     *
+     * @param trace the trace writer
+     */
+    public void traceEvent(TraceWriter trace) {
+	trace.writeGateMessages(time);
+    }
+
+    /**
+     * Returns the type of this gate messages event.
+     *
+     * @return TraceWriter.GATE_MESSAGES
      */
-    public void printEvent() {
-	System.out.format("%.9f OLT GateMessagesEvent%n", time);
+    public int getType() {
+	return TraceWriter.GATE_MESSAGES;
     }
 }
\ No newline at end of file
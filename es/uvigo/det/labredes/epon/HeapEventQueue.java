@@ -0,0 +1,137 @@
+package es.uvigo.det.labredes.epon;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * This class implements an event queue as a d-ary heap ordered by event time.
+ * Events occurring at the same instant are ordered by their sequence number, so they are returned in FIFO order.
+ * Insertions, removals and extractions take O(log n) time.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class HeapEventQueue implements EventQueue {
+    private Event[] heap;
+    private int size;
+    private int arity;
+
+    /**
+     * Creates a new heap of events with the specified number of children per node.
+     *
+     * @param d number of children per node (2 for a binary heap)
+     */
+    public HeapEventQueue(int d) {
+	if (d < 2) {
+	    throw new SimulationException("Invalid heap arity!");
+	}
+	heap = new Event[64];
+	size = 0;
+	arity = d;
+    }
+
+    public boolean add(Event event) {
+	if (size == heap.length) {
+	    heap = Arrays.copyOf(heap, 2 * size);
+	}
+	siftUp(size++, event);
+	return true;
+    }
+
+    public Event peek() {
+	return size == 0 ? null : heap[0];
+    }
+
+    public Event poll() {
+	if (size == 0) {
+	    return null;
+	}
+	Event event = heap[0];
+	removeAt(0);
+	return event;
+    }
+
+    public boolean remove(Event event) {
+	if (event == null) {
+	    return false;
+	}
+	int i = event.queue_index;
+	if (i < 0 || i >= size || heap[i] != event) {
+	    return false;
+	}
+	removeAt(i);
+	return true;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public Event[] toArray() {
+	Event[] events = Arrays.copyOf(heap, size);
+	Arrays.sort(events, new Comparator<Event>() {
+		public int compare(Event e1, Event e2) {
+		    return e1.precedes(e2) ? -1 : (e2.precedes(e1) ? 1 : 0);
+		}
+	    });
+	return events;
+    }
+
+    /**
+     * Removes the event at the specified position of the heap.
+     */
+    private void removeAt(int i) {
+	heap[i].queue_index = -1;
+	Event last = heap[--size];
+	heap[size] = null;
+	if (i < size) {
+	    siftDown(i, last);
+	    if (heap[i] == last) {
+		siftUp(i, last);
+	    }
+	}
+    }
+
+    /**
+     * Places the specified event at position i or above it.
+     */
+    private void siftUp(int i, Event event) {
+	while (i > 0) {
+	    int parent = (i - 1) / arity;
+	    Event e = heap[parent];
+	    if (!event.precedes(e)) {
+		break;
+	    }
+	    heap[i] = e;
+	    e.queue_index = i;
+	    i = parent;
+	}
+	heap[i] = event;
+	event.queue_index = i;
+    }
+
+    /**
+     * Places the specified event at position i or below it.
+     */
+    private void siftDown(int i, Event event) {
+	int first_child;
+	while ((first_child = arity * i + 1) < size) {
+	    int child = first_child;
+	    int last_child = Math.min(first_child + arity, size);
+	    for (int c = first_child + 1; c < last_child; c++) {
+		if (heap[c].precedes(heap[child])) {
+		    child = c;
+		}
+	    }
+	    Event e = heap[child];
+	    if (!e.precedes(event)) {
+		break;
+	    }
+	    heap[i] = e;
+	    e.queue_index = i;
+	    i = child;
+	}
+	heap[i] = event;
+	event.queue_index = i;
+    }
+}
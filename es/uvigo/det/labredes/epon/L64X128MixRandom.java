@@ -0,0 +1,132 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.random.RandomGenerator;
+
+/**
+ * This class implements the L64X128MixRandom generator of the LXM family with the same seeding and splits as the L64X128MixRandom algorithm of java.util.random, so both generate the same values.
+ * Its state (four longs) can be saved in checkpoints, unlike that of the generators of the JDK.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public final class L64X128MixRandom implements RandomGenerator {
+    /**
+     * Name of the algorithm.
+     */
+    public static final String NAME = "L64X128MixRandom";
+
+    private static final long GOLDEN_RATIO_64 = 0x9e3779b97f4a7c15L;
+    private static final long SILVER_RATIO_64 = 0x6a09e667f3bcc909L;
+    /**
+     * Multiplier of the linear congruential subgenerator.
+     */
+    private static final long M = 0xd1342543de82ef95L;
+
+    /**
+     * Additive parameter (odd) and state of the linear congruential subgenerator.
+     */
+    private long a, s;
+    /**
+     * State of the xoroshiro128 subgenerator.
+     */
+    private long x0, x1;
+
+    /**
+     * Creates a new generator with the specified parameter and state.
+     *
+     * @param a  additive parameter of the linear congruential subgenerator (made odd)
+     * @param s  state of the linear congruential subgenerator
+     * @param x0 first word of the state of the xoroshiro128 subgenerator
+     * @param x1 second word of the state of the xoroshiro128 subgenerator
+     */
+    public L64X128MixRandom(long a, long s, long x0, long x1) {
+	this.a = a | 1;
+	this.s = s;
+	this.x0 = x0;
+	this.x1 = x1;
+	if ((x0 | x1) == 0) {
+	    long v = s;
+	    this.x0 = Xoshiro256PlusPlus.mixStafford13(v += GOLDEN_RATIO_64);
+	    this.x1 = Xoshiro256PlusPlus.mixStafford13(v + GOLDEN_RATIO_64);
+	}
+    }
+
+    /**
+     * Creates a new generator seeded with the specified value.
+     *
+     * @param seed initial seed
+     */
+    public L64X128MixRandom(long seed) {
+	this(mixMurmur64(seed ^= SILVER_RATIO_64), 1, Xoshiro256PlusPlus.mixStafford13(seed), Xoshiro256PlusPlus.mixStafford13(seed + GOLDEN_RATIO_64));
+    }
+
+    /**
+     * Returns the 64 bits of the MurmurHash3 finalizer applied to the specified value.
+     */
+    private static long mixMurmur64(long z) {
+	z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+	z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+	return z ^ (z >>> 33);
+    }
+
+    /**
+     * Returns the 64 bits of the mixing function of Doug Lea applied to the specified value.
+     */
+    private static long mixLea64(long z) {
+	z = (z ^ (z >>> 32)) * 0xdaba0b6eb09322e3L;
+	z = (z ^ (z >>> 32)) * 0xdaba0b6eb09322e3L;
+	return z ^ (z >>> 32);
+    }
+
+    public long nextLong() {
+	long result = mixLea64(s + x0);
+	s = M * s + a;
+	long q0 = x0, q1 = x1;
+	q1 ^= q0;
+	q0 = Long.rotateLeft(q0, 24);
+	q0 = q0 ^ q1 ^ (q1 << 16);
+	q1 = Long.rotateLeft(q1, 37);
+	x0 = q0;
+	x1 = q1;
+	return result;
+    }
+
+    /**
+     * Returns a new generator whose parameter and state are drawn from this generator.
+     *
+     * @return the new generator
+     */
+    public L64X128MixRandom split() {
+	long brine = nextLong();
+	return new L64X128MixRandom(brine << 1, nextLong(), nextLong(), nextLong());
+    }
+
+    /**
+     * Writes the state of this generator on the specified checkpoint stream.
+     *
+     * @param out the checkpoint stream
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+	out.writeLong(a);
+	out.writeLong(s);
+	out.writeLong(x0);
+	out.writeLong(x1);
+    }
+
+    /**
+     * Restores the state of this generator from the specified checkpoint stream.
+     *
+     * @param in the checkpoint stream
+     * @throws IOException if the state cannot be read
+     */
+    public void readState(DataInputStream in) throws IOException {
+	a = in.readLong();
+	s = in.readLong();
+	x0 = in.readLong();
+	x1 = in.readLong();
+    }
+}
@@ -1,5 +1,10 @@
 package es.uvigo.det.labredes.epon;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
  * This class simulates the OLT of the EPON.
  *
@@ -7,6 +12,14 @@ package es.uvigo.det.labredes.epon;
  * @version 1.0
  */
 public class OLT {
+    /**
+     * The simulation that contains the OLT.
+     */
+    private Simulation simulation;
+    /**
+     * The simulation parameters.
+     */
+    private SimulationConfig config;
     /**
      * Array containing the ONUs managed by the OLT.
      */
@@ -15,20 +28,77 @@ public class OLT {
      * Array containing the traffic reports sent from the ONUs to the OLT.
      */
     private ReportArray report_array;
+    /**
+     * Array containing the traffic reports from which the transmission slots of the current DBA cycle were granted.
+     */
+    private ReportArray granted_array;
+    /**
+     * The DBA algorithm.
+     */
+    private DbaAlgorithm dba_algorithm;
     /**
      * The maximum amount of data that can be sent from all the ONUs to the OLT in a DBA cycle (in bits).
      */
     private long dba_size;
+    /**
+     * The tick of the next gate messages event (Long.MAX_VALUE after the end of the simulation).
+     */
+    private long next_gate_messages_tick;
+    /**
+     * The identifiers of the awake ONUs (on or powering up their transmitter) and the position of each ONU in that list (-1 if dozing). Only kept with active-set scheduling.
+     */
+    private int[] awake_onus;
+    private int[] awake_positions;
+    private int num_awake_onus;
+    /**
+     * The number of DBA cycles granted so far and the last cycle in which each ONU was given a transmission slot event.
+     */
+    private long num_dba_cycles;
+    private long[] granted_cycles;
+    /**
+     * The start of the current DBA cycle (in seconds and in ticks).
+     */
+    private double grant_time;
+    private long grant_tick;
+    /**
+     * The offsets from the start of the current DBA cycle to the end of the transmission slots of the first i sorted reports, excluding the empty ones (in seconds and in ticks).
+     */
+    private double[] slot_offsets;
+    private long[] slot_offset_ticks;
+    /**
+     * The length of the transmission slots of the ONUs without report (in seconds and in ticks).
+     */
+    private double empty_slot_len;
+    private long empty_slot_ticks;
     
     /**
      * Creates a new OLT.
+     *
+     * @param sim the simulation that contains the OLT
      */
-    public OLT() {
-	epon_onus = new ONU[EponSimulator.num_onus];
-	report_array = new ReportArray();
-	dba_size = (long) Math.floor((EponSimulator.dba_cycle - EponSimulator.dba_guard_time * EponSimulator.num_onus) * EponSimulator.uplink_capacity);
+    public OLT(Simulation sim) {
+	simulation = sim;
+	config = sim.config;
+	epon_onus = new ONU[config.num_onus];
+	report_array = new ReportArray(config.num_onus);
+	granted_array = new ReportArray(config.num_onus);
+	dba_algorithm = DBA.getAlgorithm(config.dba_algorithm);
+	if (dba_algorithm == null) {
+	    throw new SimulationException("Invalid DBA algorithm!");
+	}
+	dba_size = (long) Math.floor((config.dba_cycle - config.dba_guard_time * config.num_onus) * config.uplink_capacity);
+	if (config.isActiveSet()) {
+	    awake_onus = new int[config.num_onus];
+	    awake_positions = new int[config.num_onus];
+	    Arrays.fill(awake_positions, -1);
+	    granted_cycles = new long[config.num_onus];
+	    slot_offsets = new double[config.num_onus + 1];
+	    slot_offset_ticks = new long[config.num_onus + 1];
+	}
 
-	EponSimulator.handler.addEvent(new GateMessagesEvent (EponSimulator.dba_cycle, this, "handleGateMessagesEvent"));
+	if (!sim.isRestored()) {
+	    addGateMessagesEvent(config.dba_cycle);
+	}
     }
 
     /**
@@ -37,43 +107,137 @@ public class OLT {
      * @param event the GateMessagesEvent to be handled
      */
     public void handleGateMessagesEvent(GateMessagesEvent event) {
-	if (EponSimulator.dba_algorithm.equals("fair")) {
-	    DBA.fairAllocation(dba_size, report_array);
-	} else if (EponSimulator.dba_algorithm.equals("proportional")) {
-	    DBA.proportionalAllocation(dba_size, report_array);
-	} else if (EponSimulator.dba_algorithm.equals("gated")) {
-	    DBA.gatedAllocation(report_array);
-	} else if (EponSimulator.dba_algorithm.equals("limited")) {
-	    DBA.limitedAllocation(dba_size, report_array);
-	} else if (EponSimulator.dba_algorithm.equals("limitedExcess")) {
-	    DBA.limitedExcessDistributionAllocation(dba_size, report_array);
-	} else {
-	    DBA.fixedAllocation(dba_size, report_array);    
-	}
+	// The reports received during the last cycle are granted while the array of the previous grant collects the next reports
+	ReportArray reports = report_array;
+	report_array = granted_array;
+	report_array.clear();
+	granted_array = reports;
 
-	if (EponSimulator.dba_algorithm.equals("gated") || EponSimulator.dba_algorithm.equals("limited") || EponSimulator.dba_algorithm.equals("limitedExcess")) {
-	    EponSimulator.dba_cycle = EponSimulator.num_onus * EponSimulator.dba_guard_time + (double) report_array.overall_tsize / EponSimulator.uplink_capacity;
-	    System.out.println("New dba_cycle: " + EponSimulator.dba_cycle);
+	simulation.observeDbaCycle(event.time, granted_array.overall_qsize);
+	// The flight recorder event is discarded by the JIT compiler unless it is being recorded
+	DbaCycleFlightEvent flight_event = new DbaCycleFlightEvent();
+	flight_event.begin();
+	dba_algorithm.allocate(dba_size, granted_array);
+
+	if (dba_algorithm.hasAdaptiveCycle()) {
+	    config.dba_cycle = config.num_onus * config.dba_guard_time + (double) granted_array.overall_tsize / config.uplink_capacity;
+	    simulation.out.println("New dba_cycle: " + config.dba_cycle);
 	}
 
-	report_array.sortReports("onu_tsize", false);
+	granted_array.sortReports("onu_tsize", false);
 
-	double next_transmission_slot_event = event.time;
-	Report report;
-	for (int i = 0; i < EponSimulator.num_onus; i++) {
-	    report = report_array.getReport(i);
-	    EponSimulator.handler.addEvent(new TransmissionSlotEvent (next_transmission_slot_event, epon_onus[report.onu_id], "handleTransmissionSlotEvent", report.onu_tsize));
-	    next_transmission_slot_event += (double) report.onu_tsize / EponSimulator.uplink_capacity + EponSimulator.dba_guard_time;
+	if (config.isActiveSet()) {
+	    grantAwakeOnus(event);
+	} else {
+	    double next_transmission_slot_event = event.time;
+	    long next_transmission_slot_ticks = event.tick;
+	    int[] sorted_onus = granted_array.getSortedOnus();
+	    for (int i = 0; i < config.num_onus; i++) {
+		int id = sorted_onus[i];
+		int tsize = granted_array.getTransmissionSize(id);
+		simulation.getEventList(id).addEvent(simulation.getEventPool(id).newTransmissionSlotEvent(next_transmission_slot_event, epon_onus[id], "handleTransmissionSlotEvent", tsize));
+		double transmission_slot_len = (double) tsize / config.uplink_capacity + config.dba_guard_time;
+		if (config.simulation_ticks) {
+		    next_transmission_slot_ticks += Event.toTicks(transmission_slot_len);
+		    next_transmission_slot_event = Event.toTime(next_transmission_slot_ticks);
+		} else {
+		    next_transmission_slot_event += transmission_slot_len;
+		}
+	    }
 	}
+	flight_event.end();
 	
-	if (EponSimulator.simulation_verbose) {
-	    event.printEvent();
-	    report_array.printReports();
+	if (config.simulation_verbose) {
+	    event.printEvent(simulation.out);
+	    granted_array.printReports(simulation.out);
+	}
+	if (simulation.trace != null) {
+	    event.traceEvent(simulation.trace);
+	    granted_array.traceReports(simulation.trace);
+	}
+	if (flight_event.shouldCommit()) {
+	    flight_event.simulation_time = event.time;
+	    flight_event.cycle_length = config.dba_cycle;
+	    flight_event.granted_bits = granted_array.overall_tsize;
+	    flight_event.active_onus = granted_array.getNumReports();
+	    flight_event.commit();
 	}
-	report_array.clear();
 	
-	double next_gate_messages_time = event.time + EponSimulator.dba_cycle;
-	EponSimulator.handler.addEvent(new GateMessagesEvent (next_gate_messages_time, this, "handleGateMessagesEvent"));
+	double next_gate_messages_time = config.simulation_ticks ? Event.toTime(event.tick + Event.toTicks(config.dba_cycle)) : event.time + config.dba_cycle;
+	addGateMessagesEvent(next_gate_messages_time);
+
+	// No ONU event is being handled, even in the parallel engine, so the whole simulation can be saved
+	simulation.writeCheckpointIfDue(event.time);
+    }
+
+    /**
+     * Grants the transmission slots of the current DBA cycle to the awake ONUs only.
+     * The slots of the dozing ONUs keep their place in the schedule, and the slot of a dozing ONU is added when it wakes up if it has not started yet.
+     */
+    private void grantAwakeOnus(GateMessagesEvent event) {
+	num_dba_cycles++;
+	grant_time = event.time;
+	grant_tick = event.tick;
+	int[] tsizes = granted_array.getTransmissionSizes();
+	for (int i = 0; i < granted_array.getNumReports(); i++) {
+	    double transmission_slot_len = (double) tsizes[granted_array.getSortedOnu(i)] / config.uplink_capacity + config.dba_guard_time;
+	    slot_offsets[i + 1] = slot_offsets[i] + transmission_slot_len;
+	    slot_offset_ticks[i + 1] = slot_offset_ticks[i] + Event.toTicks(transmission_slot_len);
+	}
+	empty_slot_len = (double) granted_array.getEmptyTransmissionSize() / config.uplink_capacity + config.dba_guard_time;
+	empty_slot_ticks = Event.toTicks(empty_slot_len);
+
+	// Each slot gets the sequence number of its position, as if all the slots were added now
+	simulation.reserveSequences(config.num_onus);
+	for (int k = 0; k < num_awake_onus; k++) {
+	    addTransmissionSlotEvent(awake_onus[k]);
+	}
+    }
+
+    /**
+     * Adds to the event list of the specified ONU its transmission slot of the current DBA cycle, unless the slot has already started.
+     */
+    private void addTransmissionSlotEvent(int id) {
+	int reports_before = granted_array.getNumReportsBefore(id);
+	int empty_reports_before = granted_array.getNumEmptyReportsBefore(id);
+	double time;
+	if (config.simulation_ticks) {
+	    time = Event.toTime(grant_tick + slot_offset_ticks[reports_before] + empty_reports_before * empty_slot_ticks);
+	} else {
+	    time = grant_time + slot_offsets[reports_before] + empty_reports_before * empty_slot_len;
+	}
+	long sequence = simulation.getReservedSequence(id) + reports_before + empty_reports_before;
+	EventList event_list = simulation.getEventList(id);
+	if (event_list.isPending(Event.toTicks(time), sequence)) {
+	    granted_cycles[id] = num_dba_cycles;
+	    event_list.addEvent(simulation.getEventPool(id).newTransmissionSlotEvent(time, epon_onus[id], "handleTransmissionSlotEvent", granted_array.getTransmissionSize(id)), sequence);
+	}
+    }
+
+    /**
+     * Returns the DBA algorithm used by this OLT.
+     *
+     * @return the DBA algorithm
+     */
+    public DbaAlgorithm getDbaAlgorithm() {
+	return dba_algorithm;
+    }
+
+    /**
+     * Adds to the event list the next gate messages event at the specified time.
+     */
+    private void addGateMessagesEvent(double time) {
+	GateMessagesEvent gate = simulation.event_pool.newGateMessagesEvent(time, this, "handleGateMessagesEvent");
+	next_gate_messages_tick = simulation.handler.addEvent(gate) ? gate.tick : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the tick of the next gate messages event.
+     *
+     * @return the tick of the next gate messages event or Long.MAX_VALUE if there are no more gate messages before the end of the simulation
+     */
+    public long getNextGateTick() {
+	return next_gate_messages_tick;
     }
 
     /**
@@ -88,10 +252,98 @@ public class OLT {
 
     /**
      * Registers the specified traffic report in this OLT.
+     * This method is synchronized since the ONUs of different partitions report concurrently in the parallel engine.
+     *
+     * @param id    the identifier of the reporting ONU
+     * @param qsize the amount of data stored in the upstream queue of the ONU
+     */
+    public synchronized void registerTrafficReport(int id, int qsize) {
+	report_array.addReport(id, qsize);
+    }
+
+    /**
+     * Writes the state of this OLT on the specified checkpoint stream (see Simulation.writeCheckpoint).
+     *
+     * @param out the checkpoint stream
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+	report_array.writeState(out);
+	granted_array.writeState(out);
+	out.writeLong(next_gate_messages_tick);
+	if (config.isActiveSet()) {
+	    out.writeInt(num_awake_onus);
+	    for (int k = 0; k < num_awake_onus; k++) {
+		out.writeInt(awake_onus[k]);
+	    }
+	    out.writeLong(num_dba_cycles);
+	    for (int id = 0; id < config.num_onus; id++) {
+		out.writeLong(granted_cycles[id]);
+	    }
+	    out.writeDouble(grant_time);
+	    out.writeLong(grant_tick);
+	    for (int i = 1; i <= granted_array.getNumReports(); i++) {
+		out.writeDouble(slot_offsets[i]);
+		out.writeLong(slot_offset_ticks[i]);
+	    }
+	    out.writeDouble(empty_slot_len);
+	    out.writeLong(empty_slot_ticks);
+	}
+    }
+
+    /**
+     * Restores the state of this OLT from the specified checkpoint stream.
+     *
+     * @param in the checkpoint stream
+     * @throws IOException if the state cannot be read
+     */
+    public void readState(DataInputStream in) throws IOException {
+	report_array.readState(in);
+	granted_array.readState(in);
+	next_gate_messages_tick = in.readLong();
+	if (config.isActiveSet()) {
+	    Arrays.fill(awake_positions, -1);
+	    num_awake_onus = in.readInt();
+	    for (int k = 0; k < num_awake_onus; k++) {
+		awake_onus[k] = in.readInt();
+		awake_positions[awake_onus[k]] = k;
+	    }
+	    num_dba_cycles = in.readLong();
+	    for (int id = 0; id < config.num_onus; id++) {
+		granted_cycles[id] = in.readLong();
+	    }
+	    grant_time = in.readDouble();
+	    grant_tick = in.readLong();
+	    for (int i = 1; i <= granted_array.getNumReports(); i++) {
+		slot_offsets[i] = in.readDouble();
+		slot_offset_ticks[i] = in.readLong();
+	    }
+	    empty_slot_len = in.readDouble();
+	    empty_slot_ticks = in.readLong();
+	}
+    }
+
+    /**
+     * Registers the new state of the specified ONU in this OLT, which keeps track of the awake ONUs with active-set scheduling.
+     * An ONU that starts powering up its transmitter is given the transmission slot that was skipped while it was dozing, if the slot has not started yet.
+     * This method is synchronized since the ONUs of different partitions change their state concurrently in the parallel engine.
      *
-     * @param report the traffic report to be registered
+     * @param id    the identifier of the ONU
+     * @param state the new state of the ONU
      */
-    public void registerTrafficReport(Report report) {
-	report_array.addReport(report);
+    public synchronized void registerOnuState(int id, OnuState state) {
+	boolean awake = state == OnuState.ON || state == OnuState.TRANSITION_TO_ON;
+	if (awake && awake_positions[id] < 0) {
+	    awake_positions[id] = num_awake_onus;
+	    awake_onus[num_awake_onus++] = id;
+	    if (num_dba_cycles > 0 && granted_cycles[id] != num_dba_cycles) {
+		addTransmissionSlotEvent(id);
+	    }
+	} else if (!awake && awake_positions[id] >= 0) {
+	    int last = awake_onus[--num_awake_onus];
+	    awake_onus[awake_positions[id]] = last;
+	    awake_positions[last] = awake_positions[id];
+	    awake_positions[id] = -1;
+	}
     }
 }
@@ -1,7 +1,13 @@
 package es.uvigo.det.labredes.epon;
 
-import java.util.Map;
-import java.util.HashMap;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * This class simulates the ONUs of the EPON. 
@@ -15,10 +21,34 @@ public class ONU {
      * The ONU identifier.
      */
     public int onu_id;
+    /**
+     * The simulation that contains the ONU.
+     */
+    private Simulation simulation;
+    /**
+     * The simulation parameters.
+     */
+    private SimulationConfig config;
+    /**
+     * The event list that contains the events of the ONU.
+     */
+    private EventList handler;
+    /**
+     * Pool of reusable events of the ONU.
+     */
+    private EventPool event_pool;
+    /**
+     * The binary trace of the simulated events (null if disabled).
+     */
+    private TraceWriter trace;
     /**
      * The OLT of the EPON.
      */
     private OLT epon_olt;
+    /**
+     * If true the DBA algorithm adapts the length of the DBA cycle, so the ONU wakes up without waiting for the beginning of a DBA cycle.
+     */
+    private boolean adaptive_cycle;
     /**
      * The ONU traffic generator.
      */
@@ -26,7 +56,7 @@ public class ONU {
     /**
      * The ONU upstream queue.
      */
-    private EventList upstream_queue;
+    private PacketQueue upstream_queue;
     /**
      * The amount of data stored in the ONU upstream queue.
      */
@@ -48,9 +78,17 @@ public class ONU {
      */
     private OnuState state;
     /**
-     * The next refresh timeout event.
+     * The next refresh timeout event (null if it has not been added yet or the ONU was restored from a checkpoint after its refresh timeout).
      */
     private Event refresh_to_event;
+    /**
+     * The next packet arrival event (null if there are no more arrivals before the end of the simulation).
+     */
+    private PacketArrivalEvent packet_arrival_event;
+    /**
+     * The state transition events of the ONU contained in the event list.
+     */
+    private List<StateTransitionEvent> pending_state_transitions;
     /**
      * The time required to transmit the traffic report from the ONU to the OLT.
      */
@@ -58,52 +96,76 @@ public class ONU {
 
     // Statistics variables
     private double last_state_transition_time;
-    private Map<OnuState, Double> time_in_states;
+    private double[] time_in_states;
     private int packets_received, packets_sent, packets_dropped;
     private double packets_delay;
     private double maximum_packet_delay;
+    private DelayHistogram delay_histogram;
 
     private int current_dba_packets_sent;
     private double current_dba_packets_delay;
 
     private int num_dbas, sum_queue_thresholds;
 
+    /**
+     * The time at which the statistics were last reset (see resetStatistics).
+     */
+    private double statistics_start_time;
+    /**
+     * The warm-up detector of the packet delays (null if warm-up detection is disabled or the statistics have already been reset) and the packets sent since the last traffic report.
+     */
+    private WarmupDetector delay_warmup;
+    private int warmup_packets_sent;
+    private double warmup_packets_delay;
+
     /**
      * Creates a new ONU with the specified identifier. 
      * The ONU is connected to the specified OLT. 
      * The ONU upstream traffic is simulated with the specified traffic generator.
      *
+     * @param sim the simulation that contains the ONU
      * @param id  the ONU identifier
      * @param olt the OLT of the EPON
      * @param tg  the traffic generator
      */
-    public ONU(int id, OLT olt, TrafficGenerator tg) {
+    public ONU(Simulation sim, int id, OLT olt, TrafficGenerator tg) {
+	simulation = sim;
+	config = sim.config;
         onu_id = id;
+	handler = sim.getEventList(id);
+	event_pool = sim.getEventPool(id);
+	trace = sim.trace;
         epon_olt = olt;
         epon_olt.registerONU(id, this);
+	adaptive_cycle = epon_olt.getDbaAlgorithm().hasAdaptiveCycle();
 	traffic_generator = tg;
-	upstream_queue = new EventList(EponSimulator.simulation_len);
+	upstream_queue = new PacketQueue();
 	current_qsize = 0;
-	maximum_qsize = tg.packet_size * EponSimulator.onu_maximum_queue;
-	queue_threshold = tg.packet_size * EponSimulator.onu_queue_threshold;
+	maximum_qsize = tg.packet_size * config.onu_maximum_queue;
+	queue_threshold = tg.packet_size * config.onu_queue_threshold;
 	available_tsize = EponSimulator.REPORT_SIZE;
-	traffic_report_transmission_time = (double) EponSimulator.REPORT_SIZE / EponSimulator.uplink_capacity;
+	traffic_report_transmission_time = (double) EponSimulator.REPORT_SIZE / config.uplink_capacity;
 
 	last_state_transition_time = 0.0;
-	time_in_states = new HashMap<OnuState, Double>();
-	for (OnuState st : OnuState.values()) {
-	    time_in_states.put(st, 0.0);
-	}
+	time_in_states = new double[OnuState.values().length];
 	packets_received = packets_sent = packets_dropped = 0;
 	packets_delay = maximum_packet_delay = 0.0;
+	delay_histogram = new DelayHistogram();
 	num_dbas = sum_queue_thresholds = 0;
+	statistics_start_time = 0.0;
+	delay_warmup = sim.delay_warmup;
 
-	state = EponSimulator.onu_energy_aware ? OnuState.OFF : OnuState.ON;
-	EponSimulator.handler.addEvent(new StateTransitionEvent (0.0, this, "handleStateTransitionEvent", state));
-	EponSimulator.handler.addEvent(new PacketArrivalEvent (traffic_generator.getNextArrival(), this, "handlePacketArrivalEvent", traffic_generator.packet_size));
+	state = config.onu_energy_aware ? OnuState.OFF : OnuState.ON;
+	pending_state_transitions = new ArrayList<StateTransitionEvent>();
+	if (sim.isRestored()) {
+	    // The pending events and the traffic generator are restored from the checkpoint
+	    return;
+	}
+	addStateTransitionEvent(0.0, state);
+	addPacketArrivalEvent(traffic_generator.getNextArrival());
 	if (state == OnuState.ON) {
-	    double first_transmission_slot_time = onu_id * EponSimulator.dba_cycle / EponSimulator.num_onus;
-	    EponSimulator.handler.addEvent(new TransmissionSlotEvent (first_transmission_slot_time, this, "handleTransmissionSlotEvent", EponSimulator.REPORT_SIZE));
+	    double first_transmission_slot_time = onu_id * config.dba_cycle / config.num_onus;
+	    handler.addEvent(event_pool.newTransmissionSlotEvent(first_transmission_slot_time, this, "handleTransmissionSlotEvent", EponSimulator.REPORT_SIZE));
 	}
     }
 
@@ -116,6 +178,24 @@ public class ONU {
 	return current_qsize;
     }
 
+    /**
+     * Returns the current size of the upstream queue of this ONU excluding the packets accounted for in advance (see aggregatePacketArrivals) that have not arrived yet.
+     *
+     * @return the size of the packets already arrived at the upstream queue of this ONU
+     */
+    public long getArrivedQueueSize() {
+	return current_qsize - upstream_queue.getSizeAfter(handler.getCurrentTime());
+    }
+
+    /**
+     * Returns the current state of this ONU.
+     *
+     * @return the current state of this ONU
+     */
+    public OnuState getState() {
+	return state;
+    }
+
     /**
      * Handles the specified transmission slot event.
      *
@@ -123,19 +203,32 @@ public class ONU {
      */
     public void handleTransmissionSlotEvent(TransmissionSlotEvent event) {
 	available_tsize = event.data_amount;
-	if (EponSimulator.simulation_verbose) {
-	    event.printEvent();
+	if (config.simulation_verbose) {
+	    event.printEvent(simulation.out);
+	}
+	if (trace != null) {
+	    event.traceEvent(trace);
 	}
 
-	if (state == OnuState.ON) {
-	    PacketArrivalEvent next_packet_to_transmit = (PacketArrivalEvent) (upstream_queue.getNextEvent(false));
-	    int next_packet_size = next_packet_to_transmit == null ? 0 : next_packet_to_transmit.packet_size;
+	if (config.simulation_aggregation && (state == OnuState.OFF || state == OnuState.OFF_WAIT) && packet_arrival_event != null) {
+	    // The next arrival event was added before this transmission slot, so the aggregation can resume from it
+	    PacketArrivalEvent arrival = packet_arrival_event;
+	    double next_packet_arrival_time = aggregatePacketArrivals(arrival.time);
+	    if (next_packet_arrival_time != arrival.time) {
+		handler.removeEvent(arrival);
+		event_pool.releaseEvent(arrival);
+		addPacketArrivalEvent(next_packet_arrival_time);
+	    }
+	} else if (state == OnuState.ON && config.simulation_bursts && pending_state_transitions.isEmpty()) {
+	    transmitBurst(event.time);
+	} else if (state == OnuState.ON) {
+	    int next_packet_size = upstream_queue.getFirstPacketSize();
 	    if (next_packet_size > 0 && next_packet_size <= available_tsize - EponSimulator.REPORT_SIZE) {
-		double next_packet_transmission_time = event.time + (double) next_packet_size / EponSimulator.uplink_capacity;
-		EponSimulator.handler.addEvent(new PacketTransmissionEvent (next_packet_transmission_time, this, "handlePacketTransmissionEvent", next_packet_size));
+		double next_packet_transmission_time = event.time + (double) next_packet_size / config.uplink_capacity;
+		handler.addEvent(event_pool.newPacketTransmissionEvent(next_packet_transmission_time, this, "handlePacketTransmissionEvent", next_packet_size));
 	    } else if (EponSimulator.REPORT_SIZE <= available_tsize) {
 		double next_traffic_report_time = event.time + traffic_report_transmission_time;	    
-		EponSimulator.handler.addEvent(new TrafficReportEvent (next_traffic_report_time, this, "handleTrafficReportEvent"));
+		handler.addEvent(event_pool.newTrafficReportEvent(next_traffic_report_time, this, "handleTrafficReportEvent"));
 	    }
 	}
     }
@@ -146,17 +239,25 @@ public class ONU {
      * @param event the TrafficReportEvent to be handled
      */
     public void handleTrafficReportEvent(TrafficReportEvent event) {
-	epon_olt.registerTrafficReport(new Report(onu_id, current_qsize));
+	epon_olt.registerTrafficReport(onu_id, current_qsize);
+	if (delay_warmup != null && warmup_packets_sent > 0) {
+	    delay_warmup.accumulate(warmup_packets_delay, warmup_packets_sent);
+	    warmup_packets_sent = 0;
+	    warmup_packets_delay = 0.0;
+	}
 	available_tsize -= EponSimulator.REPORT_SIZE;
 	if (available_tsize < 0) {
-	    EponSimulator.printError("Trying to handle an invalid traffic report!");
+	    throw new SimulationException("Trying to handle an invalid traffic report!");
+	}
+	if (config.simulation_verbose) {
+	    event.printEvent(simulation.out);
 	}
-	if (EponSimulator.simulation_verbose) {
-	    event.printEvent();
+	if (trace != null) {
+	    event.traceEvent(trace);
 	}
 
-	if (EponSimulator.onu_energy_aware && state == OnuState.ON && current_qsize == 0) {
-	    EponSimulator.handler.addEvent(new StateTransitionEvent (event.time, this, "handleStateTransitionEvent", OnuState.OFF));
+	if (config.onu_energy_aware && state == OnuState.ON && current_qsize == 0) {
+	    addStateTransitionEvent(event.time, OnuState.OFF);
 	}
     }
 
@@ -169,20 +270,79 @@ public class ONU {
 	packets_received++;
 	if (maximum_qsize == 0 || current_qsize + event.packet_size <= maximum_qsize) {
 	    current_qsize += event.packet_size;
-	    upstream_queue.addEvent(event);
-	    if (EponSimulator.simulation_verbose) {
-		event.printEvent();
+	    upstream_queue.addPacket(event.time, event.packet_size);
+	    if (config.simulation_verbose) {
+		event.printEvent(simulation.out);
+	    }
+	    if (trace != null) {
+		event.traceEvent(trace);
 	    }
 	    if (state == OnuState.OFF && current_qsize >= queue_threshold) {
-		OnuState nextState = EponSimulator.dba_algorithm.equals("gated") || EponSimulator.dba_algorithm.equals("limited") || EponSimulator.dba_algorithm.equals("limitedExcess") ? OnuState.TRANSITION_TO_ON : OnuState.OFF_WAIT;
-		EponSimulator.handler.addEvent(new StateTransitionEvent (event.time, this, "handleStateTransitionEvent", nextState));
+		OnuState nextState = adaptive_cycle ? OnuState.TRANSITION_TO_ON : OnuState.OFF_WAIT;
+		addStateTransitionEvent(event.time, nextState);
 	    }
 	} else {
-	    EponSimulator.handler.addEvent(new PacketDropEvent (event.time, this, "handlePacketDropEvent", event.packet_size));
+	    handler.addEvent(event_pool.newPacketDropEvent(event.time, this, "handlePacketDropEvent", event.packet_size));
 	}
 
 	double next_packet_arrival_time = traffic_generator.getNextArrival();
-	EponSimulator.handler.addEvent(new PacketArrivalEvent (next_packet_arrival_time, this, "handlePacketArrivalEvent", traffic_generator.packet_size));
+	if (config.simulation_aggregation && (state == OnuState.OFF || state == OnuState.OFF_WAIT)) {
+	    next_packet_arrival_time = aggregatePacketArrivals(next_packet_arrival_time);
+	}
+	addPacketArrivalEvent(next_packet_arrival_time);
+    }
+
+    /**
+     * Accounts at once for the packet arrivals of a dozing ONU starting at the specified time, and returns the time of the first arrival that requires a packet arrival event.
+     * An arrival is accounted for in advance only if it does not cross the queue threshold and precedes both the next state transition of the ONU and the next gate messages event.
+     * Until then the ONU remains off and nothing reads its upstream queue, so the statistics do not change.
+     * The next gate messages event bounds the aggregation so that the remaining packet arrival event is added before the transmission slots it may tie with, as in the per packet mode.
+     * The aggregation resumes at the next transmission slot of the ONU.
+     */
+    private double aggregatePacketArrivals(double time) {
+	long horizon = epon_olt.getNextGateTick();
+	for (StateTransitionEvent transition : pending_state_transitions) {
+	    horizon = Math.min(horizon, transition.tick);
+	}
+	while (time <= config.simulation_len) {
+	    long tick = Event.toTicks(time);
+	    if (tick >= horizon) {
+		break;
+	    }
+	    int packet_size = traffic_generator.getArrivalSize();
+	    boolean accepted = maximum_qsize == 0 || current_qsize + packet_size <= maximum_qsize;
+	    if (state == OnuState.OFF && accepted && current_qsize + packet_size >= queue_threshold) {
+		break;
+	    }
+	    packets_received++;
+	    if (accepted) {
+		current_qsize += packet_size;
+		upstream_queue.addPacket(config.simulation_ticks ? Event.toTime(tick) : time, packet_size);
+	    } else {
+		packets_dropped++;
+	    }
+	    time = traffic_generator.getNextArrival();
+	}
+	return time;
+    }
+
+    /**
+     * Adds to the event list the next packet arrival event at the specified time.
+     */
+    private void addPacketArrivalEvent(double time) {
+	PacketArrivalEvent arrival = event_pool.newPacketArrivalEvent(time, this, "handlePacketArrivalEvent", traffic_generator.getArrivalSize());
+	packet_arrival_event = handler.addEvent(arrival) ? arrival : null;
+    }
+
+    /**
+     * Adds to the event list a state transition event to the specified state at the specified time.
+     */
+    private StateTransitionEvent addStateTransitionEvent(double time, OnuState next_state) {
+	StateTransitionEvent transition = new StateTransitionEvent (time, this, "handleStateTransitionEvent", next_state);
+	if (handler.addEvent(transition)) {
+	    pending_state_transitions.add(transition);
+	}
+	return transition;
     }
 
     /**
@@ -192,8 +352,11 @@ public class ONU {
      */
     public void handlePacketDropEvent(PacketDropEvent event) {
 	packets_dropped++;
-	if (EponSimulator.simulation_verbose) {
-	    event.printEvent();
+	if (config.simulation_verbose) {
+	    event.printEvent(simulation.out);
+	}
+	if (trace != null) {
+	    event.traceEvent(trace);
 	}
     }
 
@@ -203,38 +366,88 @@ public class ONU {
      * @param event the PacketTransmissionEvent to be handled
      */
     public void handlePacketTransmissionEvent(PacketTransmissionEvent event) {
-	current_qsize -= event.packet_size;
-	available_tsize -= event.packet_size;
+	transmitPacket(event.time, event.packet_size);
+	if (config.simulation_verbose) {
+	    event.printEvent(simulation.out);
+	}
+	if (trace != null) {
+	    event.traceEvent(trace);
+	}
+
+	int next_packet_size = upstream_queue.getFirstPacketSize();
+	if (next_packet_size > 0 && next_packet_size <= available_tsize - EponSimulator.REPORT_SIZE) {
+	    double next_packet_transmission_time = event.time + (double) next_packet_size / config.uplink_capacity;
+	    handler.addEvent(event_pool.newPacketTransmissionEvent(next_packet_transmission_time, this, "handlePacketTransmissionEvent", next_packet_size));
+	} else if (EponSimulator.REPORT_SIZE <= available_tsize) {
+	    double next_traffic_report_time = event.time + traffic_report_transmission_time;	    
+	    handler.addEvent(event_pool.newTrafficReportEvent(next_traffic_report_time, this, "handleTrafficReportEvent"));
+	} 
+    }
+
+    /**
+     * Removes the first packet from the upstream queue and updates the statistics as if it had been completely transmitted at the specified time.
+     */
+    private void transmitPacket(double time, int packet_size) {
+	current_qsize -= packet_size;
+	available_tsize -= packet_size;
 	if (current_qsize < 0 || available_tsize < 0) {
-	    EponSimulator.printError("Trying to handle an invalid packet transmission!");
+	    throw new SimulationException("Trying to handle an invalid packet transmission!");
 	}
 
 	packets_sent++;
-	PacketArrivalEvent packet_transmitted = (PacketArrivalEvent) (upstream_queue.getNextEvent(true));
-	double current_packet_delay = event.time - packet_transmitted.time;
+	double current_packet_delay = time - upstream_queue.removePacket();
 	if (current_packet_delay > maximum_packet_delay) {
 	    maximum_packet_delay = current_packet_delay;
 	}
 	packets_delay += current_packet_delay;
+	delay_histogram.recordDelay(current_packet_delay);
 
-	if (EponSimulator.onu_queue_threshold == 0) {
+	if (config.onu_queue_threshold == 0) {
 	    current_dba_packets_sent++;
 	    current_dba_packets_delay += current_packet_delay;
 	}
-
-	if (EponSimulator.simulation_verbose) {
-	    event.printEvent();
+	if (delay_warmup != null) {
+	    warmup_packets_sent++;
+	    warmup_packets_delay += current_packet_delay;
 	}
+    }
 
-	PacketArrivalEvent next_packet_to_transmit = (PacketArrivalEvent) (upstream_queue.getNextEvent(false));
-	int next_packet_size = next_packet_to_transmit == null ? 0 : next_packet_to_transmit.packet_size;
-	if (next_packet_size > 0 && next_packet_size <= available_tsize - EponSimulator.REPORT_SIZE) {
-	    double next_packet_transmission_time = event.time + (double) next_packet_size / EponSimulator.uplink_capacity;
-	    EponSimulator.handler.addEvent(new PacketTransmissionEvent (next_packet_transmission_time, this, "handlePacketTransmissionEvent", next_packet_size));
-	} else if (EponSimulator.REPORT_SIZE <= available_tsize) {
-	    double next_traffic_report_time = event.time + traffic_report_transmission_time;	    
-	    EponSimulator.handler.addEvent(new TrafficReportEvent (next_traffic_report_time, this, "handleTrafficReportEvent"));
-	} 
+    /**
+     * Transmits in a single step all the packets that fit in the current transmission slot starting at the specified time, so only the trailing traffic report event is added to the event list.
+     * Each packet departs at the same time as if a packet transmission event had been handled for it.
+     * Before each departure, the packet arrivals that would have been handled before the packet transmission event are handled in advance, so the statistics do not change.
+     * Since no state transition is pending, the ONU remains on until the traffic report.
+     */
+    private void transmitBurst(double time) {
+	int next_packet_size = upstream_queue.getFirstPacketSize();
+	while (next_packet_size > 0 && next_packet_size <= available_tsize - EponSimulator.REPORT_SIZE) {
+	    double next_packet_transmission_time = time + (double) next_packet_size / config.uplink_capacity;
+	    if (next_packet_transmission_time > config.simulation_len) {
+		return;
+	    }
+	    long next_packet_transmission_tick = Event.toTicks(next_packet_transmission_time);
+	    if (config.simulation_ticks) {
+		next_packet_transmission_time = Event.toTime(next_packet_transmission_tick);
+	    }
+
+	    // On a tie, only the arrival scheduled before the departure of the previous packet precedes the packet transmission
+	    boolean scheduled_before = true;
+	    while (packet_arrival_event != null && (packet_arrival_event.tick < next_packet_transmission_tick || (packet_arrival_event.tick == next_packet_transmission_tick && scheduled_before))) {
+		PacketArrivalEvent arrival = packet_arrival_event;
+		handler.removeEvent(arrival);
+		handlePacketArrivalEvent(arrival);
+		event_pool.releaseEvent(arrival);
+		scheduled_before = false;
+	    }
+
+	    transmitPacket(next_packet_transmission_time, next_packet_size);
+	    time = next_packet_transmission_time;
+	    next_packet_size = upstream_queue.getFirstPacketSize();
+	}
+	if (EponSimulator.REPORT_SIZE <= available_tsize) {
+	    double next_traffic_report_time = time + traffic_report_transmission_time;
+	    handler.addEvent(event_pool.newTrafficReportEvent(next_traffic_report_time, this, "handleTrafficReportEvent"));
+	}
     }
 
     /**
@@ -243,72 +456,215 @@ public class ONU {
      * @param event the StateTransitionEvent to be handled
      */
     public void handleStateTransitionEvent(StateTransitionEvent event) {
+	pending_state_transitions.remove(event);
 	if (event.new_state == OnuState.OFF_WAIT) {
-	    double ton_dba = Math.ceil((event.time + EponSimulator.onu_wakeup_len) / EponSimulator.dba_cycle);
-	    double next_state_transition_time = ton_dba * EponSimulator.dba_cycle - EponSimulator.onu_wakeup_len;
-	    EponSimulator.handler.addEvent(new StateTransitionEvent (next_state_transition_time, this, "handleStateTransitionEvent", OnuState.TRANSITION_TO_ON));
+	    double ton_dba = Math.ceil((event.time + config.onu_wakeup_len) / config.dba_cycle);
+	    double next_state_transition_time = ton_dba * config.dba_cycle - config.onu_wakeup_len;
+	    addStateTransitionEvent(next_state_transition_time, OnuState.TRANSITION_TO_ON);
 	} else if (event.new_state == OnuState.TRANSITION_TO_ON) {
-	    EponSimulator.handler.removeEvent(refresh_to_event);
-	    double next_state_transition_time = event.time + EponSimulator.onu_wakeup_len;
-	    EponSimulator.handler.addEvent(new StateTransitionEvent (next_state_transition_time, this, "handleStateTransitionEvent", OnuState.ON));
+	    if (refresh_to_event != null && handler.removeEvent(refresh_to_event)) {
+		pending_state_transitions.remove(refresh_to_event);
+	    }
+	    double next_state_transition_time = event.time + config.onu_wakeup_len;
+	    addStateTransitionEvent(next_state_transition_time, OnuState.ON);
 	} else if (event.new_state == OnuState.OFF) {
 	    double next_refresh_to_time;
-	    if (EponSimulator.dba_algorithm.equals("gated") || EponSimulator.dba_algorithm.equals("limited") || EponSimulator.dba_algorithm.equals("limitedExcess")) {
-		next_refresh_to_time = event.time + EponSimulator.onu_refresh_to;
+	    if (adaptive_cycle) {
+		next_refresh_to_time = event.time + config.onu_refresh_to;
 	    } else {
-		double refresh_to_dba = Math.floor((event.time + EponSimulator.onu_refresh_to) / EponSimulator.dba_cycle);
-		next_refresh_to_time = refresh_to_dba * EponSimulator.dba_cycle - EponSimulator.onu_wakeup_len;
+		double refresh_to_dba = Math.floor((event.time + config.onu_refresh_to) / config.dba_cycle);
+		next_refresh_to_time = refresh_to_dba * config.dba_cycle - config.onu_wakeup_len;
 	    }
-	    refresh_to_event = new StateTransitionEvent (next_refresh_to_time, this, "handleStateTransitionEvent", OnuState.TRANSITION_TO_ON);
-	    EponSimulator.handler.addEvent(refresh_to_event);
-	    if (EponSimulator.onu_queue_threshold == 0) {
+	    refresh_to_event = addStateTransitionEvent(next_refresh_to_time, OnuState.TRANSITION_TO_ON);
+	    if (config.onu_queue_threshold == 0) {
 		double current_dba_avg_packets_delay = current_dba_packets_delay / current_dba_packets_sent;
-		if (current_dba_avg_packets_delay > EponSimulator.onu_dynamic_target_delay) {
-		    queue_threshold -= EponSimulator.onu_dynamic_gamma * traffic_generator.packet_size;
+		if (current_dba_avg_packets_delay > config.onu_dynamic_target_delay) {
+		    queue_threshold -= config.onu_dynamic_gamma * traffic_generator.packet_size;
 		    if (queue_threshold < traffic_generator.packet_size) {
 			queue_threshold = traffic_generator.packet_size;
 		    }
 		} else {
-		    queue_threshold += EponSimulator.onu_dynamic_gamma * traffic_generator.packet_size;
+		    queue_threshold += config.onu_dynamic_gamma * traffic_generator.packet_size;
 		}
 		num_dbas++;
 		sum_queue_thresholds += queue_threshold;
 	    }
-	} else if (event.new_state == OnuState.ON && EponSimulator.onu_queue_threshold == 0) {
+	} else if (event.new_state == OnuState.ON && config.onu_queue_threshold == 0) {
 	    current_dba_packets_sent = 0;
 	    current_dba_packets_delay = 0.0;
 	}
 
-	time_in_states.put(state, time_in_states.get(state) + event.time - last_state_transition_time);
+	time_in_states[state.ordinal()] = time_in_states[state.ordinal()] + event.time - last_state_transition_time;
+	// The flight recorder event is discarded by the JIT compiler unless it is being recorded
+	OnuStateFlightEvent flight_event = new OnuStateFlightEvent();
+	if (flight_event.shouldCommit()) {
+	    flight_event.simulation_time = event.time;
+	    flight_event.onu_id = onu_id;
+	    flight_event.from_state = state.name();
+	    flight_event.to_state = event.new_state.name();
+	    flight_event.commit();
+	}
 	state = event.new_state;
 	last_state_transition_time = event.time;
-	if (EponSimulator.simulation_verbose) {
-	    event.printEvent();
+	if (config.isActiveSet()) {
+	    epon_olt.registerOnuState(onu_id, state);
+	}
+	if (config.simulation_verbose) {
+	    event.printEvent(simulation.out);
+	}
+	if (trace != null) {
+	    event.traceEvent(trace);
 	}
     }
 
     /**
-     * Prints on standard output a summary of this ONU statistics.
+     * Discards the statistics collected so far, so that only the behavior of this ONU after the specified time is summarized.
+     *
+     * @param time the instant at which the statistics are reset
      */
-    public void printStatistics() {
-	System.out.format("ONU %d STATISTICS %n", onu_id);
-	System.out.format("ONU %d Packets received: %d %n", onu_id, packets_received);
-	System.out.format("ONU %d Packets sent: %d %n", onu_id, packets_sent);
-	System.out.format("ONU %d Packets dropped: %d %n", onu_id, packets_dropped);
-	if (packets_sent > 0) {
-	    System.out.format("ONU %d Average packet delay: %.9f %n", onu_id, packets_delay / packets_sent);
-	    System.out.format("ONU %d Maximum packet delay: %.9f %n", onu_id, maximum_packet_delay);
+    public void resetStatistics(double time) {
+	Arrays.fill(time_in_states, 0.0);
+	last_state_transition_time = time;
+	statistics_start_time = time;
+	packets_received = packets_sent = packets_dropped = 0;
+	packets_delay = maximum_packet_delay = 0.0;
+	delay_histogram = new DelayHistogram();
+	num_dbas = sum_queue_thresholds = 0;
+	delay_warmup = null;
+    }
+
+    /**
+     * Prepares this ONU, restored from the snapshot of a warm-up taken at the specified time, to continue with the parameters of a forked simulation (see Simulation.fork).
+     * A static queue threshold is set to that of the new parameters, whereas a dynamic one continues from its current value.
+     *
+     * @param time the instant at which the simulation was forked
+     */
+    public void startBranch(double time) {
+	if (config.onu_queue_threshold > 0) {
+	    queue_threshold = traffic_generator.packet_size * config.onu_queue_threshold;
+	}
+	resetStatistics(time);
+    }
+
+    /**
+     * Takes the specified event, restored from a checkpoint into the event list of this ONU, as one of the pending events of this ONU.
+     *
+     * @param event the restored event
+     */
+    public void restorePendingEvent(Event event) {
+	if (event instanceof PacketArrivalEvent) {
+	    packet_arrival_event = (PacketArrivalEvent) event;
+	} else if (event instanceof StateTransitionEvent) {
+	    pending_state_transitions.add((StateTransitionEvent) event);
 	}
-	time_in_states.put(state, time_in_states.get(state) + EponSimulator.simulation_len - last_state_transition_time);
-	for (OnuState st : OnuState.values()) {
-	    System.out.format("ONU %d Time in state %s: %.9f %n", onu_id, st, time_in_states.get(st));
+    }
+
+    /**
+     * Writes the state of this ONU, including its upstream queue, its statistics and its traffic generator, on the specified checkpoint stream (see Simulation.writeCheckpoint).
+     * The pending events of this ONU are written with its event list.
+     *
+     * @param out the checkpoint stream
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+	upstream_queue.writeState(out);
+	out.writeInt(current_qsize);
+	out.writeInt(queue_threshold);
+	out.writeInt(available_tsize);
+	out.writeByte(state.ordinal());
+	out.writeLong(refresh_to_event != null && pending_state_transitions.contains(refresh_to_event) ? refresh_to_event.sequence : -1);
+	traffic_generator.writeState(out);
+
+	out.writeDouble(last_state_transition_time);
+	for (int i = 0; i < time_in_states.length; i++) {
+	    out.writeDouble(time_in_states[i]);
 	}
-	double time_on = time_in_states.get(OnuState.TRANSITION_TO_ON) + time_in_states.get(OnuState.ON);
-	double time_off = time_in_states.get(OnuState.OFF) + time_in_states.get(OnuState.OFF_WAIT);
-	double energy_consumption = (time_on + EponSimulator.onu_doze_mode_energy_ratio * time_off) / EponSimulator.simulation_len;
-	System.out.format("ONU %d Energy consumption: %.9f %n", onu_id, energy_consumption);
-	if (EponSimulator.onu_queue_threshold == 0) {
-	    System.out.format("ONU %d Average queue threshold: %.9f %n", onu_id, sum_queue_thresholds * 1.0 / num_dbas / traffic_generator.packet_size);
+	out.writeInt(packets_received);
+	out.writeInt(packets_sent);
+	out.writeInt(packets_dropped);
+	out.writeDouble(packets_delay);
+	out.writeDouble(maximum_packet_delay);
+	delay_histogram.writeState(out);
+	out.writeInt(current_dba_packets_sent);
+	out.writeDouble(current_dba_packets_delay);
+	out.writeInt(num_dbas);
+	out.writeInt(sum_queue_thresholds);
+	out.writeDouble(statistics_start_time);
+	out.writeBoolean(delay_warmup != null);
+	out.writeInt(warmup_packets_sent);
+	out.writeDouble(warmup_packets_delay);
+    }
+
+    /**
+     * Restores the state of this ONU from the specified checkpoint stream.
+     * The pending events of this ONU must have been restored before (see restorePendingEvent).
+     *
+     * @param in the checkpoint stream
+     * @throws IOException if the state cannot be read
+     */
+    public void readState(DataInputStream in) throws IOException {
+	upstream_queue.readState(in);
+	current_qsize = in.readInt();
+	queue_threshold = in.readInt();
+	available_tsize = in.readInt();
+	state = OnuState.values()[in.readByte()];
+	// State transitions are kept in the order in which they were added
+	Collections.sort(pending_state_transitions, new Comparator<StateTransitionEvent>() {
+		public int compare(StateTransitionEvent a, StateTransitionEvent b) {
+		    return Long.compare(a.sequence, b.sequence);
+		}
+	    });
+	long refresh_to_sequence = in.readLong();
+	refresh_to_event = null;
+	for (StateTransitionEvent transition : pending_state_transitions) {
+	    if (transition.sequence == refresh_to_sequence) {
+		refresh_to_event = transition;
+	    }
+	}
+	traffic_generator.readState(in);
+
+	last_state_transition_time = in.readDouble();
+	for (int i = 0; i < time_in_states.length; i++) {
+	    time_in_states[i] = in.readDouble();
+	}
+	packets_received = in.readInt();
+	packets_sent = in.readInt();
+	packets_dropped = in.readInt();
+	packets_delay = in.readDouble();
+	maximum_packet_delay = in.readDouble();
+	delay_histogram.readState(in);
+	current_dba_packets_sent = in.readInt();
+	current_dba_packets_delay = in.readDouble();
+	num_dbas = in.readInt();
+	sum_queue_thresholds = in.readInt();
+	statistics_start_time = in.readDouble();
+	delay_warmup = in.readBoolean() ? simulation.delay_warmup : null;
+	warmup_packets_sent = in.readInt();
+	warmup_packets_delay = in.readDouble();
+    }
+
+    /**
+     * Returns a summary of this ONU statistics at the end of the simulation.
+     *
+     * @return the statistics of this ONU
+     */
+    public OnuStatistics getStatistics() {
+	OnuStatistics stats = new OnuStatistics(onu_id);
+	stats.packets_received = packets_received;
+	stats.packets_sent = packets_sent;
+	stats.packets_dropped = packets_dropped;
+	stats.packets_delay = packets_delay;
+	stats.maximum_packet_delay = maximum_packet_delay;
+	stats.delay_histogram = delay_histogram;
+	System.arraycopy(time_in_states, 0, stats.time_in_states, 0, time_in_states.length);
+	stats.time_in_states[state.ordinal()] = time_in_states[state.ordinal()] + config.simulation_len - last_state_transition_time;
+	double time_on = stats.time_in_states[OnuState.TRANSITION_TO_ON.ordinal()] + stats.time_in_states[OnuState.ON.ordinal()];
+	double time_off = stats.time_in_states[OnuState.OFF.ordinal()] + stats.time_in_states[OnuState.OFF_WAIT.ordinal()];
+	stats.energy_consumption = (time_on + config.onu_doze_mode_energy_ratio * time_off) / (config.simulation_len - statistics_start_time);
+	if (config.onu_queue_threshold == 0) {
+	    stats.dynamic_queue_threshold = true;
+	    stats.average_queue_threshold = sum_queue_thresholds * 1.0 / num_dbas / traffic_generator.packet_size;
 	}
+	return stats;
     }
 }
\ No newline at end of file
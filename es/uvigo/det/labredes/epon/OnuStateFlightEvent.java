@@ -0,0 +1,44 @@
+package es.uvigo.det.labredes.epon;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This class represents the Java Flight Recorder event emitted by an ONU for each change of its state.
+ * It is disabled by default, so it must be enabled in the recording settings (e.g. -XX:StartFlightRecording:+es.uvigo.det.labredes.epon.OnuState#enabled=true).
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+@Name("es.uvigo.det.labredes.epon.OnuState")
+@Label("ONU State Transition")
+@Category("EPON Simulator")
+@Description("Change of the state of an ONU")
+@Enabled(false)
+@StackTrace(false)
+public class OnuStateFlightEvent extends jdk.jfr.Event {
+    /**
+     * The instant of the state transition (in seconds of simulated time).
+     */
+    @Label("Simulation Time")
+    public double simulation_time;
+    /**
+     * The ONU identifier.
+     */
+    @Label("ONU")
+    public int onu_id;
+    /**
+     * The previous state of the ONU.
+     */
+    @Label("From State")
+    public String from_state;
+    /**
+     * The new state of the ONU.
+     */
+    @Label("To State")
+    public String to_state;
+}
@@ -0,0 +1,178 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * This class contains the statistics collected at an ONU during a simulation.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class OnuStatistics {
+    /**
+     * Packet delay percentiles included in the statistics summary.
+     */
+    public static final double[] PERCENTILES = {50, 99, 99.9};
+    /**
+     * Names of the fields printed by toCsv and toJson, in order.
+     */
+    public static final String CSV_HEADER = "onu_id,packets_received,packets_sent,packets_dropped,average_packet_delay,maximum_packet_delay,p50_packet_delay,p99_packet_delay,p999_packet_delay,time_OFF,time_OFF_WAIT,time_TRANSITION_TO_ON,time_ON,energy_consumption,average_queue_threshold";
+
+    /**
+     * The ONU identifier.
+     */
+    public int onu_id;
+    /**
+     * The number of packets received, sent and dropped.
+     */
+    public long packets_received, packets_sent, packets_dropped;
+    /**
+     * The sum of the delays of all the packets sent (in seconds).
+     */
+    public double packets_delay;
+    /**
+     * The maximum packet delay (in seconds).
+     */
+    public double maximum_packet_delay;
+    /**
+     * The histogram of the delays of all the packets sent.
+     */
+    public DelayHistogram delay_histogram;
+    /**
+     * The time spent in each state (in seconds), indexed by OnuState ordinal.
+     */
+    public double[] time_in_states;
+    /**
+     * The energy consumption relative to an ONU that is always active.
+     */
+    public double energy_consumption;
+    /**
+     * True if the dynamic queue threshold algorithm is applied.
+     */
+    public boolean dynamic_queue_threshold;
+    /**
+     * The average queue threshold (in packets) if the dynamic queue threshold algorithm is applied.
+     */
+    public double average_queue_threshold;
+
+    /**
+     * Creates an empty set of statistics for the specified ONU.
+     *
+     * @param id the ONU identifier
+     */
+    public OnuStatistics(int id) {
+	onu_id = id;
+	time_in_states = new double[OnuState.values().length];
+	delay_histogram = new DelayHistogram();
+	dynamic_queue_threshold = false;
+	average_queue_threshold = 0.0;
+    }
+
+    /**
+     * Returns the average packet delay.
+     *
+     * @return the average packet delay (in seconds) or NaN if no packet was sent
+     */
+    public double getAveragePacketDelay() {
+	return packets_sent > 0 ? packets_delay / packets_sent : Double.NaN;
+    }
+
+    /**
+     * Returns an estimation of the specified percentile of the packet delay.
+     *
+     * @param percentile the percentile (between 0 and 100)
+     * @return the packet delay percentile (in seconds) or NaN if no packet was sent
+     */
+    public double getPacketDelayPercentile(double percentile) {
+	return delay_histogram.getPercentile(percentile);
+    }
+
+    /**
+     * Returns the time spent in the specified state.
+     *
+     * @param st the ONU state
+     * @return the time spent in the specified state (in seconds)
+     */
+    public double getTimeInState(OnuState st) {
+	return time_in_states[st.ordinal()];
+    }
+
+    /**
+     * Returns these statistics as a line of comma-separated values (see CSV_HEADER).
+     *
+     * @return these statistics in CSV format
+     */
+    public String toCsv() {
+	StringBuilder sb = new StringBuilder();
+	sb.append(onu_id).append(',').append(packets_received).append(',').append(packets_sent).append(',').append(packets_dropped);
+	sb.append(',').append(formatValue(getAveragePacketDelay())).append(',').append(formatValue(maximum_packet_delay));
+	for (double p : PERCENTILES) {
+	    sb.append(',').append(formatValue(getPacketDelayPercentile(p)));
+	}
+	for (OnuState st : OnuState.values()) {
+	    sb.append(',').append(formatValue(time_in_states[st.ordinal()]));
+	}
+	sb.append(',').append(formatValue(energy_consumption));
+	sb.append(',').append(dynamic_queue_threshold ? formatValue(average_queue_threshold) : "");
+	return sb.toString();
+    }
+
+    /**
+     * Returns these statistics as a JSON object whose members are named as in CSV_HEADER.
+     *
+     * @return these statistics in JSON format
+     */
+    public String toJson() {
+	String[] names = CSV_HEADER.split(",");
+	String[] values = toCsv().split(",", -1);
+	StringBuilder sb = new StringBuilder("{");
+	for (int i = 0; i < names.length; i++) {
+	    if (i > 0) {
+		sb.append(", ");
+	    }
+	    sb.append('"').append(names[i]).append("\": ").append(values[i].isEmpty() ? "null" : values[i]);
+	}
+	return sb.append('}').toString();
+    }
+
+    /**
+     * Formats the specified value as in the statistics summary, or as an empty string if it is not a number.
+     */
+    static String formatValue(double value) {
+	return Double.isNaN(value) || Double.isInfinite(value) ? "" : String.format(Locale.ROOT, "%.9f", value);
+    }
+
+    /**
+     * Formats the specified percentile without trailing zeros (e.g. 99.9 or 50).
+     */
+    static String formatPercentile(double percentile) {
+	return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+
+    /**
+     * Prints on the specified output stream a summary of these statistics.
+     *
+     * @param out the output stream
+     */
+    public void print(PrintStream out) {
+	out.format("ONU %d STATISTICS %n", onu_id);
+	out.format("ONU %d Packets received: %d %n", onu_id, packets_received);
+	out.format("ONU %d Packets sent: %d %n", onu_id, packets_sent);
+	out.format("ONU %d Packets dropped: %d %n", onu_id, packets_dropped);
+	if (packets_sent > 0) {
+	    out.format("ONU %d Average packet delay: %.9f %n", onu_id, packets_delay / packets_sent);
+	    out.format("ONU %d Maximum packet delay: %.9f %n", onu_id, maximum_packet_delay);
+	    for (double p : PERCENTILES) {
+		out.format("ONU %d Packet delay percentile %s: %.9f %n", onu_id, formatPercentile(p), getPacketDelayPercentile(p));
+	    }
+	}
+	for (OnuState st : OnuState.values()) {
+	    out.format("ONU %d Time in state %s: %.9f %n", onu_id, st, time_in_states[st.ordinal()]);
+	}
+	out.format("ONU %d Energy consumption: %.9f %n", onu_id, energy_consumption);
+	if (dynamic_queue_threshold) {
+	    out.format("ONU %d Average queue threshold: %.9f %n", onu_id, average_queue_threshold);
+	}
+    }
+}
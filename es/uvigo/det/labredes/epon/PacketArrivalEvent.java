@@ -1,5 +1,7 @@
 package es.uvigo.det.labredes.epon;
 
+import java.io.PrintStream;
+
 /**
  * This class extends Event class to represent the arrival of a new packet at the ONUs.
  *
@@ -26,9 +28,49 @@ public class PacketArrivalEvent extends Event<ONU> {
     }
 
     /**
-     * Prints on standard output a message describing this packet arrival event.
+     * Returns the name of the method that usually handles this event.
+     *
+     * @return "handlePacketArrivalEvent"
+     */
+    protected String getUsualHandlerMethod() {
+	return "handlePacketArrivalEvent";
+    }
+
+    /**
+     * Invokes the method that handles this event on the corresponding object.
+     */
+    public void dispatch() {
+	if (usual_handler) {
+	    handler.handlePacketArrivalEvent(this);
+	} else {
+	    super.dispatch();
+	}
+    }
+
+    /**
+     * Prints on the specified output stream a message describing this packet arrival event.
+     *
+     * @param out the output stream
+     */
+    public void printEvent(PrintStream out) {
+	out.format("%.9f ONU %d PacketArrivalEvent %d %d %n", time, handler.onu_id, packet_size, handler.getQueueSize());
+    }
+
+    /**
+     * Writes on the specified trace a record describing this packet arrival event.
+     *
+     * @param trace the trace writer
+     */
+    public void traceEvent(TraceWriter trace) {
+	trace.writeOnuEvent(TraceWriter.PACKET_ARRIVAL, time, handler.onu_id, handler.getState(), packet_size, handler.getQueueSize());
+    }
+
+    /**
+     * Returns the type of this packet arrival event.
+     *
+     * @return TraceWriter.PACKET_ARRIVAL
      */
-    public void printEvent() {
-	System.out.format("%.9f ONU %d PacketArrivalEvent %d %d %n", time, handler.onu_id, packet_size, handler.getQueueSize());
+    public int getType() {
+	return TraceWriter.PACKET_ARRIVAL;
     }
 }
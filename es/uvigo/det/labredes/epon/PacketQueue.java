@@ -0,0 +1,165 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * This class implements a FIFO queue of packets.
+ * Packet arrival times and sizes are stored in circular arrays that grow as needed, so packets can be added and removed in O(1) time without creating any object.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class PacketQueue {
+    private double[] arrival_times;
+    private int[] packet_sizes;
+    private int head;
+    private int num_packets;
+
+    /**
+     * Creates a new empty queue of packets.
+     */
+    public PacketQueue() {
+	arrival_times = new double[64];
+	packet_sizes = new int[64];
+	head = num_packets = 0;
+    }
+
+    /**
+     * Adds a packet at the tail of this queue.
+     *
+     * @param time  instant at which the packet arrived
+     * @param psize size of the packet
+     */
+    public void addPacket(double time, int psize) {
+	if (num_packets == arrival_times.length) {
+	    grow();
+	}
+	int tail = (head + num_packets) & (arrival_times.length - 1);
+	arrival_times[tail] = time;
+	packet_sizes[tail] = psize;
+	num_packets++;
+    }
+
+    /**
+     * Returns true if this queue contains no packets.
+     *
+     * @return true if this queue contains no packets
+     */
+    public boolean isEmpty() {
+	return num_packets == 0;
+    }
+
+    /**
+     * Returns the number of packets in this queue.
+     *
+     * @return the number of packets in this queue
+     */
+    public int size() {
+	return num_packets;
+    }
+
+    /**
+     * Returns the size of the packet at the head of this queue.
+     *
+     * @return the size of the packet at the head of this queue or 0 if the queue is empty
+     */
+    public int getFirstPacketSize() {
+	return num_packets == 0 ? 0 : packet_sizes[head];
+    }
+
+    /**
+     * Returns the arrival time of the packet at the head of this queue.
+     *
+     * @return the instant at which the packet at the head of this queue arrived
+     */
+    public double getFirstArrivalTime() {
+	return arrival_times[head];
+    }
+
+    /**
+     * Returns the overall size of the packets of this queue that arrive later than the specified instant.
+     * Packets are added in arrival order, so the queue is scanned from its tail. This method may be called from a thread other than the one that updates the queue, in which case the result may be slightly out of date.
+     *
+     * @param time the instant
+     * @return the overall size of the packets arriving later than the specified instant
+     */
+    public long getSizeAfter(double time) {
+	double[] times = arrival_times;
+	int[] sizes = packet_sizes;
+	int first = head;
+	int capacity = Math.min(times.length, sizes.length);
+	long size = 0;
+	for (int i = Math.min(num_packets, capacity) - 1; i >= 0; i--) {
+	    int index = (first + i) & (capacity - 1);
+	    if (times[index] <= time) {
+		break;
+	    }
+	    size += sizes[index];
+	}
+	return size;
+    }
+
+    /**
+     * Removes the packet at the head of this queue.
+     *
+     * @return the instant at which the removed packet arrived
+     */
+    public double removePacket() {
+	if (num_packets == 0) {
+	    throw new SimulationException("Trying to remove a packet from an empty queue!");
+	}
+	double time = arrival_times[head];
+	head = (head + 1) & (arrival_times.length - 1);
+	num_packets--;
+	return time;
+    }
+
+    /**
+     * Writes the packets of this queue on the specified checkpoint stream (see Simulation.writeCheckpoint).
+     *
+     * @param out the checkpoint stream
+     * @throws IOException if the packets cannot be written
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+	out.writeInt(num_packets);
+	for (int i = 0; i < num_packets; i++) {
+	    int j = (head + i) & (arrival_times.length - 1);
+	    out.writeDouble(arrival_times[j]);
+	    out.writeInt(packet_sizes[j]);
+	}
+    }
+
+    /**
+     * Replaces the packets of this queue with those read from the specified checkpoint stream.
+     *
+     * @param in the checkpoint stream
+     * @throws IOException if the packets cannot be read
+     */
+    public void readState(DataInputStream in) throws IOException {
+	head = num_packets = 0;
+	int n = in.readInt();
+	for (int i = 0; i < n; i++) {
+	    double time = in.readDouble();
+	    addPacket(time, in.readInt());
+	}
+    }
+
+    /**
+     * Doubles the capacity of this queue moving the stored packets to the beginning of the new arrays.
+     */
+    private void grow() {
+	int capacity = arrival_times.length;
+	double[] new_arrival_times = new double[2 * capacity];
+	int[] new_packet_sizes = new int[2 * capacity];
+	int first_part = capacity - head;
+	System.arraycopy(arrival_times, head, new_arrival_times, 0, first_part);
+	System.arraycopy(arrival_times, 0, new_arrival_times, first_part, head);
+	System.arraycopy(packet_sizes, head, new_packet_sizes, 0, first_part);
+	System.arraycopy(packet_sizes, 0, new_packet_sizes, first_part, head);
+	arrival_times = new_arrival_times;
+	packet_sizes = new_packet_sizes;
+	head = 0;
+    }
+}
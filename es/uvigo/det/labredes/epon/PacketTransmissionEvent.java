@@ -1,5 +1,7 @@
 package es.uvigo.det.labredes.epon;
 
+import java.io.PrintStream;
+
 /**
  * This class extends Event class to represent the transmission of one packet from the ONUs to the OLT.
  *
@@ -26,9 +28,49 @@ public class PacketTransmissionEvent extends Event<ONU> {
     }
 
     /**
-     * Prints on standard output a message describing this packet transmission event.
+     * Returns the name of the method that usually handles this event.
+     *
+     * @return "handlePacketTransmissionEvent"
+     */
+    protected String getUsualHandlerMethod() {
+	return "handlePacketTransmissionEvent";
+    }
+
+    /**
+     * Invokes the method that handles this event on the corresponding object.
+     */
+    public void dispatch() {
+	if (usual_handler) {
+	    handler.handlePacketTransmissionEvent(this);
+	} else {
+	    super.dispatch();
+	}
+    }
+
+    /**
+     * Prints on the specified output stream a message describing this packet transmission event.
+     *
+     * @param out the output stream
+     */
+    public void printEvent(PrintStream out) {
+	out.format("%.9f ONU %d PacketTransmissionEvent %d %d %n", time, handler.onu_id, packet_size, handler.getQueueSize());
+    }
+
+    /**
+     * Writes on the specified trace a record describing this packet transmission event.
+     *
+     * @param trace the trace writer
+     */
+    public void traceEvent(TraceWriter trace) {
+	trace.writeOnuEvent(TraceWriter.PACKET_TRANSMISSION, time, handler.onu_id, handler.getState(), packet_size, handler.getQueueSize());
+    }
+
+    /**
+     * Returns the type of this packet transmission event.
+     *
+     * @return TraceWriter.PACKET_TRANSMISSION
      */
-    public void printEvent() {
-	System.out.format("%.9f ONU %d PacketTransmissionEvent %d %d %n", time, handler.onu_id, packet_size, handler.getQueueSize());
+    public int getType() {
+	return TraceWriter.PACKET_TRANSMISSION;
     }
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+package es.uvigo.det.labredes.epon;
+
+import java.util.concurrent.Phaser;
+
+/**
+ * This class implements a conservative parallel engine that simulates the partitions of ONUs on different threads.
+ * Between two gate messages events the ONUs only interact with the OLT through their traffic reports, so each partition handles its events up to the next gate messages event independently.
+ * Then the OLT handles the gate messages event on the calling thread while the partitions wait.
+ * Each partition is simulated by the same thread during the whole run (the first one by the calling thread), and the threads are synchronized through a reusable phaser twice per DBA cycle, so no task or future is created per cycle.
+ * An ONU event with the same tick as a gate messages event is handled before it only if it was added before the gate messages event was scheduled, so the events are handled in the same order as in the sequential engine.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class ParallelEngine {
+    /**
+     * Event list of the OLT.
+     */
+    private EventList olt_handler;
+    /**
+     * Event lists of the ONU partitions.
+     */
+    private EventList[] onu_handlers;
+    /**
+     * Tick of the next gate messages event.
+     */
+    private long barrier_tick;
+    /**
+     * Sequence number of the first event added to each partition after the next gate messages event was scheduled.
+     */
+    private long[] barrier_sequences;
+    /**
+     * Amount of memory allocated by the threads while handling the events of each partition (except the first one, which is handled by the calling thread).
+     */
+    private long[] allocated_bytes;
+    /**
+     * Phaser shared by the partition threads and the calling thread, which advances when the partitions start handling their events and when they finish. It is terminated when the run ends.
+     */
+    private Phaser phaser;
+    /**
+     * The first exception thrown by a partition thread in the current DBA cycle (null if none).
+     */
+    private Throwable failure;
+
+    /**
+     * Creates a new parallel engine.
+     *
+     * @param olt_list  the event list of the OLT
+     * @param onu_lists the event lists of the ONU partitions
+     */
+    public ParallelEngine(EventList olt_list, EventList[] onu_lists) {
+	olt_handler = olt_list;
+	onu_handlers = onu_lists;
+	barrier_sequences = new long[onu_lists.length];
+	allocated_bytes = new long[onu_lists.length];
+    }
+
+    /**
+     * Prepares this engine to continue a simulation restored from a checkpoint.
+     * Checkpoints are written right after a gate messages event, so the next gate messages event was scheduled when each partition had added the events it contains.
+     */
+    public void resumeAfterGateMessages() {
+	for (int p = 0; p < onu_handlers.length; p++) {
+	    barrier_sequences[p] = onu_handlers[p].getNextSequence();
+	}
+    }
+
+    /**
+     * Handles all the events of the OLT and the ONU partitions until the end of the simulation.
+     *
+     * @return the number of bytes allocated by the partition threads or 0 if the JVM does not support allocation measurement
+     * @throws SimulationException if the handling of any event fails
+     */
+    public long run() {
+	return run(Long.MAX_VALUE);
+    }
+
+    /**
+     * Handles the events of the OLT and the ONU partitions until the end of the simulation or until the first gate messages event at or after the specified tick has been handled.
+     *
+     * @param stop_tick the tick from which the first gate messages event stops the simulation
+     * @return the number of bytes allocated by the partition threads other than the calling thread or 0 if the JVM does not support allocation measurement
+     * @throws SimulationException if the handling of any event fails
+     */
+    public long run(long stop_tick) {
+	phaser = new Phaser(onu_handlers.length);
+	failure = null;
+	for (int p = 1; p < onu_handlers.length; p++) {
+	    final int partition = p;
+	    Thread thread = new Thread(new Runnable() {
+		    public void run() {
+			handlePartition(partition);
+		    }
+		}, "epon-partition-" + p);
+	    thread.setDaemon(true);
+	    thread.start();
+	}
+
+	try {
+	    Event event;
+	    do {
+		// ONU events preceding the next gate messages event (all the remaining ones at the end of the simulation)
+		event = olt_handler.getNextEvent(false);
+		barrier_tick = event == null ? Long.MAX_VALUE : event.tick;
+		phaser.arriveAndAwaitAdvance();
+		handlePartitionEvents(0);
+		phaser.arriveAndAwaitAdvance();
+		if (failure != null) {
+		    break;
+		}
+		// Gate messages event
+		if (event != null) {
+		    olt_handler.handleEvent(olt_handler.getNextEvent(true));
+		    for (int p = 0; p < onu_handlers.length; p++) {
+			barrier_sequences[p] = onu_handlers[p].getNextSequence();
+		    }
+		}
+	    } while (event != null && barrier_tick < stop_tick);
+	} finally {
+	    // The partition threads exit when the phaser is terminated
+	    phaser.forceTermination();
+	}
+	if (failure instanceof RuntimeException) {
+	    throw (RuntimeException) failure;
+	}
+	if (failure instanceof Error) {
+	    throw (Error) failure;
+	}
+	if (failure != null) {
+	    throw new SimulationException("Parallel engine failed: " + failure);
+	}
+
+	long bytes = 0;
+	for (int p = 1; p < onu_handlers.length; p++) {
+	    bytes += allocated_bytes[p];
+	}
+	return bytes;
+    }
+
+    /**
+     * Handles the events of the specified partition in each DBA cycle until the phaser is terminated.
+     * An exception thrown while handling the events is kept in failure and reported by the calling thread at the end of the cycle.
+     */
+    private void handlePartition(int partition) {
+	while (phaser.arriveAndAwaitAdvance() >= 0) {
+	    try {
+		long bytes = Simulation.getAllocatedBytes();
+		handlePartitionEvents(partition);
+		if (bytes >= 0) {
+		    allocated_bytes[partition] += Simulation.getAllocatedBytes() - bytes;
+		}
+	    } catch (Throwable e) {
+		synchronized (this) {
+		    if (failure == null) {
+			failure = e;
+		    }
+		}
+	    }
+	    phaser.arriveAndAwaitAdvance();
+	}
+    }
+
+    /**
+     * Handles the events of the specified partition that precede the next gate messages event.
+     */
+    private void handlePartitionEvents(int partition) {
+	onu_handlers[partition].handleEventsBefore(barrier_tick, barrier_sequences[partition]);
+    }
+}
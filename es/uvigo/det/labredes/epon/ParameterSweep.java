@@ -0,0 +1,391 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This class runs a set of simulations (scenarios) in parallel and aggregates their results in a single table.
+ * <p>
+ * Scenarios are read from a sweep file with one directive per line:
+ * <ul>
+ * <li><code>base args...</code>: command line arguments added to every scenario.</li>
+ * <li><code>grid option values...</code>: a dimension of the grid of scenarios. Each value is either a single value or a range <code>start:step:end</code>. The cartesian product of all the grid dimensions is simulated.</li>
+ * <li><code>run args...</code>: a single scenario with the specified command line arguments.</li>
+ * </ul>
+ * Empty lines and lines starting with # are ignored. Each scenario is an independent Simulation, so its results are identical to those of a standalone run with the same arguments.
+ * <p>
+ * Alternatively, the warm-up of the base arguments is simulated once until a fork time and every scenario continues from the end of that warm-up (see Simulation.fork), so that scenarios that only differ in their DBA algorithm, queue threshold or ONU wakeup length are compared with the same arrivals after the same warm-up.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class ParameterSweep {
+    /**
+     * Usage of the sweep command line.
+     */
+    public static final String USAGE = "java EponSimulator -S sweep_file [-j threads] [-o results_file (.csv|.json)] [-O output_dir] [-F fork_time (s)] [simulation arguments]";
+
+    /**
+     * The command line arguments of the base directives followed by the base arguments.
+     */
+    private String[] base_scenario;
+    /**
+     * The command line arguments of each scenario.
+     */
+    private List<String[]> scenarios;
+
+    /**
+     * Creates a new sweep with the scenarios contained in the specified sweep file.
+     *
+     * @param file      the sweep file
+     * @param base_args command line arguments added to every scenario after those of the base directives
+     * @throws SimulationException if the sweep file cannot be read or is invalid
+     */
+    public ParameterSweep(String file, String[] base_args) {
+	List<String> base = new ArrayList<String>();
+	List<String[]> grid = new ArrayList<String[]>();
+	List<String[]> runs = new ArrayList<String[]>();
+	try {
+	    BufferedReader reader = new BufferedReader(new FileReader(file));
+	    try {
+		String line;
+		int line_number = 0;
+		while ((line = reader.readLine()) != null) {
+		    line_number++;
+		    line = line.trim();
+		    if (line.isEmpty() || line.startsWith("#")) {
+			continue;
+		    }
+		    String[] fields = line.split("\\s+");
+		    String[] args = Arrays.copyOfRange(fields, 1, fields.length);
+		    if (fields[0].equals("base")) {
+			base.addAll(Arrays.asList(args));
+		    } else if (fields[0].equals("run")) {
+			runs.add(args);
+		    } else if (fields[0].equals("grid") && args.length >= 2) {
+			grid.add(args);
+		    } else {
+			throw new SimulationException("Invalid sweep file: Error in line " + line_number + "!");
+		    }
+		}
+	    } finally {
+		reader.close();
+	    }
+	} catch (IOException e) {
+	    throw new SimulationException("Invalid sweep file: File not found!");
+	}
+	base.addAll(Arrays.asList(base_args));
+	base_scenario = base.toArray(new String[base.size()]);
+
+	scenarios = new ArrayList<String[]>();
+	if (!grid.isEmpty()) {
+	    addGridScenarios(base, grid, 0);
+	}
+	for (String[] args : runs) {
+	    List<String> scenario = new ArrayList<String>(base);
+	    scenario.addAll(Arrays.asList(args));
+	    scenarios.add(scenario.toArray(new String[scenario.size()]));
+	}
+	if (scenarios.isEmpty()) {
+	    scenarios.add(base_scenario);
+	}
+    }
+
+    /**
+     * Adds the cartesian product of the grid dimensions from the specified one on.
+     */
+    private void addGridScenarios(List<String> args, List<String[]> grid, int dimension) {
+	if (dimension == grid.size()) {
+	    scenarios.add(args.toArray(new String[args.size()]));
+	    return;
+	}
+	String[] fields = grid.get(dimension);
+	for (int i = 1; i < fields.length; i++) {
+	    for (String value : expandRange(fields[i])) {
+		List<String> scenario = new ArrayList<String>(args);
+		scenario.add(fields[0]);
+		scenario.add(value);
+		addGridScenarios(scenario, grid, dimension + 1);
+	    }
+	}
+    }
+
+    /**
+     * Returns the values of the specified range (start:step:end) or the value itself if it is not a range.
+     */
+    private static List<String> expandRange(String range) {
+	List<String> values = new ArrayList<String>();
+	String[] bounds = range.split(":");
+	if (bounds.length != 3) {
+	    values.add(range);
+	    return values;
+	}
+	try {
+	    long start = Long.parseLong(bounds[0]);
+	    long step = Long.parseLong(bounds[1]);
+	    long end = Long.parseLong(bounds[2]);
+	    if (step <= 0) {
+		throw new SimulationException("Invalid sweep range: " + range + "!");
+	    }
+	    for (long v = start; v <= end; v += step) {
+		values.add(Long.toString(v));
+	    }
+	} catch (NumberFormatException e) {
+	    try {
+		double start = Double.parseDouble(bounds[0]);
+		double step = Double.parseDouble(bounds[1]);
+		double end = Double.parseDouble(bounds[2]);
+		if (!(step > 0)) {
+		    throw new SimulationException("Invalid sweep range: " + range + "!");
+		}
+		long n = (long) Math.floor((end - start) / step + 1e-9);
+		for (long k = 0; k <= n; k++) {
+		    values.add(Double.toString(start + k * step));
+		}
+	    } catch (NumberFormatException e2) {
+		throw new SimulationException("Invalid sweep range: " + range + "!");
+	    }
+	}
+	return values;
+    }
+
+    /**
+     * Returns the command line arguments of each scenario of this sweep.
+     *
+     * @return the list of scenarios
+     */
+    public List<String[]> getScenarios() {
+	return scenarios;
+    }
+
+    /**
+     * Runs all the scenarios of this sweep on a work-stealing pool of threads.
+     *
+     * @param threads    number of simulations run in parallel
+     * @param output_dir if not null, the output of each scenario (as printed by a standalone run) is written to a file in this directory
+     * @return the results of each scenario in the same order as the scenarios
+     * @throws SimulationException if any scenario is invalid or fails
+     */
+    public SimulationResult[] run(int threads, String output_dir) {
+	return run(threads, output_dir, 0.0);
+    }
+
+    /**
+     * Runs all the scenarios of this sweep on a work-stealing pool of threads, forking them from the warm-up of the base arguments if a fork time is given.
+     *
+     * @param threads    number of simulations run in parallel
+     * @param output_dir if not null, the output of each scenario (as printed by a standalone run) is written to a file in this directory
+     * @param fork_time  if positive, the end of the warm-up shared by all the scenarios (in seconds)
+     * @return the results of each scenario in the same order as the scenarios
+     * @throws SimulationException if any scenario is invalid or fails
+     */
+    public SimulationResult[] run(int threads, final String output_dir, double fork_time) {
+	final SimulationConfig[] configs = new SimulationConfig[scenarios.size()];
+	for (int k = 0; k < configs.length; k++) {
+	    try {
+		configs[k] = EponSimulator.parseArguments(scenarios.get(k));
+		configs[k].validate();
+	    } catch (SimulationException e) {
+		throw new SimulationException("Scenario " + k + ": " + e.getMessage());
+	    }
+	}
+	final Simulation warmup = fork_time > 0 ? new Simulation(EponSimulator.parseArguments(base_scenario), NULL_OUTPUT) : null;
+	if (warmup != null) {
+	    warmup.runWarmup(fork_time);
+	}
+
+	ForkJoinPool pool = new ForkJoinPool(threads);
+	try {
+	    List<ForkJoinTask<SimulationResult>> tasks = new ArrayList<ForkJoinTask<SimulationResult>>();
+	    for (int k = 0; k < configs.length; k++) {
+		final int scenario = k;
+		tasks.add(pool.submit(new Callable<SimulationResult>() {
+			public SimulationResult call() throws IOException {
+			    return runScenario(scenario, configs[scenario], warmup, output_dir);
+			}
+		    }));
+	    }
+	    SimulationResult[] results = new SimulationResult[configs.length];
+	    for (int k = 0; k < configs.length; k++) {
+		try {
+		    results[k] = tasks.get(k).join();
+		} catch (RuntimeException e) {
+		    Throwable cause = e.getCause() != null ? e.getCause() : e;
+		    throw new SimulationException("Scenario " + k + ": " + cause.getMessage());
+		}
+	    }
+	    return results;
+	} finally {
+	    pool.shutdown();
+	}
+    }
+
+    /**
+     * Output stream that discards everything printed on it.
+     */
+    private static final PrintStream NULL_OUTPUT = new PrintStream(new OutputStream() {
+	    public void write(int b) {}
+	    public void write(byte[] b, int off, int len) {}
+	});
+
+    /**
+     * Runs the specified scenario, forked from the specified warm-up (if not null), writing its output to its own file (if an output directory is given).
+     */
+    private static SimulationResult runScenario(int scenario, SimulationConfig config, Simulation warmup, String output_dir) throws IOException {
+	PrintStream out = NULL_OUTPUT;
+	if (output_dir != null) {
+	    out = new PrintStream(new BufferedOutputStream(new FileOutputStream(new File(output_dir, "scenario_" + scenario + ".txt"))));
+	}
+	try {
+	    Simulation simulation = warmup == null ? new Simulation(config, out) : warmup.fork(config, out);
+	    SimulationResult result = simulation.run();
+	    result.printStatistics(out);
+	    if (config.simulation_allocation_report) {
+		result.printAllocationStatistics(out);
+	    }
+	    if (result.profile != null) {
+		result.profile.printProfile(out);
+	    }
+	    return result;
+	} finally {
+	    if (out != NULL_OUTPUT) {
+		out.close();
+	    }
+	}
+    }
+
+    /**
+     * Prints on the specified output stream the results of each scenario as comma-separated values, one line per ONU.
+     *
+     * @param out     the output stream
+     * @param results the results of each scenario
+     */
+    public void printCsv(PrintStream out, SimulationResult[] results) {
+	out.println("scenario,arguments," + OnuStatistics.CSV_HEADER);
+	for (int k = 0; k < results.length; k++) {
+	    String prefix = k + ",\"" + join(scenarios.get(k)) + "\",";
+	    for (OnuStatistics stats : results[k].onu_statistics) {
+		out.println(prefix + stats.toCsv());
+	    }
+	}
+    }
+
+    /**
+     * Prints on the specified output stream the results of each scenario as a JSON array, one object per scenario.
+     *
+     * @param out     the output stream
+     * @param results the results of each scenario
+     */
+    public void printJson(PrintStream out, SimulationResult[] results) {
+	out.println("[");
+	for (int k = 0; k < results.length; k++) {
+	    DelayHistogram histogram = results[k].getDelayHistogram();
+	    StringBuilder percentiles = new StringBuilder();
+	    for (double p : OnuStatistics.PERCENTILES) {
+		String value = OnuStatistics.formatValue(histogram.getPercentile(p));
+		percentiles.append(", \"p").append(OnuStatistics.formatPercentile(p).replace(".", "")).append("_packet_delay\": ").append(value.isEmpty() ? "null" : value);
+	    }
+	    out.println("  {\"scenario\": " + k + ", \"arguments\": \"" + join(scenarios.get(k)) + "\"" + percentiles + ", \"onus\": [");
+	    OnuStatistics[] stats = results[k].onu_statistics;
+	    for (int id = 0; id < stats.length; id++) {
+		out.println("    " + stats[id].toJson() + (id < stats.length - 1 ? "," : ""));
+	    }
+	    out.println("  ]" + (results[k].profile != null ? ", \"profile\": " + results[k].profile.toJson() : "") + "}" + (k < results.length - 1 ? "," : ""));
+	}
+	out.println("]");
+    }
+
+    private static String join(String[] args) {
+	StringBuilder sb = new StringBuilder();
+	for (int i = 0; i < args.length; i++) {
+	    if (i > 0) {
+		sb.append(' ');
+	    }
+	    sb.append(args[i].replace("\\", "\\\\").replace("\"", "\\\""));
+	}
+	return sb.toString();
+    }
+
+    /**
+     * Runs a sweep as specified by the command line arguments.
+     * Usage: java EponSimulator -S sweep_file [-j threads] [-o results_file (.csv|.json)] [-O output_dir] [-F fork_time (s)] [simulation arguments]
+     *
+     * @param args the command line arguments
+     * @throws SimulationException if any argument is invalid or any scenario fails
+     */
+    public static void runCommandLine(String[] args) {
+	String sweep_file = null;
+	String results_file = null;
+	String output_dir = null;
+	int threads = Runtime.getRuntime().availableProcessors();
+	double fork_time = 0.0;
+	List<String> base_args = new ArrayList<String>();
+	for (int i = 0; i < args.length; i++) {
+	    if (args[i].equals("-S") && i + 1 < args.length) {
+		sweep_file = args[++i];
+	    } else if (args[i].equals("-j") && i + 1 < args.length) {
+		try {
+		    threads = Integer.parseInt(args[++i]);
+		} catch (NumberFormatException e) {
+		    throw new SimulationException("Invalid number of threads!");
+		}
+		if (threads <= 0) {
+		    throw new SimulationException("Invalid number of threads!");
+		}
+	    } else if (args[i].equals("-o") && i + 1 < args.length) {
+		results_file = args[++i];
+	    } else if (args[i].equals("-O") && i + 1 < args.length) {
+		output_dir = args[++i];
+	    } else if (args[i].equals("-F") && i + 1 < args.length) {
+		try {
+		    fork_time = Double.parseDouble(args[++i]);
+		} catch (NumberFormatException e) {
+		    throw new SimulationException("Invalid fork time!");
+		}
+		if (!(fork_time > 0)) {
+		    throw new SimulationException("Invalid fork time!");
+		}
+	    } else {
+		base_args.add(args[i]);
+	    }
+	}
+	if (sweep_file == null) {
+	    throw new SimulationException("Missing sweep file!\nUsage: " + USAGE);
+	}
+	if (output_dir != null && !new File(output_dir).isDirectory() && !new File(output_dir).mkdirs()) {
+	    throw new SimulationException("Invalid output directory!");
+	}
+
+	ParameterSweep sweep = new ParameterSweep(sweep_file, base_args.toArray(new String[base_args.size()]));
+	SimulationResult[] results = sweep.run(threads, output_dir, fork_time);
+	PrintStream out = System.out;
+	try {
+	    if (results_file != null) {
+		out = new PrintStream(new FileOutputStream(results_file));
+	    }
+	} catch (IOException e) {
+	    throw new SimulationException("Invalid results file!");
+	}
+	if (results_file != null && results_file.endsWith(".json")) {
+	    sweep.printJson(out, results);
+	} else {
+	    sweep.printCsv(out, results);
+	}
+	out.flush();
+	if (out != System.out) {
+	    out.close();
+	}
+    }
+}
@@ -1,16 +1,35 @@
 package es.uvigo.det.labredes.epon;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * This class extends TrafficGenerator class to simulate Pareto traffic.
+ * Uniform variates are generated and transformed in batches, so the interarrival times are the same as if they were generated one by one.
+ * As in PoissonTrafficGenerator, checkpoints save the state of the random number stream and the uniform variates of the current batch not used yet.
  *
  * @author Sergio Herreria-Alonso 
  * @version 1.0
  */
 public class ParetoTrafficGenerator extends TrafficGenerator {
-    private Random rng;
+    private RandomGenerator rng;
     private double alpha;
+    /**
+     * Scale parameter (minimum interarrival time) of the distribution (in seconds).
+     */
+    private double xm;
+    /**
+     * Uniform variates generated in advance.
+     */
+    private double[] uniforms;
+    /**
+     * Values of the uniform variates raised to 1/alpha.
+     */
+    private double[] variates;
+    private int next_variate;
 
     /**
      * Creates a new Pareto traffic generator.
@@ -21,36 +40,146 @@ public class ParetoTrafficGenerator extends TrafficGenerator {
     public ParetoTrafficGenerator(long brate, int psize) {
 	super(brate, psize);
 	alpha = 2.5;
+	xm = (alpha - 1) / alpha / packet_rate;
 	rng = new Random();
+	uniforms = new double[BATCH_SIZE];
+	variates = new double[BATCH_SIZE];
+	next_variate = BATCH_SIZE;
     }
 
     /**
      * Sets the shape parameter (alpha) of this Pareto traffic generator.
+     * The uniform variates already generated are kept and transformed again with the new shape, so the random number stream is used in the same way whenever alpha is set.
      *
      * @param a value for the shape parameter (alpha)
      */
     public void setAlpha(double a) {
 	alpha = a;
+	xm = (alpha - 1) / alpha / packet_rate;
+	transformVariates(next_variate);
+    }
+
+    /**
+     * Sets the size of arriving packets.
+     *
+     * @param psize size of arriving packets (in bits)
+     */
+    public void setPacketSize(int psize) {
+	super.setPacketSize(psize);
+	xm = (alpha - 1) / alpha / packet_rate;
     }
 
     /**
-     * Sets the seed of this Pareto traffic generator.
+     * Sets the bit rate of this Pareto traffic generator.
+     *
+     * @param brate bit rate (in b/s)
+     */
+    public void setRate(long brate) {
+	super.setRate(brate);
+	xm = (alpha - 1) / alpha / packet_rate;
+    }
+
+    /**
+     * Sets the seed of this Pareto traffic generator, which then uses a java.util.Random stream.
      *
      * @param seed initial seed
      */
     public void setSeed(long seed) {
-	rng.setSeed(seed);
+	rng = new Random(seed);
+	next_variate = BATCH_SIZE;
+    }
+
+    /**
+     * Sets the random number stream of this Pareto traffic generator.
+     *
+     * @param stream random number stream (see RandomStreams)
+     */
+    public void setRandomGenerator(RandomGenerator stream) {
+	rng = stream;
+	next_variate = BATCH_SIZE;
+    }
+
+    /**
+     * Generates the next batch of uniform variates and raises them to 1/alpha.
+     */
+    private void fillVariates() {
+	for (int i = 0; i < BATCH_SIZE; i++) {
+	    uniforms[i] = rng.nextDouble();
+	}
+	transformVariates(0);
+	next_variate = 0;
+    }
+
+    /**
+     * Raises to 1/alpha the uniform variates of the current batch from the specified position.
+     */
+    private void transformVariates(int first) {
+	double exponent = 1 / alpha;
+	for (int i = first; i < BATCH_SIZE; i++) {
+	    variates[i] = Math.pow(uniforms[i], exponent);
+	}
+    }
+
+    /**
+     * Returns the time elapsed between the last packet arrival and the next one.
+     *
+     * @return time between consecutive packet arrivals (in seconds)
+     */
+    protected double getNextInterarrivalTime() {
+	if (next_variate == BATCH_SIZE) {
+	    fillVariates();
+	}
+	return xm / variates[next_variate++];
+    }
+
+    /**
+     * Stores in the specified array, from the specified position, the time elapsed between the next packet arrivals, transforming the values left in the current batch of variates.
+     *
+     * @param out    array in which interarrival times are stored (in seconds)
+     * @param offset position of the first value stored
+     * @param n      maximum number of values to be stored
+     * @return the number of stored values
+     */
+    protected int fillInterarrivalTimes(double[] out, int offset, int n) {
+	if (next_variate == BATCH_SIZE) {
+	    fillVariates();
+	}
+	int count = Math.min(n, BATCH_SIZE - next_variate);
+	for (int i = 0; i < count; i++) {
+	    out[offset + i] = xm / variates[next_variate + i];
+	}
+	next_variate += count;
+	return count;
+    }
+
+    /**
+     * Writes the state of this Pareto traffic generator on the specified checkpoint stream.
+     *
+     * @param out the checkpoint stream
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+	super.writeState(out);
+	RandomStreams.writeState(rng, out);
+	out.writeInt(next_variate);
+	for (int i = next_variate; i < BATCH_SIZE; i++) {
+	    out.writeDouble(uniforms[i]);
+	}
     }
 
     /**
-     * Returns the instant at which the next packet arrives.
+     * Restores the state of this Pareto traffic generator from the specified checkpoint stream.
      *
-     * @return instant at which the next packet arrives (in seconds)
+     * @param in the checkpoint stream
+     * @throws IOException if the state cannot be read
      */
-    public double getNextArrival() {
-	double xm = (alpha - 1) / alpha / packet_rate;
-	double rand = rng.nextDouble();
-	arrival_time += xm / Math.pow(rand, 1 / alpha);	
-	return arrival_time;
+    public void readState(DataInputStream in) throws IOException {
+	super.readState(in);
+	rng = RandomStreams.readState(rng, in);
+	next_variate = in.readInt();
+	for (int i = next_variate; i < BATCH_SIZE; i++) {
+	    uniforms[i] = in.readDouble();
+	}
+	transformVariates(next_variate);
     }    
 }
\ No newline at end of file
@@ -1,15 +1,26 @@
 package es.uvigo.det.labredes.epon;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * This class extends TrafficGenerator class to simulate Poisson traffic.
+ * Exponential variates are generated in batches, so the interarrival times are the same as if they were generated one by one.
+ * Checkpoints save the state of the random number stream and the variates of the current batch not used yet.
  *
  * @author Sergio Herreria-Alonso 
  * @version 1.0
  */
 public class PoissonTrafficGenerator extends TrafficGenerator {
-    private Random rng;
+    private RandomGenerator rng;
+    /**
+     * Exponential variates with mean 1 generated in advance.
+     */
+    private double[] variates;
+    private int next_variate;
 
     /**
      * Creates a new Poisson traffic generator.
@@ -20,25 +31,97 @@ public class PoissonTrafficGenerator extends TrafficGenerator {
     public PoissonTrafficGenerator(long brate, int psize) {
 	super(brate, psize);
 	rng = new Random();
+	variates = new double[BATCH_SIZE];
+	next_variate = BATCH_SIZE;
     }
 
     /**
-     * Sets the seed of this Poisson traffic generator.
+     * Sets the seed of this Poisson traffic generator, which then uses a java.util.Random stream.
      *
      * @param seed initial seed
      */
     public void setSeed(long seed) {
-	rng.setSeed(seed);
+	rng = new Random(seed);
+	next_variate = BATCH_SIZE;
+    }
+
+    /**
+     * Sets the random number stream of this Poisson traffic generator.
+     *
+     * @param stream random number stream (see RandomStreams)
+     */
+    public void setRandomGenerator(RandomGenerator stream) {
+	rng = stream;
+	next_variate = BATCH_SIZE;
+    }
+
+    /**
+     * Returns the time elapsed between the last packet arrival and the next one.
+     *
+     * @return time between consecutive packet arrivals (in seconds)
+     */
+    protected double getNextInterarrivalTime() {
+	if (next_variate == BATCH_SIZE) {
+	    fillVariates();
+	}
+	return variates[next_variate++] / packet_rate;
+    }
+
+    /**
+     * Stores in the specified array, from the specified position, the time elapsed between the next packet arrivals, copying the values left in the current batch of variates.
+     *
+     * @param out    array in which interarrival times are stored (in seconds)
+     * @param offset position of the first value stored
+     * @param n      maximum number of values to be stored
+     * @return the number of stored values
+     */
+    protected int fillInterarrivalTimes(double[] out, int offset, int n) {
+	if (next_variate == BATCH_SIZE) {
+	    fillVariates();
+	}
+	int count = Math.min(n, BATCH_SIZE - next_variate);
+	for (int i = 0; i < count; i++) {
+	    out[offset + i] = variates[next_variate + i] / packet_rate;
+	}
+	next_variate += count;
+	return count;
+    }
+
+    /**
+     * Generates the next batch of exponential variates.
+     */
+    private void fillVariates() {
+	RandomStreams.fillExponentials(rng, variates);
+	next_variate = 0;
+    }
+
+    /**
+     * Writes the state of this Poisson traffic generator on the specified checkpoint stream.
+     *
+     * @param out the checkpoint stream
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+	super.writeState(out);
+	RandomStreams.writeState(rng, out);
+	out.writeInt(next_variate);
+	for (int i = next_variate; i < BATCH_SIZE; i++) {
+	    out.writeDouble(variates[i]);
+	}
     }
 
     /**
-     * Returns the instant at which the next packet arrives.
+     * Restores the state of this Poisson traffic generator from the specified checkpoint stream.
      *
-     * @return instant at which the next packet arrives (in seconds)
+     * @param in the checkpoint stream
+     * @throws IOException if the state cannot be read
      */
-    public double getNextArrival() {
-	double rand = rng.nextDouble();
-	arrival_time += -1.0 * Math.log(rand) / packet_rate;
-	return arrival_time;
+    public void readState(DataInputStream in) throws IOException {
+	super.readState(in);
+	rng = RandomStreams.readState(rng, in);
+	next_variate = in.readInt();
+	for (int i = next_variate; i < BATCH_SIZE; i++) {
+	    variates[i] = in.readDouble();
+	}
     }    
 }
\ No newline at end of file
@@ -0,0 +1,180 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+import java.util.random.RandomGenerator;
+
+/**
+ * This class creates the independent random number streams used by the traffic generators of the ONUs.
+ * Streams are obtained from a single generator seeded with the simulation seed. With the leapable Xoshiro256PlusPlus algorithm, each replication starts after a leap of the generator (2^192 values) and each ONU after a further jump (2^128 values), so the streams of different ONUs and replications never overlap.
+ * With the splittable L64X128MixRandom algorithm, replications and ONUs get successive splits of the generator instead.
+ * All the streams are created before the simulation starts, so they do not depend on the order in which the ONUs are simulated.
+ * The legacy algorithm uses a java.util.Random seeded with the simulation seed plus the ONU identifier for each ONU, as in previous versions.
+ * Both algorithms are implemented in this package (see Xoshiro256PlusPlus and L64X128MixRandom) and generate the same values as those of java.util.random, but their state can be saved in checkpoints.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public final class RandomStreams {
+    /**
+     * Name of the legacy algorithm.
+     */
+    public static final String LEGACY = "legacy";
+
+    private RandomStreams() {
+    }
+
+    /**
+     * Returns true if the specified random number generator algorithm is supported.
+     *
+     * @param algorithm the algorithm name (legacy, Xoshiro256PlusPlus or L64X128MixRandom)
+     * @return true if the algorithm is supported
+     */
+    public static boolean isValidAlgorithm(String algorithm) {
+	return algorithm.equals(LEGACY) || algorithm.equals(Xoshiro256PlusPlus.NAME) || algorithm.equals(L64X128MixRandom.NAME);
+    }
+
+    /**
+     * Creates the random number streams of the specified number of ONUs.
+     *
+     * @param algorithm   the algorithm name (see isValidAlgorithm)
+     * @param seed        the simulation seed
+     * @param replication the replication index (0 for the first one)
+     * @param num_onus    the number of ONUs
+     * @return the random number stream of each ONU
+     * @throws SimulationException if the algorithm is not supported or the replication index is invalid
+     */
+    public static RandomGenerator[] createStreams(String algorithm, long seed, int replication, int num_onus) {
+	if (!isValidAlgorithm(algorithm)) {
+	    throw new SimulationException("Invalid random number generator!");
+	}
+	if (replication < 0 || (replication > 0 && algorithm.equals(LEGACY))) {
+	    throw new SimulationException("Invalid replication!");
+	}
+	RandomGenerator[] streams = new RandomGenerator[num_onus];
+	if (algorithm.equals(LEGACY)) {
+	    for (int id = 0; id < num_onus; id++) {
+		streams[id] = new Random(seed + id);
+	    }
+	} else if (algorithm.equals(Xoshiro256PlusPlus.NAME)) {
+	    Xoshiro256PlusPlus generator = new Xoshiro256PlusPlus(seed);
+	    for (int r = 0; r < replication; r++) {
+		generator.leap();
+	    }
+	    for (int id = 0; id < num_onus; id++) {
+		streams[id] = generator.copyAndJump();
+	    }
+	} else {
+	    L64X128MixRandom generator = new L64X128MixRandom(seed);
+	    for (int r = 0; r < replication; r++) {
+		generator.split();
+	    }
+	    generator = generator.split();
+	    for (int id = 0; id < num_onus; id++) {
+		streams[id] = generator.split();
+	    }
+	}
+	return streams;
+    }
+
+    /**
+     * Writes the state of the specified random number stream on the specified checkpoint stream.
+     * A java.util.Random stream is written through Java serialization.
+     *
+     * @param rng the random number stream (see createStreams)
+     * @param out the checkpoint stream
+     * @throws IOException if the state cannot be written
+     */
+    public static void writeState(RandomGenerator rng, DataOutputStream out) throws IOException {
+	if (rng instanceof Xoshiro256PlusPlus) {
+	    ((Xoshiro256PlusPlus) rng).writeState(out);
+	} else if (rng instanceof L64X128MixRandom) {
+	    ((L64X128MixRandom) rng).writeState(out);
+	} else if (rng instanceof Random) {
+	    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	    ObjectOutputStream object = new ObjectOutputStream(bytes);
+	    object.writeObject(rng);
+	    object.close();
+	    out.writeInt(bytes.size());
+	    bytes.writeTo(out);
+	} else {
+	    throw new SimulationException("Invalid random number generator: The state of " + rng.getClass().getName() + " cannot be saved!");
+	}
+    }
+
+    /**
+     * Restores the state of the specified random number stream from the specified checkpoint stream, and returns the restored stream.
+     * The states of Xoshiro256PlusPlus and L64X128MixRandom streams are restored in place, whereas a new java.util.Random is deserialized.
+     *
+     * @param rng the random number stream, of the same algorithm as the saved one
+     * @param in  the checkpoint stream
+     * @return the restored random number stream
+     * @throws IOException if the state cannot be read
+     */
+    public static RandomGenerator readState(RandomGenerator rng, DataInputStream in) throws IOException {
+	if (rng instanceof Xoshiro256PlusPlus) {
+	    ((Xoshiro256PlusPlus) rng).readState(in);
+	    return rng;
+	}
+	if (rng instanceof L64X128MixRandom) {
+	    ((L64X128MixRandom) rng).readState(in);
+	    return rng;
+	}
+	if (!(rng instanceof Random)) {
+	    throw new SimulationException("Invalid random number generator: The state of " + rng.getClass().getName() + " cannot be restored!");
+	}
+	byte[] bytes = new byte[in.readInt()];
+	in.readFully(bytes);
+	ObjectInputStream object = new ObjectInputStream(new ByteArrayInputStream(bytes));
+	object.setObjectInputFilter(ObjectInputFilter.Config.createFilter("java.util.Random;!*"));
+	try {
+	    return (Random) object.readObject();
+	} catch (ClassNotFoundException e) {
+	    throw new IOException("Invalid random number stream: " + e.getMessage());
+	} finally {
+	    object.close();
+	}
+    }
+
+    /**
+     * Returns an exponentially distributed value with mean 1.
+     * The ziggurat sampler of RandomGenerator is used, except for java.util.Random streams, which keep the inverse transform method so that legacy simulations reproduce previous results.
+     *
+     * @param rng the random number stream
+     * @return an exponential random value with mean 1
+     */
+    public static double nextExponential(RandomGenerator rng) {
+	if (rng instanceof Random) {
+	    return -Math.log(rng.nextDouble());
+	}
+	return rng.nextExponential();
+    }
+
+    /**
+     * Fills the specified array with exponentially distributed values with mean 1, as successive calls to nextExponential would do.
+     *
+     * @param rng the random number stream
+     * @param out the array to be filled
+     */
+    public static void fillExponentials(RandomGenerator rng, double[] out) {
+	if (rng instanceof Random) {
+	    for (int i = 0; i < out.length; i++) {
+		out[i] = rng.nextDouble();
+	    }
+	    for (int i = 0; i < out.length; i++) {
+		out[i] = -Math.log(out[i]);
+	    }
+	} else {
+	    for (int i = 0; i < out.length; i++) {
+		out[i] = rng.nextExponential();
+	    }
+	}
+    }
+}
@@ -1,19 +1,80 @@
 package es.uvigo.det.labredes.epon;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.Arrays;
-import java.util.Collections;
 
 /**
  * This class implements an array of traffic reports.
+ * Reports are kept in primitive columns indexed by ONU identifier, so registering reports, running a DBA algorithm and sorting the reports allocate no memory.
+ * Only the ONUs that report are visited: the ONUs that did not report get an empty report with a common transmission size, which is accounted for in aggregate.
+ * Sorting computes the order of the reporting ONUs with a stable radix sort, and the position of any ONU in the whole order is then obtained without visiting the empty reports.
  *
  * @author Sergio Herreria-Alonso 
  * @version 1.0
  */
 public class ReportArray {
     /**
-     * The array of traffic reports
+     * True for the ONUs that have a report in this report array.
      */
-    private Report[] report_array;
+    private boolean[] reported;
+    /**
+     * The amount of data stored in the upstream queue of each ONU.
+     */
+    private int[] onu_qsizes;
+    /**
+     * The amount of data that each ONU can transmit in the next DBA cycle.
+     */
+    private int[] onu_tsizes;
+    /**
+     * The identifiers of the reporting ONUs in the order in which they reported.
+     */
+    private int[] reporters;
+    /**
+     * The number of reporting ONUs.
+     */
+    private int num_reports;
+    /**
+     * True if the ONUs that did not report have been given an empty report.
+     */
+    private boolean empty_reports;
+    /**
+     * The amount of data that each ONU without report can transmit in the next DBA cycle.
+     */
+    private int empty_tsize;
+    /**
+     * The identifiers of the reporting ONUs in the order computed by the last sort.
+     */
+    private int[] order;
+    /**
+     * The identifiers of the reporting ONUs in increasing order, computed by the last sort.
+     */
+    private int[] reporters_by_id;
+    /**
+     * The position of each reporting ONU in the order computed by the last sort.
+     */
+    private int[] ranks;
+    /**
+     * True if the reports have been sorted since the last clear.
+     */
+    private boolean sorted;
+    /**
+     * The number of sorted reports that precede the empty reports and the number of sorted reports with the same value as the empty reports.
+     */
+    private int num_preceding_reports;
+    private int num_tied_reports;
+    /**
+     * The identifiers of all the ONUs in the order computed by the last sort (null until requested).
+     */
+    private int[] sorted_onus;
+    private boolean sorted_onus_valid;
+    /**
+     * Auxiliary arrays of the radix sort.
+     */
+    private int[] sort_buffer;
+    private int[] sort_counts;
     /**
      * The number of active ONUs.
      */
@@ -29,75 +90,430 @@ public class ReportArray {
 
     /**
      * Creates a new array of traffic reports.
+     *
+     * @param num_onus the number of ONUs
      */
-    public ReportArray() {
-	report_array = new Report[EponSimulator.num_onus];
-	overall_qsize = overall_tsize = 0;
-	num_active_onus = 0;
+    public ReportArray(int num_onus) {
+	reported = new boolean[num_onus];
+	onu_qsizes = new int[num_onus];
+	onu_tsizes = new int[num_onus];
+	reporters = new int[num_onus];
+	order = new int[num_onus];
+	reporters_by_id = new int[num_onus];
+	ranks = new int[num_onus];
+	sort_buffer = new int[num_onus];
+	sort_counts = new int[256];
+	clear();
     }
 
     /**
-     * Adds the specified report to this report array at the right position.
+     * Adds the report of the specified ONU to this report array.
      *
-     * @param report the Report to be added
+     * @param id    ONU identifier
+     * @param qsize amount of data stored in the upstream queue of the ONU
      * @return true if the report is correctly added to this report array
      */
-    public boolean addReport(Report report) {
-	if (report.onu_id >= 0 && report.onu_id < EponSimulator.num_onus) {
-	    if (report.onu_qsize > 0) {
-		overall_qsize += report.onu_qsize;
-		num_active_onus++;
-	    }
-	    if (report.onu_tsize > 0) {
-		overall_tsize += report.onu_tsize;
-	    }
-	    report_array[report.onu_id] = report;
-	    return true;
+    public boolean addReport(int id, int qsize) {
+	if (id < 0 || id >= reported.length) {
+	    return false;
+	}
+	if (qsize > 0) {
+	    overall_qsize += qsize;
+	    num_active_onus++;
+	}
+	if (!reported[id]) {
+	    reported[id] = true;
+	    reporters[num_reports++] = id;
+	}
+	onu_qsizes[id] = qsize;
+	onu_tsizes[id] = 0;
+	return true;
+    }
+
+    /**
+     * Gives an empty report with the specified transmission size to all the ONUs that did not report.
+     *
+     * @param tsize amount of data that each ONU without report can transmit in the next DBA cycle
+     */
+    public void addEmptyReports(int tsize) {
+	empty_reports = true;
+	empty_tsize = tsize;
+	if (tsize > 0) {
+	    overall_tsize += getNumEmptyReports() * tsize;
 	}
-	return false;
     }
 
     /**
      * Removes all the reports from this report array.
      */
     public void clear() {
+	for (int i = 0; i < num_reports; i++) {
+	    reported[reporters[i]] = false;
+	}
+	num_reports = 0;
+	empty_reports = false;
+	empty_tsize = 0;
+	sorted = sorted_onus_valid = false;
 	overall_qsize = overall_tsize = 0;
 	num_active_onus = 0;
-	Arrays.fill(report_array, null);
     }
 
     /**
-     * Returns the report at the specified position in this report array.
+     * Returns the number of ONUs that can report to this report array.
+     *
+     * @return the number of ONUs
+     */
+    public int getNumOnus() {
+	return reported.length;
+    }
+
+    /**
+     * Returns the number of ONUs that have reported.
+     *
+     * @return the number of reports
+     */
+    public int getNumReports() {
+	return num_reports;
+    }
+
+    /**
+     * Returns the identifier of the ONU that reported at the specified position, in the order in which the ONUs reported.
+     *
+     * @param i the position (lower than getNumReports)
+     * @return the ONU identifier
+     */
+    public int getReportingOnu(int i) {
+	return reporters[i];
+    }
+
+    /**
+     * Returns the number of ONUs that have not reported.
+     *
+     * @return the number of empty reports
+     */
+    public int getNumEmptyReports() {
+	return reported.length - num_reports;
+    }
+
+    /**
+     * Returns true if the specified ONU has reported.
+     *
+     * @param id ONU identifier
+     * @return true if the ONU has a report
+     */
+    public boolean hasReport(int id) {
+	return reported[id];
+    }
+
+    /**
+     * Returns the column of upstream queue sizes, indexed by ONU identifier. Only the entries of the ONUs with a report are meaningful.
+     *
+     * @return the amount of data stored in the upstream queue of each ONU
+     */
+    public int[] getQueueSizes() {
+	return onu_qsizes;
+    }
+
+    /**
+     * Returns the column of transmission sizes, indexed by ONU identifier. DBA algorithms set the entries of the ONUs with a report.
+     *
+     * @return the amount of data that each ONU can transmit in the next DBA cycle
+     */
+    public int[] getTransmissionSizes() {
+	return onu_tsizes;
+    }
+
+    /**
+     * Returns the amount of data that the specified ONU can transmit in the next DBA cycle, including the ONUs without report.
+     *
+     * @param id ONU identifier
+     * @return the transmission size of the ONU
+     */
+    public int getTransmissionSize(int id) {
+	return reported[id] ? onu_tsizes[id] : empty_tsize;
+    }
+
+    /**
+     * Returns the amount of data that each ONU without report can transmit in the next DBA cycle.
+     *
+     * @return the transmission size of the empty reports
+     */
+    public int getEmptyTransmissionSize() {
+	return empty_tsize;
+    }
+
+    /**
+     * Returns the identifier of the reporting ONU at the specified position of the order computed by the last call to sortReports.
+     *
+     * @param i the position among the reports (lower than getNumReports)
+     * @return the ONU identifier
+     */
+    public int getSortedOnu(int i) {
+	return order[i];
+    }
+
+    /**
+     * Returns the number of reports that precede the report of the specified ONU in the order computed by the last call to sortReports.
+     *
+     * @param id ONU identifier
+     * @return the number of preceding reports, excluding the empty ones
+     */
+    public int getNumReportsBefore(int id) {
+	if (reported[id]) {
+	    return ranks[id];
+	}
+	return num_preceding_reports + lowerBound(order, num_preceding_reports, num_preceding_reports + num_tied_reports, id);
+    }
+
+    /**
+     * Returns the number of empty reports that precede the report of the specified ONU in the order computed by the last call to sortReports.
+     *
+     * @param id ONU identifier
+     * @return the number of preceding empty reports
+     */
+    public int getNumEmptyReportsBefore(int id) {
+	if (reported[id]) {
+	    if (ranks[id] < num_preceding_reports) {
+		return 0;
+	    } else if (ranks[id] >= num_preceding_reports + num_tied_reports) {
+		return getNumEmptyReports();
+	    }
+	}
+	// Empty reports and reports with the same value are ordered by ONU identifier
+	return id - lowerBound(reporters_by_id, 0, num_reports, id);
+    }
+
+    /**
+     * Returns the identifiers of all the ONUs, including the ONUs without report, in the order computed by the last call to sortReports.
+     * The returned array is owned by this report array and is only valid until the next change.
+     *
+     * @return the sorted ONU identifiers
+     */
+    public int[] getSortedOnus() {
+	if (sorted_onus == null) {
+	    sorted_onus = new int[reported.length];
+	}
+	if (!sorted_onus_valid) {
+	    int n = 0;
+	    for (int i = 0; i < num_preceding_reports; i++) {
+		sorted_onus[n++] = order[i];
+	    }
+	    int tied = num_preceding_reports;
+	    int tied_end = num_preceding_reports + num_tied_reports;
+	    for (int id = 0; id < reported.length; id++) {
+		if (!reported[id]) {
+		    sorted_onus[n++] = id;
+		} else if (tied < tied_end && order[tied] == id) {
+		    sorted_onus[n++] = id;
+		    tied++;
+		}
+	    }
+	    for (int i = tied_end; i < num_reports; i++) {
+		sorted_onus[n++] = order[i];
+	    }
+	    sorted_onus_valid = true;
+	}
+	return sorted_onus;
+    }
+
+    /**
+     * Prints on the specified output stream a message for each report contained in this report array, in sorted order if the reports have been sorted.
+     *
+     * @param out the output stream
+     */
+    public void printReports(PrintStream out) {
+	int[] onus = sorted ? getSortedOnus() : null;
+	for (int i = 0; i < reported.length; i++) {
+	    int id = sorted ? onus[i] : i;
+	    if (reported[id] || empty_reports) {
+		out.println("REPORT ONU " + id + " qsize=" + (reported[id] ? onu_qsizes[id] : 0) + " tsize=" + getTransmissionSize(id));
+	    }
+	}
+	out.println("OVERALL ONUs qsize=" + overall_qsize + " tsize=" + overall_tsize + " active=" + num_active_onus);
+    }
+
+    /**
+     * Writes on the specified trace a record for each report contained in this report array, in sorted order if the reports have been sorted.
+     *
+     * @param trace the trace writer
+     */
+    public void traceReports(TraceWriter trace) {
+	int[] onus = sorted ? getSortedOnus() : null;
+	for (int i = 0; i < reported.length; i++) {
+	    int id = sorted ? onus[i] : i;
+	    if (reported[id] || empty_reports) {
+		trace.writeReport(id, reported[id] ? onu_qsizes[id] : 0, getTransmissionSize(id));
+	    }
+	}
+	trace.writeOverallReport(overall_qsize, overall_tsize, num_active_onus);
+    }
+
+    /**
+     * Writes the reports of this report array and their last sorted order on the specified checkpoint stream (see Simulation.writeCheckpoint).
      *
-     * @param pos the specified position
-     * @return the report at the specified position in this report array
+     * @param out the checkpoint stream
+     * @throws IOException if the reports cannot be written
      */
-    public Report getReport(int pos) {
-	return report_array[pos];
+    public void writeState(DataOutputStream out) throws IOException {
+	out.writeInt(num_reports);
+	for (int i = 0; i < num_reports; i++) {
+	    int id = reporters[i];
+	    out.writeInt(id);
+	    out.writeInt(onu_qsizes[id]);
+	    out.writeInt(onu_tsizes[id]);
+	}
+	out.writeBoolean(empty_reports);
+	out.writeInt(empty_tsize);
+	out.writeInt(num_active_onus);
+	out.writeInt(overall_qsize);
+	out.writeInt(overall_tsize);
+	out.writeBoolean(sorted);
+	if (sorted) {
+	    for (int i = 0; i < num_reports; i++) {
+		out.writeInt(order[i]);
+	    }
+	    out.writeInt(num_preceding_reports);
+	    out.writeInt(num_tied_reports);
+	}
     }
 
     /**
-     * Prints on standard output a message for each report contained in this report array.
+     * Replaces the reports of this report array with those read from the specified checkpoint stream.
+     *
+     * @param in the checkpoint stream
+     * @throws IOException if the reports cannot be read
      */
-    public void printReports() {
-	Report report;
-	for (int i = 0; i < EponSimulator.num_onus; i++) {
-	    report = report_array[i];
-	    if (report != null) {
-		report.printReport();
+    public void readState(DataInputStream in) throws IOException {
+	clear();
+	num_reports = in.readInt();
+	for (int i = 0; i < num_reports; i++) {
+	    int id = in.readInt();
+	    reporters[i] = id;
+	    reported[id] = true;
+	    onu_qsizes[id] = in.readInt();
+	    onu_tsizes[id] = in.readInt();
+	}
+	empty_reports = in.readBoolean();
+	empty_tsize = in.readInt();
+	num_active_onus = in.readInt();
+	overall_qsize = in.readInt();
+	overall_tsize = in.readInt();
+	sorted = in.readBoolean();
+	if (sorted) {
+	    for (int i = 0; i < num_reports; i++) {
+		order[i] = in.readInt();
+		ranks[order[i]] = i;
 	    }
+	    num_preceding_reports = in.readInt();
+	    num_tied_reports = in.readInt();
+	    System.arraycopy(reporters, 0, reporters_by_id, 0, num_reports);
+	    Arrays.sort(reporters_by_id, 0, num_reports);
 	}
-	System.out.println("OVERALL ONUs qsize=" + overall_qsize + " tsize=" + overall_tsize + " active=" + num_active_onus);
     }
 
     /**
-     * Sorts this report array by the specified report field.
+     * Sorts the reports of this report array by the specified report field. Reports with equal values, including the empty ones, keep the order of their ONU identifiers.
+     * The order of the reporting ONUs is obtained with getSortedOnu and the order of all the ONUs with getSortedOnus.
      *
-     * @param sort_by       the report field to sort by
+     * @param sort_by       the report field to sort by (onu_qsize|onu_tsize)
      * @param reverse_order if true sorts the array in reverse order
      */
     public void sortReports(String sort_by, boolean reverse_order) {
-	Report.SORT_BY = sort_by;
-	Arrays.sort(report_array, reverse_order ? Collections.reverseOrder() : null);
+	int[] keys;
+	int empty_key;
+	if (sort_by.equals("onu_qsize")) {
+	    keys = onu_qsizes;
+	    empty_key = 0;
+	} else if (sort_by.equals("onu_tsize")) {
+	    keys = onu_tsizes;
+	    empty_key = empty_tsize;
+	} else {
+	    throw new SimulationException("Invalid report field: " + sort_by);
+	}
+	// Keys are flipped so that unsigned digit order is signed ascending (or descending) order
+	int flip = reverse_order ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+
+	System.arraycopy(reporters, 0, order, 0, num_reports);
+	radixSort(null, 0);
+	System.arraycopy(order, 0, reporters_by_id, 0, num_reports);
+	radixSort(keys, flip);
+
+	num_preceding_reports = num_tied_reports = 0;
+	for (int i = 0; i < num_reports; i++) {
+	    int id = order[i];
+	    ranks[id] = i;
+	    int cmp = Integer.compareUnsigned(keys[id] ^ flip, empty_key ^ flip);
+	    if (cmp < 0) {
+		num_preceding_reports++;
+	    } else if (cmp == 0) {
+		num_tied_reports++;
+	    }
+	}
+	sorted = true;
+	sorted_onus_valid = false;
+    }
+
+    /**
+     * Sorts the reporting ONUs contained in the order array by the specified keys (by their identifiers if keys is null) with a stable least significant digit radix sort.
+     * The digits shared by all the keys are skipped.
+     */
+    private void radixSort(int[] keys, int flip) {
+	int n = num_reports;
+	int all_bits = ~0;
+	int any_bits = 0;
+	for (int i = 0; i < n; i++) {
+	    int key = (keys == null ? order[i] : keys[order[i]]) ^ flip;
+	    all_bits &= key;
+	    any_bits |= key;
+	}
+
+	int[] source = order;
+	int[] target = sort_buffer;
+	for (int shift = 0; shift < 32; shift += 8) {
+	    if (((all_bits ^ any_bits) >>> shift & 0xFF) == 0) {
+		continue;
+	    }
+	    for (int d = 0; d < 256; d++) {
+		sort_counts[d] = 0;
+	    }
+	    for (int i = 0; i < n; i++) {
+		int key = (keys == null ? source[i] : keys[source[i]]) ^ flip;
+		sort_counts[key >>> shift & 0xFF]++;
+	    }
+	    int position = 0;
+	    for (int d = 0; d < 256; d++) {
+		int count = sort_counts[d];
+		sort_counts[d] = position;
+		position += count;
+	    }
+	    for (int i = 0; i < n; i++) {
+		int id = source[i];
+		int key = (keys == null ? id : keys[id]) ^ flip;
+		target[sort_counts[key >>> shift & 0xFF]++] = id;
+	    }
+	    int[] swap = source;
+	    source = target;
+	    target = swap;
+	}
+	if (source != order) {
+	    System.arraycopy(source, 0, order, 0, n);
+	}
+    }
+
+    /**
+     * Returns the number of identifiers lower than the specified one in the increasing range [from, to) of the specified array.
+     */
+    private static int lowerBound(int[] ids, int from, int to, int id) {
+	int low = from;
+	int high = to;
+	while (low < high) {
+	    int mid = (low + high) >>> 1;
+	    if (ids[mid] < id) {
+		low = mid + 1;
+	    } else {
+		high = mid;
+	    }
+	}
+	return low - from;
     }
 }
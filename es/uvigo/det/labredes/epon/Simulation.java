@@ -0,0 +1,724 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.random.RandomGenerator;
+
+/**
+ * This class implements a simulation of the upstream channel of an EPON.
+ * Each simulation owns its parameters, its event list, its OLT and its ONUs, so several simulations can run concurrently in the same JVM.
+ * The whole state of a simulation can be saved periodically in a checkpoint file, from which an interrupted simulation is resumed with the same results as an uninterrupted one.
+ * The same state, kept in memory at the end of a warm-up, is the starting point of several simulations forked with different DBA parameters.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class Simulation {
+    /**
+     * Bytes at the beginning of every checkpoint file.
+     */
+    public static final byte[] CHECKPOINT_MAGIC = {'E', 'P', 'O', 'N', 'C', 'K', 'P', '2'};
+    /**
+     * The simulation parameters that control the checkpoints, the metrics and the profiling, which may change when a simulation is resumed.
+     */
+    private static final List<String> CHECKPOINT_PARAMETERS = Arrays.asList("simulation_checkpoint", "checkpoint_interval", "simulation_resume", "simulation_metrics", "metrics_port", "simulation_profile");
+    /**
+     * The simulation parameters that may differ between the simulations forked from the same warm-up.
+     */
+    public static final List<String> BRANCH_PARAMETERS = Arrays.asList("dba_algorithm", "onu_queue_threshold", "onu_wakeup_len");
+
+    /**
+     * The simulation parameters. This is a private copy of the parameters given to the constructor, since some DBA algorithms adapt the DBA cycle during the simulation.
+     */
+    public SimulationConfig config;
+    /**
+     * The output stream on which simulated events are printed (if verbose).
+     */
+    public PrintStream out;
+    /**
+     * The binary trace of the simulated events (null if disabled).
+     */
+    public TraceWriter trace;
+    /**
+     * Event handler.
+     */
+    public EventList handler;
+    /**
+     * Pool of reusable events.
+     */
+    public EventPool event_pool;
+    /**
+     * Event lists of the ONU partitions (null if the simulation runs on a single thread).
+     */
+    private EventList[] partitions;
+    /**
+     * Pools of reusable events of the ONU partitions.
+     */
+    private EventPool[] partition_pools;
+    /**
+     * First sequence number reserved by the last call to reserveSequences in the event list of each ONU partition (or in the event handler).
+     */
+    private long[] reserved_sequences;
+    /**
+     * The warm-up detectors of the packet delays and of the queue sizes reported in each DBA cycle (null if warm-up detection is disabled).
+     */
+    public WarmupDetector delay_warmup, qsize_warmup;
+    /**
+     * The time at which the statistics of the ONUs were reset at the end of the warm-up (0 if they have not been reset).
+     */
+    private double statistics_start_time;
+    /**
+     * The OLT of the EPON.
+     */
+    private OLT olt;
+    /**
+     * The ONUs of the EPON.
+     */
+    private ONU[] onus;
+    /**
+     * True once the simulation has been run.
+     */
+    private boolean finished;
+    /**
+     * The simulation parameters given to the constructor, which must match those of the checkpoints from which the simulation is resumed.
+     */
+    private String parameters;
+    /**
+     * The simulation parameters given to the constructor, except the branch parameters, which must match those of the simulations forked from this one.
+     */
+    private String shared_parameters;
+    /**
+     * The time from which the next checkpoint is written (in seconds).
+     */
+    private double next_checkpoint_time;
+    /**
+     * True if the state of this simulation is restored from a checkpoint or a warm-up snapshot instead of starting from scratch.
+     */
+    private boolean restored;
+    /**
+     * The state of this simulation at the end of its warm-up (null if it has not been warmed up).
+     */
+    private byte[] snapshot;
+
+    /**
+     * Creates a new simulation with the specified parameters that prints simulated events on standard output.
+     *
+     * @param c the simulation parameters
+     * @throws SimulationException if the simulation parameters are invalid
+     */
+    public Simulation(SimulationConfig c) {
+	this(c, System.out);
+    }
+
+    /**
+     * Creates a new simulation with the specified parameters.
+     *
+     * @param c      the simulation parameters
+     * @param output the output stream on which simulated events are printed
+     * @throws SimulationException if the simulation parameters are invalid
+     */
+    public Simulation(SimulationConfig c, PrintStream output) {
+	this(c, output, null);
+    }
+
+    /**
+     * Creates a new simulation with the specified parameters that starts from the snapshot of the specified warm-up (if not null).
+     */
+    private Simulation(SimulationConfig c, PrintStream output, Simulation warmup) {
+	config = c.copy();
+	config.validate();
+	out = output;
+	finished = false;
+	parameters = describeParameters(config, false);
+	shared_parameters = describeParameters(config, true);
+	next_checkpoint_time = config.checkpoint_interval;
+	restored = config.simulation_resume || warmup != null;
+
+	// Event handler initialization
+	trace = config.simulation_trace.isEmpty() ? null : new TraceWriter(config.simulation_trace, config.trace_onus, config.trace_events);
+	event_pool = new EventPool(config.simulation_recycling);
+	handler = new EventList(config, event_pool);
+	int num_partitions = Math.min(config.simulation_threads, config.num_onus);
+	if (num_partitions > 1) {
+	    partitions = new EventList[num_partitions];
+	    partition_pools = new EventPool[num_partitions];
+	    for (int p = 0; p < num_partitions; p++) {
+		partition_pools[p] = new EventPool(config.simulation_recycling);
+		partitions[p] = new EventList(config, partition_pools[p]);
+	    }
+	}
+	reserved_sequences = new long[partitions == null ? 1 : partitions.length];
+
+	if (config.simulation_warmup) {
+	    delay_warmup = new WarmupDetector();
+	    qsize_warmup = new WarmupDetector();
+	}
+	statistics_start_time = 0.0;
+
+	// OLT initialization
+	olt = new OLT(this);
+
+	// ONUs initialization
+	TrafficGenerator[] generators = createTrafficGenerators();
+	onus = new ONU[config.num_onus];
+	for (int id = 0; id < config.num_onus; id++) {
+	    onus[id] = new ONU(this, id, olt, generators[id]);
+	}
+
+	if (warmup != null) {
+	    readSnapshot(warmup.snapshot);
+	} else if (config.simulation_resume) {
+	    readCheckpoint(config.simulation_checkpoint);
+	}
+    }
+
+    /**
+     * Returns the values of the specified simulation parameters, except those that control the checkpoints, the metrics and the profiling (and the branch parameters if requested), in alphabetical order.
+     */
+    private static String describeParameters(SimulationConfig c, boolean shared) {
+	Map<String, Object> values = new TreeMap<String, Object>();
+	for (Field field : SimulationConfig.class.getFields()) {
+	    String name = field.getName();
+	    if (Modifier.isStatic(field.getModifiers()) || CHECKPOINT_PARAMETERS.contains(name) || (shared && BRANCH_PARAMETERS.contains(name))) {
+		continue;
+	    }
+	    try {
+		values.put(name, field.get(c));
+	    } catch (IllegalAccessException e) {
+		throw new AssertionError(e);
+	    }
+	}
+	return values.toString();
+    }
+
+    /**
+     * Returns true if the state of this simulation is restored from a checkpoint or a warm-up snapshot.
+     * In that case the OLT and the ONUs are created without their initial events, which are replaced by the restored pending events.
+     *
+     * @return true if the state of this simulation is restored
+     */
+    public boolean isRestored() {
+	return restored;
+    }
+
+    /**
+     * Writes a checkpoint if the specified time has reached the next checkpoint time.
+     * This method is called by the OLT after handling each gate messages event, when no ONU event is being handled.
+     *
+     * @param time the current simulation time (in seconds)
+     * @throws SimulationException if the checkpoint file cannot be written
+     */
+    public void writeCheckpointIfDue(double time) {
+	if (config.simulation_checkpoint.isEmpty() || time < next_checkpoint_time) {
+	    return;
+	}
+	writeCheckpoint(config.simulation_checkpoint);
+	next_checkpoint_time = (Math.floor(time / config.checkpoint_interval) + 1) * config.checkpoint_interval;
+    }
+
+    /**
+     * Writes the whole state of this simulation on the specified checkpoint file.
+     * The checkpoint is first written on a temporary file that then replaces the previous checkpoint, so the last complete checkpoint survives an interruption of the simulation.
+     */
+    private void writeCheckpoint(String file) {
+	String temporary_file = file + ".tmp";
+	try {
+	    DataOutputStream checkpoint = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary_file), 1 << 16));
+	    try {
+		writeState(checkpoint);
+	    } finally {
+		checkpoint.close();
+	    }
+	    Files.move(Paths.get(temporary_file), Paths.get(file), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	} catch (IOException e) {
+	    throw new SimulationException("Invalid checkpoint file: " + e.getMessage());
+	}
+    }
+
+    /**
+     * Writes the whole state of this simulation on the specified stream.
+     */
+    private void writeState(DataOutputStream checkpoint) throws IOException {
+	checkpoint.write(CHECKPOINT_MAGIC);
+	checkpoint.writeUTF(parameters);
+	checkpoint.writeDouble(config.dba_cycle);
+	checkpoint.writeDouble(statistics_start_time);
+	for (int p = 0; p < reserved_sequences.length; p++) {
+	    checkpoint.writeLong(reserved_sequences[p]);
+	}
+	if (qsize_warmup != null) {
+	    qsize_warmup.writeState(checkpoint);
+	    delay_warmup.writeState(checkpoint);
+	}
+	olt.writeState(checkpoint);
+	handler.writeState(checkpoint);
+	if (partitions != null) {
+	    for (int p = 0; p < partitions.length; p++) {
+		partitions[p].writeState(checkpoint);
+	    }
+	}
+	for (int id = 0; id < config.num_onus; id++) {
+	    onus[id].writeState(checkpoint);
+	}
+    }
+
+    /**
+     * Restores the whole state of this simulation from the specified checkpoint file.
+     * The OLT and the ONUs have been created without their initial events, which are replaced by the pending events of the checkpoint.
+     */
+    private void readCheckpoint(String file) {
+	try {
+	    DataInputStream checkpoint = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+	    try {
+		byte[] magic = new byte[CHECKPOINT_MAGIC.length];
+		checkpoint.readFully(magic);
+		if (!Arrays.equals(magic, CHECKPOINT_MAGIC)) {
+		    throw new SimulationException("Invalid checkpoint file: " + file + " is not a checkpoint!");
+		}
+		if (!checkpoint.readUTF().equals(parameters)) {
+		    throw new SimulationException("Invalid checkpoint file: The simulation parameters do not match those of " + file + "!");
+		}
+		config.dba_cycle = checkpoint.readDouble();
+		readState(checkpoint);
+		if (checkpoint.read() != -1) {
+		    throw new SimulationException("Invalid checkpoint file: Unexpected data at the end of " + file + "!");
+		}
+	    } finally {
+		checkpoint.close();
+	    }
+	} catch (IOException e) {
+	    throw new SimulationException("Invalid checkpoint file: " + e.getMessage());
+	}
+	next_checkpoint_time = (Math.floor(handler.getCurrentTime() / config.checkpoint_interval) + 1) * config.checkpoint_interval;
+    }
+
+    /**
+     * Restores the whole state of this simulation from the specified warm-up snapshot (see runWarmup) and resets the statistics at the end of the warm-up.
+     * The parameters were checked by fork and the DBA cycle of the snapshot is replaced by that of the parameters of this simulation.
+     */
+    private void readSnapshot(byte[] bytes) {
+	try {
+	    DataInputStream state = new DataInputStream(new ByteArrayInputStream(bytes));
+	    state.skipBytes(CHECKPOINT_MAGIC.length);
+	    state.readUTF();
+	    state.readDouble();
+	    readState(state);
+	} catch (IOException e) {
+	    throw new AssertionError(e);
+	}
+	statistics_start_time = handler.getCurrentTime();
+	for (int id = 0; id < config.num_onus; id++) {
+	    onus[id].startBranch(statistics_start_time);
+	}
+    }
+
+    /**
+     * Restores the state of this simulation that follows the DBA cycle from the specified stream.
+     */
+    private void readState(DataInputStream checkpoint) throws IOException {
+	statistics_start_time = checkpoint.readDouble();
+	for (int p = 0; p < reserved_sequences.length; p++) {
+	    reserved_sequences[p] = checkpoint.readLong();
+	}
+	if (qsize_warmup != null) {
+	    qsize_warmup.readState(checkpoint);
+	    delay_warmup.readState(checkpoint);
+	}
+	olt.readState(checkpoint);
+	handler.readState(checkpoint, olt, onus);
+	if (partitions != null) {
+	    for (int p = 0; p < partitions.length; p++) {
+		partitions[p].readState(checkpoint, olt, onus);
+	    }
+	}
+	for (int id = 0; id < config.num_onus; id++) {
+	    onus[id].readState(checkpoint);
+	}
+    }
+
+    /**
+     * Returns the partition that contains the ONU with the specified identifier.
+     */
+    private int getPartition(int onu_id) {
+	return (int) ((long) onu_id * partitions.length / config.num_onus);
+    }
+
+    /**
+     * Returns the event list that contains the events of the ONU with the specified identifier.
+     *
+     * @param onu_id the ONU identifier
+     * @return the event list of the ONU
+     */
+    public EventList getEventList(int onu_id) {
+	return partitions == null ? handler : partitions[getPartition(onu_id)];
+    }
+
+    /**
+     * Reserves the specified number of sequence numbers in the event list of each ONU partition (see EventList.reserveSequences).
+     *
+     * @param count the number of sequence numbers reserved in each event list
+     */
+    public void reserveSequences(int count) {
+	if (partitions == null) {
+	    reserved_sequences[0] = handler.reserveSequences(count);
+	} else {
+	    for (int p = 0; p < partitions.length; p++) {
+		reserved_sequences[p] = partitions[p].reserveSequences(count);
+	    }
+	}
+    }
+
+    /**
+     * Returns the first sequence number reserved by the last call to reserveSequences in the event list of the ONU with the specified identifier.
+     *
+     * @param onu_id the ONU identifier
+     * @return the first reserved sequence number
+     */
+    public long getReservedSequence(int onu_id) {
+	return reserved_sequences[partitions == null ? 0 : getPartition(onu_id)];
+    }
+
+    /**
+     * Returns the pool of reusable events of the ONU with the specified identifier.
+     *
+     * @param onu_id the ONU identifier
+     * @return the pool of reusable events of the ONU
+     */
+    public EventPool getEventPool(int onu_id) {
+	return partitions == null ? event_pool : partition_pools[getPartition(onu_id)];
+    }
+
+    /**
+     * Adds the observations of the DBA cycle that ends at the specified time to the warm-up detectors.
+     * Once both the packet delays and the reported queue sizes have reached the steady state, the statistics of all the ONUs are reset and the detection stops.
+     *
+     * @param time          the end of the DBA cycle
+     * @param overall_qsize the overall amount of data reported by the ONUs in the DBA cycle
+     */
+    public void observeDbaCycle(double time, int overall_qsize) {
+	if (qsize_warmup == null || statistics_start_time > 0) {
+	    return;
+	}
+	qsize_warmup.accumulate(overall_qsize, 1);
+	qsize_warmup.endCycle(time);
+	delay_warmup.endCycle(time);
+	if (qsize_warmup.isTruncated() && delay_warmup.isTruncated()) {
+	    statistics_start_time = time;
+	    for (int id = 0; id < config.num_onus; id++) {
+		onus[id].resetStatistics(time);
+	    }
+	}
+    }
+
+    /**
+     * Creates the traffic generator of each ONU according to the traffic parameters.
+     */
+    private TrafficGenerator[] createTrafficGenerators() {
+	// Traffic profiles initialization
+	String[] onu_traffic_distribution = new String[config.num_onus];
+	long[] onu_traffic_rate = new long[config.num_onus];
+	int[] onu_packet_size = new int[config.num_onus];
+	String[] onu_trace_file = new String[config.num_onus];
+	double[] onu_time_scale = new double[config.num_onus];
+	boolean[] onu_trace_loop = new boolean[config.num_onus];
+	if (config.traffic_profile.isEmpty()) {
+	    for (int id = 0; id < config.num_onus; id++) {
+		onu_traffic_distribution[id] = config.traffic_distribution;
+		onu_traffic_rate[id] = config.traffic_rate;
+		onu_packet_size[id] = 8 * config.packet_size;
+	    }
+	} else {
+	    BufferedReader file;
+	    try {
+		file = new BufferedReader(new FileReader(config.traffic_profile));
+	    } catch (IOException e) {
+		throw new SimulationException("Invalid traffic profile: File not found!");
+	    }
+	    try {
+		for (int id = 0; id < config.num_onus; id++) {
+		    try {
+			String line = file.readLine();
+			String[] line_fields = line.trim().split("\\s+");
+			onu_traffic_distribution[id] = line_fields[0];
+			if (line_fields[0].equals("trace")) {
+			    onu_trace_file[id] = line_fields[1];
+			    onu_time_scale[id] = Double.parseDouble(line_fields[2]);
+			    if (line_fields.length > 3 && !line_fields[3].equals("loop")) {
+				throw new IllegalArgumentException();
+			    }
+			    onu_trace_loop[id] = line_fields.length > 3;
+			} else {
+			    onu_traffic_rate[id] = Long.parseLong(line_fields[1]);
+			    onu_packet_size[id] = 8 * Integer.parseInt(line_fields[2]);
+			}
+		    } catch (Exception e) {
+			throw new SimulationException("Invalid traffic profile: Error in ONU " + id + "!");
+		    }
+		}
+	    } finally {
+		try {
+		    file.close();
+		} catch (IOException e) {
+		}
+	    }
+	}
+
+	TrafficGenerator tg = null;
+	TrafficGenerator[] generators = new TrafficGenerator[config.num_onus];
+	RandomGenerator[] streams = RandomStreams.createStreams(config.simulation_rng, config.simulation_seed, config.simulation_replication, config.num_onus);
+	for (int id = 0; id < config.num_onus; id++) {
+	    if (onu_traffic_distribution[id].equals("deterministic")) {
+		tg = new DeterministicTrafficGenerator(onu_traffic_rate[id], onu_packet_size[id]);
+	    } else if (onu_traffic_distribution[id].equals("poisson")) {
+		tg = new PoissonTrafficGenerator(onu_traffic_rate[id], onu_packet_size[id]);
+		((PoissonTrafficGenerator) tg).setRandomGenerator(streams[id]);
+	    } else if (onu_traffic_distribution[id].equals("pareto")) {
+		tg = new ParetoTrafficGenerator(onu_traffic_rate[id], onu_packet_size[id]);
+		((ParetoTrafficGenerator) tg).setRandomGenerator(streams[id]);
+	    } else if (onu_traffic_distribution[id].equals("trace")) {
+		tg = new TraceTrafficGenerator(onu_trace_file[id], onu_time_scale[id], onu_trace_loop[id]);
+	    } else {
+		throw new SimulationException("Invalid traffic distribution for ONU " + id + "!");
+	    }
+	    tg.setTicks(config.simulation_ticks);
+	    generators[id] = tg;
+	}
+	return generators;
+    }
+
+    /**
+     * Runs this simulation until its end.
+     *
+     * @return the simulation results
+     * @throws SimulationException if the simulation fails or has already been run
+     */
+    public SimulationResult run() {
+	if (finished) {
+	    throw new SimulationException("Simulation already run!");
+	}
+	finished = true;
+
+	// Events processing
+	SimulationMetrics metrics = null;
+	if (config.simulation_metrics || config.metrics_port > 0) {
+	    metrics = new SimulationMetrics(this);
+	    metrics.start(config.metrics_port);
+	}
+	long allocated_bytes = getAllocatedBytes();
+	long partitions_allocated_bytes = 0;
+	try {
+	    partitions_allocated_bytes = handleEvents(Long.MAX_VALUE);
+	} finally {
+	    if (metrics != null) {
+		metrics.stop();
+	    }
+	    if (trace != null) {
+		trace.close();
+	    }
+	}
+	allocated_bytes = allocated_bytes < 0 ? -1 : getAllocatedBytes() - allocated_bytes + partitions_allocated_bytes;
+
+	// ONUs statistics
+	SimulationResult result = new SimulationResult(config.num_onus);
+	for (int id = 0; id < config.num_onus; id++) {
+	    result.onu_statistics[id] = onus[id].getStatistics();
+	}
+	result.handled_events = getHandledEvents();
+	result.profile = getProfile();
+	result.allocated_bytes = allocated_bytes;
+	if (qsize_warmup != null) {
+	    result.warmup_detection = true;
+	    result.statistics_start_time = statistics_start_time;
+	    result.truncation_time = statistics_start_time > 0 ? Math.max(qsize_warmup.getTruncationTime(), delay_warmup.getTruncationTime()) : Double.NaN;
+	}
+	return result;
+    }
+
+    /**
+     * Returns the number of events handled so far by the event handler and the event lists of the ONU partitions.
+     *
+     * @return the number of handled events
+     */
+    public long getHandledEvents() {
+	long events = handler.getHandledEvents();
+	if (partitions != null) {
+	    for (int p = 0; p < partitions.length; p++) {
+		events += partitions[p].getHandledEvents();
+	    }
+	}
+	return events;
+    }
+
+    /**
+     * Returns the profile of the events handled so far by the event handler and the event lists of the ONU partitions.
+     *
+     * @return the merged profile of the event lists or null if profiling is disabled
+     */
+    public EventProfile getProfile() {
+	if (!config.simulation_profile) {
+	    return null;
+	}
+	EventProfile profile = new EventProfile();
+	profile.merge(handler.getProfile());
+	if (partitions != null) {
+	    for (int p = 0; p < partitions.length; p++) {
+		profile.merge(partitions[p].getProfile());
+	    }
+	}
+	return profile;
+    }
+
+    /**
+     * Returns the number of events waiting in the event handler and in the event lists of the ONU partitions.
+     *
+     * @return the number of pending events
+     */
+    public int getPendingEvents() {
+	int events = handler.size();
+	if (partitions != null) {
+	    for (int p = 0; p < partitions.length; p++) {
+		events += partitions[p].size();
+	    }
+	}
+	return events;
+    }
+
+    /**
+     * Returns the overall amount of data waiting in the upstream queues of the ONUs.
+     * The packet arrivals accounted for in advance at dozing ONUs (option -B) are not included until their arrival time.
+     *
+     * @return the queued data (in bits)
+     */
+    public long getQueuedBits() {
+	long bits = 0;
+	for (int id = 0; id < config.num_onus; id++) {
+	    bits += onus[id].getArrivedQueueSize();
+	}
+	return bits;
+    }
+
+    /**
+     * Returns the number of ONUs in each state.
+     *
+     * @return the number of ONUs in each state, indexed by the ordinal of the state
+     */
+    public int[] getOnuStateCounts() {
+	int[] counts = new int[OnuState.values().length];
+	for (int id = 0; id < config.num_onus; id++) {
+	    counts[onus[id].getState().ordinal()]++;
+	}
+	return counts;
+    }
+
+    /**
+     * Handles the events of this simulation until its end or until the first gate messages event at or after the specified tick has been handled.
+     *
+     * @return the number of bytes allocated by the partition threads (0 if the simulation runs on a single thread)
+     */
+    private long handleEvents(long stop_tick) {
+	if (partitions == null) {
+	    Event event;
+	    while ((event = handler.getNextEvent(true)) != null) {
+		boolean stop = event.tick >= stop_tick && event instanceof GateMessagesEvent;
+		handler.handleEvent(event);
+		if (stop) {
+		    break;
+		}
+	    }
+	    return 0;
+	}
+	ParallelEngine engine = new ParallelEngine(handler, partitions);
+	if (restored) {
+	    engine.resumeAfterGateMessages();
+	}
+	return engine.run(stop_tick);
+    }
+
+    /**
+     * Runs the warm-up of this simulation until the first gate messages event at or after the specified time and keeps its whole state in memory, so that several simulations can be forked from it (see fork).
+     * Every forked simulation continues from the same state with the same arrival streams, so their results only differ because of their branch parameters.
+     *
+     * @param fork_time the end of the warm-up (in seconds)
+     * @throws SimulationException if the fork time is invalid or the simulation has already been run
+     */
+    public void runWarmup(double fork_time) {
+	if (finished) {
+	    throw new SimulationException("Simulation already run!");
+	}
+	if (!(fork_time > 0) || fork_time >= config.simulation_len) {
+	    throw new SimulationException("Invalid fork time!");
+	}
+	if (config.simulation_verbose || trace != null || qsize_warmup != null || !config.simulation_checkpoint.isEmpty()) {
+	    throw new SimulationException("Forks are not supported by the verbose mode, traces, warm-up detection or checkpoints!");
+	}
+	finished = true;
+	handleEvents(Event.toTicks(fork_time));
+	if (handler.getCurrentTime() < fork_time) {
+	    throw new SimulationException("Invalid fork time: The simulation ends before it!");
+	}
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	try {
+	    DataOutputStream state = new DataOutputStream(bytes);
+	    writeState(state);
+	    state.close();
+	} catch (IOException e) {
+	    throw new AssertionError(e);
+	}
+	snapshot = bytes.toByteArray();
+    }
+
+    /**
+     * Creates a new simulation with the specified parameters that continues from the end of the warm-up of this simulation (see runWarmup).
+     * The parameters can only differ from those of this simulation in the branch parameters (see BRANCH_PARAMETERS).
+     * The new simulation starts with the DBA cycle of its own parameters, a static queue threshold is reset to that of its own parameters and a dynamic one continues from its value at the end of the warm-up.
+     * Its statistics only cover the time after the warm-up.
+     * Several simulations can be forked concurrently from the same warm-up.
+     *
+     * @param c      the parameters of the new simulation
+     * @param output the output stream on which simulated events are printed
+     * @return the forked simulation
+     * @throws SimulationException if the warm-up has not been run or the parameters do not match
+     */
+    public Simulation fork(SimulationConfig c, PrintStream output) {
+	if (snapshot == null) {
+	    throw new SimulationException("The warm-up has not been run!");
+	}
+	if (!describeParameters(c, true).equals(shared_parameters)) {
+	    throw new SimulationException("Only the DBA algorithm, the queue threshold and the ONU wakeup length of a forked simulation can differ from those of its warm-up!");
+	}
+	return new Simulation(c, output, this);
+    }
+
+    /**
+     * Returns the amount of memory allocated so far by the current thread.
+     *
+     * @return the number of bytes allocated or -1 if the JVM does not support allocation measurement
+     */
+    static long getAllocatedBytes() {
+	java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+	if (bean instanceof com.sun.management.ThreadMXBean) {
+	    return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	return -1;
+    }
+}
@@ -0,0 +1,758 @@
+package es.uvigo.det.labredes.epon;
+
+/**
+ * This class contains the parameters of a simulation.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class SimulationConfig implements Cloneable {
+    /* Simulation parameters */
+    /**
+     * Length of the simulation (in seconds). Default = 1.
+     */
+    public double simulation_len = 1;
+    /**
+     * Seed for the simulation. Default = 1.
+     */
+    public long simulation_seed = 1;
+    /**
+     * Random number generator algorithm (legacy|Xoshiro256PlusPlus|L64X128MixRandom, see RandomStreams). Default = Xoshiro256PlusPlus.
+     */
+    public String simulation_rng = "Xoshiro256PlusPlus";
+    /**
+     * Index of the replication, which selects a set of random number streams disjoint from those of the other replications with the same seed. Default = 0.
+     */
+    public int simulation_replication = 0;
+    /**
+     * If true a message for each simulated event is printed on the simulation output. Default = false.
+     */
+    public boolean simulation_verbose = false;
+    /**
+     * Data structure used to keep the pending events sorted (list|heap|calendar). The list orders the events less than 0.1 ns apart as previous versions, whereas the heap and calendar queue order them by tick and insertion order, so they may reorder them. Default = list.
+     */
+    public String simulation_engine = "list";
+    /**
+     * If true event times are kept as an integer number of ticks (see Event.TICKS_PER_SECOND) instead of accumulating floating point values. Default = false.
+     */
+    public boolean simulation_ticks = false;
+    /**
+     * If true handled events are recycled instead of allocating new events. Default = false.
+     */
+    public boolean simulation_recycling = false;
+    /**
+     * If true the amount of memory allocated per handled event is printed on the simulation output. Default = false.
+     */
+    public boolean simulation_allocation_report = false;
+    /**
+     * Number of threads among which the ONUs are partitioned. If greater than 1, the ONUs of each partition are simulated in parallel between consecutive gate messages. Default = 1.
+     */
+    public int simulation_threads = 1;
+    /**
+     * If true the packets that fit in a transmission slot are transmitted in a single step instead of handling a packet transmission event for each one. Default = false.
+     */
+    public boolean simulation_bursts = false;
+    /**
+     * If true the packet arrivals at a dozing ONU are accounted for at once until the queue threshold is crossed instead of handling a packet arrival event for each one. Default = false.
+     */
+    public boolean simulation_aggregation = false;
+    /**
+     * If true the OLT only adds the transmission slot events of the awake ONUs, so the cost of a DBA cycle does not grow with the number of dozing ONUs. It is also done when event times are kept as ticks, unless events are printed or traced (see isActiveSet). Default = false.
+     */
+    public boolean simulation_active_set = false;
+    /**
+     * If true the end of the warm-up is detected with MSER-5 over the packet delays and the queue sizes reported in each DBA cycle, and the statistics of the ONUs are reset at that point. Default = false.
+     */
+    public boolean simulation_warmup = false;
+    /**
+     * File on which a binary trace of the simulated events is written (see TraceDecoder). If empty, no trace is written. Default = empty.
+     */
+    public String simulation_trace = "";
+    /**
+     * Comma-separated list of ONU identifiers or ranges (e.g. 0,4-7) whose events are traced. If empty, the events of all the ONUs are traced. Default = empty.
+     */
+    public String trace_onus = "";
+    /**
+     * Comma-separated list of event types (e.g. PacketArrivalEvent,Report) that are traced. If empty, all the events are traced. Default = empty.
+     */
+    public String trace_events = "";
+    /**
+     * File on which the whole state of the simulation is periodically saved, so that it can be resumed if it is interrupted. If empty, no checkpoint is written. Default = empty.
+     */
+    public String simulation_checkpoint = "";
+    /**
+     * Simulated time between consecutive checkpoints (in seconds). Checkpoints are written after the first gate messages of each interval. Default = 1.
+     */
+    public double checkpoint_interval = 1;
+    /**
+     * If true the simulation is resumed from the state saved in the checkpoint file, which must have been written by a simulation with the same parameters. Default = false.
+     */
+    public boolean simulation_resume = false;
+    /**
+     * If true the progress and the metrics of the simulation are published as a JMX MBean while it runs (see SimulationMetrics). Default = false.
+     */
+    public boolean simulation_metrics = false;
+    /**
+     * Port of the loopback address on which the metrics of the simulation are also served over HTTP while it runs. If 0, no HTTP server is started. Default = 0.
+     */
+    public int metrics_port = 0;
+    /**
+     * If true the handled events of each type are counted and the time spent in their handlers and in the insertions into the event lists is estimated (see EventProfile). Default = false.
+     */
+    public boolean simulation_profile = false;
+
+    /* Traffic parameters */
+    /**
+     * Traffic rate of each ONU (in b/s). Default = 100000000.
+     */
+    public long traffic_rate = 100000000;
+    /**
+     * Size of the packets generated at each ONU (in bytes). Default = 1500.
+     */
+    public int packet_size = 1500;
+    /**
+     * Distribution of the traffic generated at each ONU (deterministic|poisson|pareto). Default = pareto.
+     */
+    public String traffic_distribution = "pareto";
+    /**
+     * File with a traffic profile (distribution, rate in b/s and packet size in bytes, or trace, trace file, time scale and optionally loop) per line for each ONU. If empty, all ONUs generate the same traffic. Default = empty.
+     */
+    public String traffic_profile = "";
+
+    /* EPON parameters */
+    /**
+     * Uplink capacity (in b/s). Default = 10000000000.
+     */
+    public long uplink_capacity = 10000000000L;
+    /**
+     * Length of DBA cycle (in seconds). Default = 0.0015.
+     */
+    public double dba_cycle = 1.5e-3;
+    /**
+     * Guard time required between the transmission slots of each pair of ONUs (in seconds). Default = 0.000001.
+     */
+    public double dba_guard_time = 1e-6;
+    /**
+     * DBA sizing algorithm (fixed|fair|proportional|gated|limited|limitedExcess or the name of a DbaAlgorithm found on the classpath). Default = fixed.
+     */
+    public String dba_algorithm = "fixed";
+    /**
+     * Number of ONUs. Default = 1.
+     */
+    public int num_onus = 1;
+    /**
+     * If true ONUs can enter into a low power mode that makes their transmitter sleep when there is no traffic to transmit (doze mode). Default = true.
+     */
+    public boolean onu_energy_aware = true;
+    /**
+     * Maximum number of packets that can be stored in each ONU upstream queue. Default = 0 (infinite capacity).
+     */
+    public int onu_maximum_queue = 0;
+    /**
+     * Minimum number of packets in the upstream queue required to reactivate an ONU in the doze mode. If 0, a dynamic algorithm that adjusts the queue threshold with the goal of maintaining packet delay around a given target value is applied. Default = 10.
+     */
+    public int onu_queue_threshold = 10;
+    /**
+     * Target delay value for the dynamic queue threshold algorithm (if onu_queue_threshold = 0). Default = 0.005.
+     */
+    public double onu_dynamic_target_delay = 5e-3;
+    /**
+     * Parameter that controls the speed of adjustment to the target delay value (if onu_queue_threshold = 0). Default = 1.
+     */
+    public int onu_dynamic_gamma = 1;
+    /**
+     * Time required to power up ONU transmitters (in seconds). Default = 0.002.
+     */
+    public double onu_wakeup_len = 2e-3;
+    /**
+     * Upper limit on the time an ONU can remain continously in the doze mode (in seconds). Default = 0.05.
+     */
+    public double onu_refresh_to = 50e-3;
+    /**
+     * Doze mode to active mode energy consumption ratio. Default = 0.3.
+     */
+    public double onu_doze_mode_energy_ratio = 0.3;
+
+    /**
+     * Creates a new set of simulation parameters with the default values.
+     */
+    public SimulationConfig() {}
+
+    /**
+     * Returns a copy of these simulation parameters.
+     *
+     * @return a copy of these simulation parameters
+     */
+    public SimulationConfig copy() {
+	try {
+	    return (SimulationConfig) clone();
+	} catch (CloneNotSupportedException e) {
+	    throw new AssertionError(e);
+	}
+    }
+
+    /**
+     * Checks that these simulation parameters are valid.
+     *
+     * @throws SimulationException if any parameter is invalid
+     */
+    public void validate() {
+	if (num_onus <= 0) {
+	    throw new SimulationException("Invalid number of onus!");
+	}
+	if (!(simulation_len > 0)) {
+	    throw new SimulationException("Invalid simulation length!");
+	}
+	if (!RandomStreams.isValidAlgorithm(simulation_rng)) {
+	    throw new SimulationException("Invalid random number generator!");
+	}
+	if (simulation_replication < 0 || (simulation_replication > 0 && simulation_rng.equals(RandomStreams.LEGACY))) {
+	    throw new SimulationException("Invalid replication!");
+	}
+	if (!isValidDistribution(traffic_distribution)) {
+	    throw new SimulationException("Invalid traffic distribution!");
+	}
+	if (DBA.getAlgorithm(dba_algorithm) == null) {
+	    throw new SimulationException("Invalid DBA algorithm!");
+	}
+	if (!(simulation_engine.equals("list") || simulation_engine.equals("heap") || simulation_engine.equals("calendar"))) {
+	    throw new SimulationException("Invalid event list engine!");
+	}
+	if (!(dba_cycle > 0)) {
+	    throw new SimulationException("Invalid DBA cycle!");
+	}
+	if (uplink_capacity <= 0) {
+	    throw new SimulationException("Invalid uplink capacity!");
+	}
+	if (simulation_threads <= 0) {
+	    throw new SimulationException("Invalid number of threads!");
+	}
+	if (simulation_threads > 1 && simulation_verbose) {
+	    throw new SimulationException("Verbose mode is not supported by the parallel engine!");
+	}
+	if (simulation_bursts && simulation_verbose) {
+	    throw new SimulationException("Verbose mode is not supported by the burst mode!");
+	}
+	if (simulation_aggregation && simulation_verbose) {
+	    throw new SimulationException("Verbose mode is not supported by the aggregation of arrivals!");
+	}
+	if (simulation_active_set && simulation_verbose) {
+	    throw new SimulationException("Verbose mode is not supported by the active-set scheduling!");
+	}
+	if (!(checkpoint_interval > 0)) {
+	    throw new SimulationException("Invalid checkpoint interval!");
+	}
+	if (simulation_resume && simulation_checkpoint.isEmpty()) {
+	    throw new SimulationException("A checkpoint file is required to resume a simulation!");
+	}
+	if (metrics_port < 0 || metrics_port > 65535) {
+	    throw new SimulationException("Invalid metrics port!");
+	}
+	if (!simulation_checkpoint.isEmpty() && (simulation_verbose || !simulation_trace.isEmpty())) {
+	    throw new SimulationException("Checkpoints are not supported by the verbose mode or traces!");
+	}
+	if (!simulation_trace.isEmpty() && (simulation_threads > 1 || simulation_bursts || simulation_aggregation || simulation_active_set)) {
+	    throw new SimulationException("Traces are not supported by the parallel engine, the burst mode, the aggregation of arrivals or the active-set scheduling!");
+	}
+    }
+
+    /**
+     * Returns true if the OLT only adds the transmission slot events of the awake ONUs.
+     * This is the case if simulation_active_set is true, and also whenever it yields the same statistics as adding the events of all the ONUs, that is, when event times are kept as ticks (simulation_ticks) and events are neither printed nor traced.
+     *
+     * @return true if the transmission slots of the dozing ONUs are skipped
+     */
+    public boolean isActiveSet() {
+	return simulation_active_set || (simulation_ticks && !simulation_verbose && simulation_trace.isEmpty());
+    }
+
+    /**
+     * Returns true if the specified traffic distribution is supported.
+     *
+     * @param distribution the traffic distribution name
+     * @return true if the traffic distribution is supported
+     */
+    public static boolean isValidDistribution(String distribution) {
+	return distribution.equals("deterministic") || distribution.equals("poisson") || distribution.equals("pareto");
+    }
+
+    /**
+     * Returns a builder of simulation parameters initialized with the default values.
+     *
+     * @return a new builder of simulation parameters
+     */
+    public static Builder builder() {
+	return new Builder();
+    }
+
+    /**
+     * This class builds simulation parameters step by step.
+     */
+    public static class Builder {
+	private SimulationConfig config = new SimulationConfig();
+
+	private Builder() {}
+
+	/**
+	 * Sets the length of the simulation (in seconds).
+	 *
+	 * @param len length of the simulation (in seconds)
+	 * @return this builder
+	 */
+	public Builder simulationLength(double len) {
+	    config.simulation_len = len;
+	    return this;
+	}
+
+	/**
+	 * Sets the seed for the simulation.
+	 *
+	 * @param seed seed for the simulation
+	 * @return this builder
+	 */
+	public Builder seed(long seed) {
+	    config.simulation_seed = seed;
+	    return this;
+	}
+
+	/**
+	 * Sets the random number generator algorithm.
+	 *
+	 * @param algorithm random number generator algorithm (see RandomStreams)
+	 * @return this builder
+	 */
+	public Builder rng(String algorithm) {
+	    config.simulation_rng = algorithm;
+	    return this;
+	}
+
+	/**
+	 * Sets the index of the replication.
+	 *
+	 * @param replication index of the replication
+	 * @return this builder
+	 */
+	public Builder replication(int replication) {
+	    config.simulation_replication = replication;
+	    return this;
+	}
+
+	/**
+	 * Sets whether each simulated event is printed.
+	 *
+	 * @param verbose if true each simulated event is printed
+	 * @return this builder
+	 */
+	public Builder verbose(boolean verbose) {
+	    config.simulation_verbose = verbose;
+	    return this;
+	}
+
+	/**
+	 * Sets the event list engine (list|heap|calendar).
+	 *
+	 * @param engine event list engine (list|heap|calendar)
+	 * @return this builder
+	 */
+	public Builder engine(String engine) {
+	    config.simulation_engine = engine;
+	    return this;
+	}
+
+	/**
+	 * Sets whether event times are kept as an integer number of ticks.
+	 *
+	 * @param ticks if true event times are kept as an integer number of ticks
+	 * @return this builder
+	 */
+	public Builder ticks(boolean ticks) {
+	    config.simulation_ticks = ticks;
+	    return this;
+	}
+
+	/**
+	 * Sets whether handled events are recycled.
+	 *
+	 * @param recycling if true handled events are recycled
+	 * @return this builder
+	 */
+	public Builder recycling(boolean recycling) {
+	    config.simulation_recycling = recycling;
+	    return this;
+	}
+
+	/**
+	 * Sets whether the memory allocated per event is reported.
+	 *
+	 * @param report if true the memory allocated per event is reported
+	 * @return this builder
+	 */
+	public Builder allocationReport(boolean report) {
+	    config.simulation_allocation_report = report;
+	    return this;
+	}
+
+	/**
+	 * Sets the number of threads among which the ONUs are partitioned.
+	 *
+	 * @param threads number of threads (1 for the sequential engine)
+	 * @return this builder
+	 */
+	public Builder threads(int threads) {
+	    config.simulation_threads = threads;
+	    return this;
+	}
+
+	/**
+	 * Sets whether the packets that fit in a transmission slot are transmitted in a single step.
+	 *
+	 * @param bursts if true the packets that fit in a transmission slot are transmitted in a single step
+	 * @return this builder
+	 */
+	public Builder bursts(boolean bursts) {
+	    config.simulation_bursts = bursts;
+	    return this;
+	}
+
+	/**
+	 * Sets whether the packet arrivals at a dozing ONU are accounted for at once.
+	 *
+	 * @param aggregation if true the packet arrivals at a dozing ONU are accounted for at once
+	 * @return this builder
+	 */
+	public Builder aggregation(boolean aggregation) {
+	    config.simulation_aggregation = aggregation;
+	    return this;
+	}
+
+	/**
+	 * Sets whether the OLT only schedules the transmission slots of the awake ONUs.
+	 *
+	 * @param active_set if true the transmission slots of the dozing ONUs are skipped
+	 * @return this builder
+	 */
+	public Builder activeSet(boolean active_set) {
+	    config.simulation_active_set = active_set;
+	    return this;
+	}
+
+	/**
+	 * Sets whether the statistics are reset at the end of the warm-up detected with MSER-5.
+	 *
+	 * @param warmup if true the warm-up is detected and deleted from the statistics
+	 * @return this builder
+	 */
+	public Builder warmup(boolean warmup) {
+	    config.simulation_warmup = warmup;
+	    return this;
+	}
+
+	/**
+	 * Sets the file on which a binary trace of the simulated events is written.
+	 *
+	 * @param file trace file (empty for no trace)
+	 * @return this builder
+	 */
+	public Builder trace(String file) {
+	    config.simulation_trace = file;
+	    return this;
+	}
+
+	/**
+	 * Sets the ONUs whose events are traced.
+	 *
+	 * @param onus comma-separated list of ONU identifiers or ranges (empty for all the ONUs)
+	 * @return this builder
+	 */
+	public Builder traceOnus(String onus) {
+	    config.trace_onus = onus;
+	    return this;
+	}
+
+	/**
+	 * Sets the types of the events that are traced.
+	 *
+	 * @param events comma-separated list of event types (empty for all the events)
+	 * @return this builder
+	 */
+	public Builder traceEvents(String events) {
+	    config.trace_events = events;
+	    return this;
+	}
+
+	/**
+	 * Sets the file on which the state of the simulation is periodically saved.
+	 *
+	 * @param file checkpoint file (empty for no checkpoint)
+	 * @return this builder
+	 */
+	public Builder checkpoint(String file) {
+	    config.simulation_checkpoint = file;
+	    return this;
+	}
+
+	/**
+	 * Sets the simulated time between consecutive checkpoints (in seconds).
+	 *
+	 * @param interval simulated time between consecutive checkpoints (in seconds)
+	 * @return this builder
+	 */
+	public Builder checkpointInterval(double interval) {
+	    config.checkpoint_interval = interval;
+	    return this;
+	}
+
+	/**
+	 * Sets whether the simulation is resumed from the checkpoint file.
+	 *
+	 * @param resume if true the simulation is resumed from the checkpoint file
+	 * @return this builder
+	 */
+	public Builder resume(boolean resume) {
+	    config.simulation_resume = resume;
+	    return this;
+	}
+
+	/**
+	 * Sets whether the metrics of the simulation are published as a JMX MBean.
+	 *
+	 * @param metrics if true the metrics of the simulation are published as a JMX MBean
+	 * @return this builder
+	 */
+	public Builder metrics(boolean metrics) {
+	    config.simulation_metrics = metrics;
+	    return this;
+	}
+
+	/**
+	 * Sets the port of the loopback address on which the metrics of the simulation are served over HTTP.
+	 *
+	 * @param port HTTP port (0 for no HTTP server)
+	 * @return this builder
+	 */
+	public Builder metricsPort(int port) {
+	    config.metrics_port = port;
+	    return this;
+	}
+
+	/**
+	 * Sets whether the handling of the events is profiled.
+	 *
+	 * @param profile if true the handling of the events is profiled
+	 * @return this builder
+	 */
+	public Builder profile(boolean profile) {
+	    config.simulation_profile = profile;
+	    return this;
+	}
+
+	/**
+	 * Sets the traffic rate of each ONU (in b/s).
+	 *
+	 * @param rate traffic rate of each ONU (in b/s)
+	 * @return this builder
+	 */
+	public Builder trafficRate(long rate) {
+	    config.traffic_rate = rate;
+	    return this;
+	}
+
+	/**
+	 * Sets the size of the generated packets (in bytes).
+	 *
+	 * @param size size of the generated packets (in bytes)
+	 * @return this builder
+	 */
+	public Builder packetSize(int size) {
+	    config.packet_size = size;
+	    return this;
+	}
+
+	/**
+	 * Sets the traffic distribution (deterministic|poisson|pareto).
+	 *
+	 * @param distribution traffic distribution (deterministic|poisson|pareto)
+	 * @return this builder
+	 */
+	public Builder trafficDistribution(String distribution) {
+	    config.traffic_distribution = distribution;
+	    return this;
+	}
+
+	/**
+	 * Sets the file with a traffic profile for each ONU.
+	 *
+	 * @param file file with a traffic profile for each ONU
+	 * @return this builder
+	 */
+	public Builder trafficProfile(String file) {
+	    config.traffic_profile = file;
+	    return this;
+	}
+
+	/**
+	 * Sets the uplink capacity (in b/s).
+	 *
+	 * @param capacity uplink capacity (in b/s)
+	 * @return this builder
+	 */
+	public Builder uplinkCapacity(long capacity) {
+	    config.uplink_capacity = capacity;
+	    return this;
+	}
+
+	/**
+	 * Sets the length of DBA cycle (in seconds).
+	 *
+	 * @param cycle length of DBA cycle (in seconds)
+	 * @return this builder
+	 */
+	public Builder dbaCycle(double cycle) {
+	    config.dba_cycle = cycle;
+	    return this;
+	}
+
+	/**
+	 * Sets the guard time between transmission slots (in seconds).
+	 *
+	 * @param guard guard time between transmission slots (in seconds)
+	 * @return this builder
+	 */
+	public Builder dbaGuardTime(double guard) {
+	    config.dba_guard_time = guard;
+	    return this;
+	}
+
+	/**
+	 * Sets the DBA algorithm (fixed|fair|proportional|gated|limited|limitedExcess).
+	 *
+	 * @param algorithm DBA algorithm (fixed|fair|proportional|gated|limited|limitedExcess)
+	 * @return this builder
+	 */
+	public Builder dbaAlgorithm(String algorithm) {
+	    config.dba_algorithm = algorithm;
+	    return this;
+	}
+
+	/**
+	 * Sets the number of ONUs.
+	 *
+	 * @param n number of ONUs
+	 * @return this builder
+	 */
+	public Builder numOnus(int n) {
+	    config.num_onus = n;
+	    return this;
+	}
+
+	/**
+	 * Sets whether ONUs can enter into the doze mode.
+	 *
+	 * @param energy_aware if true ONUs can enter into the doze mode
+	 * @return this builder
+	 */
+	public Builder energyAware(boolean energy_aware) {
+	    config.onu_energy_aware = energy_aware;
+	    return this;
+	}
+
+	/**
+	 * Sets the maximum number of packets in each ONU upstream queue (0 for infinite).
+	 *
+	 * @param packets maximum number of packets in each ONU upstream queue (0 for infinite)
+	 * @return this builder
+	 */
+	public Builder maximumQueue(int packets) {
+	    config.onu_maximum_queue = packets;
+	    return this;
+	}
+
+	/**
+	 * Sets the queue threshold to reactivate dozing ONUs (0 for dynamic).
+	 *
+	 * @param packets queue threshold to reactivate dozing ONUs (0 for dynamic)
+	 * @return this builder
+	 */
+	public Builder queueThreshold(int packets) {
+	    config.onu_queue_threshold = packets;
+	    return this;
+	}
+
+	/**
+	 * Sets the target delay of the dynamic queue threshold algorithm (in seconds).
+	 *
+	 * @param delay target delay of the dynamic queue threshold algorithm (in seconds)
+	 * @return this builder
+	 */
+	public Builder dynamicTargetDelay(double delay) {
+	    config.onu_dynamic_target_delay = delay;
+	    return this;
+	}
+
+	/**
+	 * Sets the speed of adjustment of the dynamic queue threshold algorithm.
+	 *
+	 * @param gamma speed of adjustment of the dynamic queue threshold algorithm
+	 * @return this builder
+	 */
+	public Builder dynamicGamma(int gamma) {
+	    config.onu_dynamic_gamma = gamma;
+	    return this;
+	}
+
+	/**
+	 * Sets the time required to power up ONU transmitters (in seconds).
+	 *
+	 * @param len time required to power up ONU transmitters (in seconds)
+	 * @return this builder
+	 */
+	public Builder wakeupLength(double len) {
+	    config.onu_wakeup_len = len;
+	    return this;
+	}
+
+	/**
+	 * Sets the upper limit on the time in doze mode (in seconds).
+	 *
+	 * @param timeout upper limit on the time in doze mode (in seconds)
+	 * @return this builder
+	 */
+	public Builder refreshTimeout(double timeout) {
+	    config.onu_refresh_to = timeout;
+	    return this;
+	}
+
+	/**
+	 * Sets the doze mode to active mode energy consumption ratio.
+	 *
+	 * @param ratio doze mode to active mode energy consumption ratio
+	 * @return this builder
+	 */
+	public Builder dozeModeEnergyRatio(double ratio) {
+	    config.onu_doze_mode_energy_ratio = ratio;
+	    return this;
+	}
+
+	/**
+	 * Returns the simulation parameters built so far.
+	 *
+	 * @return a validated copy of the simulation parameters
+	 * @throws SimulationException if any parameter is invalid
+	 */
+	public SimulationConfig build() {
+	    SimulationConfig c = config.copy();
+	    c.validate();
+	    return c;
+	}
+
+	/**
+	 * Runs a simulation with the parameters built so far.
+	 *
+	 * @return the simulation results
+	 * @throws SimulationException if the simulation cannot be configured or run
+	 */
+	public SimulationResult run() {
+	    return new Simulation(build()).run();
+	}
+    }
+}
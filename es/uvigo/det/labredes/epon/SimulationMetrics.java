@@ -0,0 +1,208 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class publishes the progress and the metrics of a running simulation as a JMX MBean (es.uvigo.det.labredes.epon:type=Simulation,id=N) and, optionally, as a JSON document served over HTTP on the loopback address (http://127.0.0.1:port/metrics).
+ * If profiling is enabled, the JSON document also includes the profile of the handled events (see EventProfile).
+ * Metrics are read from the simulation without any synchronization when they are requested, so sampling them does not slow down the event loop, although they may be slightly out of date.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+    /**
+     * Minimum wall-clock time between two samples of the rate of handled events (in nanoseconds).
+     */
+    private static final long RATE_INTERVAL = 1000000000L;
+    /**
+     * Identifier of the last published simulation.
+     */
+    private static final AtomicInteger LAST_ID = new AtomicInteger();
+
+    /**
+     * The simulation whose metrics are published.
+     */
+    private Simulation simulation;
+    /**
+     * The name of the MBean (null if it is not registered).
+     */
+    private ObjectName name;
+    /**
+     * The HTTP server (null if it is not started).
+     */
+    private HttpServer server;
+    /**
+     * Wall-clock time and number of handled events of the last sample of the rate of handled events.
+     */
+    private long sample_time, sample_events;
+    /**
+     * Rate of handled events computed at the last sample (in events/s).
+     */
+    private double events_per_second;
+
+    /**
+     * Creates the metrics of the specified simulation.
+     *
+     * @param sim the simulation whose metrics are published
+     */
+    public SimulationMetrics(Simulation sim) {
+	simulation = sim;
+    }
+
+    /**
+     * Registers the MBean and starts the HTTP server on the specified port of the loopback address (if not 0).
+     *
+     * @param port the HTTP port (0 for no HTTP server)
+     * @throws SimulationException if the MBean cannot be registered or the HTTP server cannot be started
+     */
+    public void start(int port) {
+	sample_time = System.nanoTime();
+	sample_events = simulation.getHandledEvents();
+	events_per_second = 0.0;
+	MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+	try {
+	    name = new ObjectName("es.uvigo.det.labredes.epon:type=Simulation,id=" + LAST_ID.incrementAndGet());
+	    mbeans.registerMBean(this, name);
+	} catch (JMException e) {
+	    throw new SimulationException("Invalid metrics MBean: " + e.getMessage());
+	}
+	if (port > 0) {
+	    try {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+	    } catch (IOException e) {
+		stop();
+		throw new SimulationException("Invalid metrics port: " + e.getMessage());
+	    }
+	    server.createContext("/metrics", new HttpHandler() {
+		    public void handle(HttpExchange exchange) throws IOException {
+			byte[] body = toJson().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		    }
+		});
+	    server.start();
+	}
+    }
+
+    /**
+     * Stops the HTTP server and unregisters the MBean.
+     */
+    public void stop() {
+	if (server != null) {
+	    server.stop(0);
+	    server = null;
+	}
+	if (name != null) {
+	    try {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+	    } catch (JMException e) {
+	    }
+	    name = null;
+	}
+    }
+
+    /**
+     * Returns all the metrics as a JSON object.
+     *
+     * @return the metrics in JSON format
+     */
+    public String toJson() {
+	int[] states = simulation.getOnuStateCounts();
+	StringBuilder sb = new StringBuilder();
+	sb.append("{\"simulated_time\": ").append(getSimulatedTime());
+	sb.append(", \"simulation_length\": ").append(getSimulationLength());
+	sb.append(", \"progress\": ").append(getProgress());
+	sb.append(", \"handled_events\": ").append(getHandledEvents());
+	sb.append(", \"events_per_second\": ").append(getEventsPerSecond());
+	sb.append(", \"pending_events\": ").append(getPendingEvents());
+	sb.append(", \"queued_bytes\": ").append(getQueuedBytes());
+	sb.append(", \"onu_states\": {");
+	for (OnuState state : OnuState.values()) {
+	    sb.append(state.ordinal() > 0 ? ", " : "").append('"').append(state).append("\": ").append(states[state.ordinal()]);
+	}
+	sb.append("}, \"heap_used\": ").append(getHeapUsed());
+	sb.append(", \"heap_max\": ").append(getHeapMax());
+	EventProfile profile = simulation.getProfile();
+	if (profile != null) {
+	    sb.append(", \"profile\": ").append(profile.toJson());
+	}
+	sb.append("}\n");
+	return sb.toString();
+    }
+
+    public double getSimulatedTime() {
+	return simulation.handler.getCurrentTime();
+    }
+
+    public double getSimulationLength() {
+	return simulation.config.simulation_len;
+    }
+
+    public double getProgress() {
+	return Math.min(1.0, getSimulatedTime() / getSimulationLength());
+    }
+
+    public long getHandledEvents() {
+	return simulation.getHandledEvents();
+    }
+
+    public synchronized double getEventsPerSecond() {
+	long time = System.nanoTime();
+	if (time - sample_time >= RATE_INTERVAL) {
+	    long events = simulation.getHandledEvents();
+	    events_per_second = (events - sample_events) * 1e9 / (time - sample_time);
+	    sample_time = time;
+	    sample_events = events;
+	}
+	return events_per_second;
+    }
+
+    public int getPendingEvents() {
+	return simulation.getPendingEvents();
+    }
+
+    public long getQueuedBytes() {
+	return simulation.getQueuedBits() / 8;
+    }
+
+    public int getOnusOff() {
+	return simulation.getOnuStateCounts()[OnuState.OFF.ordinal()];
+    }
+
+    public int getOnusOffWait() {
+	return simulation.getOnuStateCounts()[OnuState.OFF_WAIT.ordinal()];
+    }
+
+    public int getOnusTransitionToOn() {
+	return simulation.getOnuStateCounts()[OnuState.TRANSITION_TO_ON.ordinal()];
+    }
+
+    public int getOnusOn() {
+	return simulation.getOnuStateCounts()[OnuState.ON.ordinal()];
+    }
+
+    public long getHeapUsed() {
+	return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    public long getHeapMax() {
+	return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+    }
+}
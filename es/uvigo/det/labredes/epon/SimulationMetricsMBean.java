@@ -0,0 +1,100 @@
+package es.uvigo.det.labredes.epon;
+
+/**
+ * This interface represents the attributes of a running simulation published through JMX (see SimulationMetrics).
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public interface SimulationMetricsMBean {
+    /**
+     * Returns the current simulation time.
+     *
+     * @return the current simulation time (in seconds)
+     */
+    public double getSimulatedTime();
+
+    /**
+     * Returns the length of the simulation.
+     *
+     * @return the simulation length (in seconds)
+     */
+    public double getSimulationLength();
+
+    /**
+     * Returns the fraction of the simulation length already simulated.
+     *
+     * @return the progress of the simulation (between 0 and 1)
+     */
+    public double getProgress();
+
+    /**
+     * Returns the number of events handled so far.
+     *
+     * @return the number of handled events
+     */
+    public long getHandledEvents();
+
+    /**
+     * Returns the number of events handled per second of wall-clock time, averaged over at least one second.
+     *
+     * @return the rate of handled events (in events/s)
+     */
+    public double getEventsPerSecond();
+
+    /**
+     * Returns the number of events waiting in the event lists.
+     *
+     * @return the number of pending events
+     */
+    public int getPendingEvents();
+
+    /**
+     * Returns the overall amount of data waiting in the upstream queues of the ONUs.
+     *
+     * @return the queued data (in bytes)
+     */
+    public long getQueuedBytes();
+
+    /**
+     * Returns the number of ONUs in the OFF state.
+     *
+     * @return the number of ONUs in the OFF state
+     */
+    public int getOnusOff();
+
+    /**
+     * Returns the number of ONUs in the OFF_WAIT state.
+     *
+     * @return the number of ONUs in the OFF_WAIT state
+     */
+    public int getOnusOffWait();
+
+    /**
+     * Returns the number of ONUs in the TRANSITION_TO_ON state.
+     *
+     * @return the number of ONUs in the TRANSITION_TO_ON state
+     */
+    public int getOnusTransitionToOn();
+
+    /**
+     * Returns the number of ONUs in the ON state.
+     *
+     * @return the number of ONUs in the ON state
+     */
+    public int getOnusOn();
+
+    /**
+     * Returns the amount of heap memory used by the JVM.
+     *
+     * @return the used heap memory (in bytes)
+     */
+    public long getHeapUsed();
+
+    /**
+     * Returns the maximum amount of heap memory that the JVM can use.
+     *
+     * @return the maximum heap memory (in bytes) or -1 if undefined
+     */
+    public long getHeapMax();
+}
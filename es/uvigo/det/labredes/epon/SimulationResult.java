@@ -0,0 +1,107 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.PrintStream;
+
+/**
+ * This class contains the results of a simulation.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class SimulationResult {
+    /**
+     * The statistics of each ONU, indexed by ONU identifier.
+     */
+    public OnuStatistics[] onu_statistics;
+    /**
+     * The number of events handled.
+     */
+    public long handled_events;
+    /**
+     * The amount of memory allocated by the event loop (in bytes), or -1 if it could not be measured.
+     */
+    public long allocated_bytes;
+    /**
+     * The profile of the handled events (null if profiling is disabled).
+     */
+    public EventProfile profile;
+    /**
+     * True if the statistics were collected with warm-up detection.
+     */
+    public boolean warmup_detection;
+    /**
+     * The warm-up truncation point detected by MSER-5 (in seconds), or NaN if the simulation did not reach the steady state.
+     */
+    public double truncation_time;
+    /**
+     * The time at which the statistics were reset at the end of the warm-up (in seconds), or 0 if they cover the whole simulation.
+     */
+    public double statistics_start_time;
+
+    /**
+     * Creates an empty set of results for the specified number of ONUs.
+     *
+     * @param num_onus the number of ONUs
+     */
+    public SimulationResult(int num_onus) {
+	onu_statistics = new OnuStatistics[num_onus];
+	handled_events = 0;
+	allocated_bytes = -1;
+	warmup_detection = false;
+	truncation_time = Double.NaN;
+	statistics_start_time = 0.0;
+    }
+
+    /**
+     * Returns the histogram of the delays of all the packets sent by all the ONUs.
+     *
+     * @return the histogram of the packet delays of the whole EPON
+     */
+    public DelayHistogram getDelayHistogram() {
+	DelayHistogram histogram = new DelayHistogram();
+	for (int id = 0; id < onu_statistics.length; id++) {
+	    histogram.merge(onu_statistics[id].delay_histogram);
+	}
+	return histogram;
+    }
+
+    /**
+     * Prints on the specified output stream the warm-up truncation point, if detected, and a summary of each ONU statistics followed by the packet delay percentiles of the whole EPON.
+     *
+     * @param out the output stream
+     */
+    public void printStatistics(PrintStream out) {
+	if (warmup_detection) {
+	    out.format("WARM-UP STATISTICS %n");
+	    if (Double.isNaN(truncation_time)) {
+		out.format("WARM-UP Truncation point (MSER-5): not detected %n");
+	    } else {
+		out.format("WARM-UP Truncation point (MSER-5): %.9f %n", truncation_time);
+		out.format("WARM-UP Statistics reset at: %.9f %n", statistics_start_time);
+	    }
+	}
+	for (int id = 0; id < onu_statistics.length; id++) {
+	    onu_statistics[id].print(out);
+	}
+	DelayHistogram histogram = getDelayHistogram();
+	if (histogram.getTotalCount() > 0) {
+	    out.format("EPON STATISTICS %n");
+	    out.format("EPON Packets sent: %d %n", histogram.getTotalCount());
+	    for (double p : OnuStatistics.PERCENTILES) {
+		out.format("EPON Packet delay percentile %s: %.9f %n", OnuStatistics.formatPercentile(p), histogram.getPercentile(p));
+	    }
+	}
+    }
+
+    /**
+     * Prints on the specified output stream the number of events handled and the amount of memory allocated per event.
+     *
+     * @param out the output stream
+     */
+    public void printAllocationStatistics(PrintStream out) {
+	out.format("Events handled: %d %n", handled_events);
+	if (allocated_bytes >= 0 && handled_events > 0) {
+	    out.format("Bytes allocated per event: %.3f %n", (double) allocated_bytes / handled_events);
+	}
+    }
+}
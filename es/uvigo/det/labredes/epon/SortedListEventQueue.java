@@ -0,0 +1,57 @@
+package es.uvigo.det.labredes.epon;
+
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * This class implements an event queue as a list sorted by event time.
+ * Each insertion scans the list from its head, so this queue is only appropriate for a small number of pending events.
+ * Events are ordered as in previous versions of the simulator: a new event is inserted after all the pending events that are earlier or simultaneous (see Event.compareTo), unless it was given a reserved sequence number lower than theirs.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class SortedListEventQueue implements EventQueue {
+    private List<Event> list;
+
+    /**
+     * Creates a new sorted list of events.
+     */
+    public SortedListEventQueue() {
+	list = new ArrayList<Event>();
+    }
+
+    public boolean add(Event event) {
+	int i = 0;
+	int list_size = list.size();
+	int order;
+	while (i < list_size && ((order = event.compareTo(list.get(i))) < 0 || (order == 0 && list.get(i).sequence < event.sequence))) {
+	    i++;
+	}
+	if (i == list_size) {
+	    return list.add(event);
+	}
+	list.add(i, event);
+	return true;
+    }
+
+    public Event peek() {
+	return list.isEmpty() ? null : list.get(0);
+    }
+
+    public Event poll() {
+	return list.isEmpty() ? null : list.remove(0);
+    }
+
+    public boolean remove(Event event) {
+	return list.remove(event);
+    }
+
+    public int size() {
+	return list.size();
+    }
+
+    public Event[] toArray() {
+	return list.toArray(new Event[list.size()]);
+    }
+}
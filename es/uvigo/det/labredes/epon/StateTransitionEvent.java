@@ -1,5 +1,7 @@
 package es.uvigo.det.labredes.epon;
 
+import java.io.PrintStream;
+
 /**
  * This class extends Event class to represent state transitions at the ONUs.
  *
@@ -26,9 +28,49 @@ public class StateTransitionEvent extends Event<ONU> {
     }
 
     /**
-     * Prints on standard output a message describing this state transition event.
+     * Returns the name of the method that usually handles this event.
+     *
+     * @return "handleStateTransitionEvent"
+     */
+    protected String getUsualHandlerMethod() {
+	return "handleStateTransitionEvent";
+    }
+
+    /**
+     * Invokes the method that handles this event on the corresponding object.
+     */
+    public void dispatch() {
+	if (usual_handler) {
+	    handler.handleStateTransitionEvent(this);
+	} else {
+	    super.dispatch();
+	}
+    }
+
+    /**
+     * Prints on the specified output stream a message describing this state transition event.
+     *
+     * @param out the output stream
+     */
+    public void printEvent(PrintStream out) {
+	out.format("%.9f ONU %d StateTransitionEvent %s %n", time, handler.onu_id, new_state);
+    }
+
+    /**
+     * Writes on the specified trace a record describing this state transition event.
+     *
+     * @param trace the trace writer
+     */
+    public void traceEvent(TraceWriter trace) {
+	trace.writeOnuEvent(TraceWriter.STATE_TRANSITION, time, handler.onu_id, handler.getState(), 0, 0);
+    }
+
+    /**
+     * Returns the type of this state transition event.
+     *
+     * @return TraceWriter.STATE_TRANSITION
      */
-    public void printEvent() {
-	System.out.format("%.9f ONU %d StateTransitionEvent %s %n", time, handler.onu_id, new_state);
+    public int getType() {
+	return TraceWriter.STATE_TRANSITION;
     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * This class converts a binary trace written by TraceWriter into the text printed by the simulator in verbose mode.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public final class TraceDecoder {
+    private InputStream in;
+    private long previous_time_bits;
+
+    private TraceDecoder(InputStream input) {
+	in = input;
+	previous_time_bits = 0;
+    }
+
+    /**
+     * Reads a variable-length quantity written by TraceWriter.
+     */
+    private long readVarLong() throws IOException {
+	long value = 0;
+	for (int shift = 0; shift < 64; shift += 7) {
+	    int b = in.read();
+	    if (b < 0) {
+		throw new EOFException();
+	    }
+	    value |= (long) (b & 0x7F) << shift;
+	    if ((b & 0x80) == 0) {
+		return value;
+	    }
+	}
+	throw new IOException("Invalid variable-length quantity");
+    }
+
+    /**
+     * Reads an event time written by TraceWriter.
+     */
+    private double readTime() throws IOException {
+	long zigzag = readVarLong();
+	previous_time_bits += (zigzag >>> 1) ^ -(zigzag & 1);
+	return Double.longBitsToDouble(previous_time_bits);
+    }
+
+    /**
+     * Prints on the specified output stream a line for each record of the trace.
+     */
+    private void decodeRecords(PrintStream out) throws IOException {
+	OnuState[] states = OnuState.values();
+	int type;
+	while ((type = in.read()) >= 0) {
+	    if (type == TraceWriter.GATE_MESSAGES) {
+		out.format("%.9f OLT GateMessagesEvent%n", readTime());
+	    } else if (type == TraceWriter.REPORT) {
+		int onu_id = (int) readVarLong();
+		int qsize = (int) readVarLong();
+		int tsize = (int) readVarLong();
+		out.println("REPORT ONU " + onu_id + " qsize=" + qsize + " tsize=" + tsize);
+	    } else if (type == TraceWriter.OVERALL_REPORT) {
+		int qsize = (int) readVarLong();
+		int tsize = (int) readVarLong();
+		int active = (int) readVarLong();
+		out.println("OVERALL ONUs qsize=" + qsize + " tsize=" + tsize + " active=" + active);
+	    } else if (type < TraceWriter.GATE_MESSAGES) {
+		double time = readTime();
+		int onu_id = (int) readVarLong();
+		int state = in.read();
+		if (state < 0 || state >= states.length) {
+		    throw new IOException("Invalid ONU state " + state);
+		}
+		if (TraceWriter.hasSizes(type)) {
+		    int size = (int) readVarLong();
+		    int qsize = (int) readVarLong();
+		    out.format("%.9f ONU %d %s %d %d %n", time, onu_id, TraceWriter.TYPE_NAMES[type], size, qsize);
+		} else if (type == TraceWriter.STATE_TRANSITION) {
+		    out.format("%.9f ONU %d StateTransitionEvent %s %n", time, onu_id, states[state]);
+		} else {
+		    out.format("%.9f ONU %d TrafficReportEvent%n", time, onu_id);
+		}
+	    } else {
+		throw new IOException("Invalid record type " + type);
+	    }
+	}
+    }
+
+    /**
+     * Prints on the specified output stream the text corresponding to the specified trace file.
+     *
+     * @param file the trace file
+     * @param out  the output stream
+     * @throws SimulationException if the trace file cannot be read or is not valid
+     */
+    public static void decode(String file, PrintStream out) {
+	InputStream in;
+	try {
+	    in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+	} catch (IOException e) {
+	    throw new SimulationException("Invalid trace file: File not found!");
+	}
+	try {
+	    byte[] magic = new byte[TraceWriter.MAGIC.length];
+	    if (in.read(magic) != magic.length || !Arrays.equals(magic, TraceWriter.MAGIC)) {
+		throw new SimulationException("Invalid trace file: Unknown format!");
+	    }
+	    new TraceDecoder(in).decodeRecords(out);
+	} catch (EOFException e) {
+	    throw new SimulationException("Invalid trace file: Truncated record!");
+	} catch (IOException e) {
+	    throw new SimulationException("Invalid trace file: " + e.getMessage());
+	} finally {
+	    try {
+		in.close();
+	    } catch (IOException e) {
+	    }
+	}
+    }
+
+    /**
+     * Main method.
+     * Usage: java TraceDecoder trace_file
+     */
+    public static void main(String[] args) {
+	try {
+	    if (args.length != 1) {
+		throw new SimulationException("Usage: java TraceDecoder trace_file");
+	    }
+	    decode(args[0], System.out);
+	} catch (SimulationException e) {
+	    EponSimulator.printError(e.getMessage());
+	    System.exit(1);
+	}
+    }
+}
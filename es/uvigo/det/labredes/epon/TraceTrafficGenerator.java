@@ -0,0 +1,266 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class extends TrafficGenerator class to replay the packet arrivals recorded in a trace file.
+ * A trace file is either a sequence of records made of the arrival timestamp (in seconds, as a big-endian double) and the packet size (in bytes, as a big-endian int), or a pcap capture, in which case the original length of each captured frame is used as the packet size.
+ * The file is memory-mapped in segments of 1 GB, so traces of several GB are replayed without loading them into the heap and without creating any object per packet.
+ * Arrival times are relative to the first record and can be scaled. The trace can be replayed in a loop, each repetition starting one mean interarrival time after the end of the previous one.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class TraceTrafficGenerator extends TrafficGenerator {
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    /**
+     * Bytes mapped after the end of each segment, so that a record header starting in a segment can always be read from it.
+     */
+    private static final long SEGMENT_OVERLAP = 64;
+
+    private static final int RECORD_SIZE = 12;
+    private static final int PCAP_HEADER_SIZE = 24;
+    private static final int PCAP_RECORD_HEADER_SIZE = 16;
+    private static final int PCAP_MAGIC = 0xA1B2C3D4;
+    private static final int PCAP_NANOSECOND_MAGIC = 0xA1B23C4D;
+
+    private MappedByteBuffer[] segments;
+    private boolean pcap;
+    private double pcap_resolution;
+    private long first_offset;
+    private long file_size;
+
+    private double time_scale;
+    private boolean loop;
+    private double first_timestamp;
+    private double loop_period;
+
+    /**
+     * Offset of the next record to be read.
+     */
+    private long offset;
+    /**
+     * Time added to the timestamps of the current repetition of the trace (in seconds).
+     */
+    private double loop_offset;
+    /**
+     * Scaled arrival time of the last packet read (in seconds).
+     */
+    private double last_time;
+    /**
+     * Size of the last packet read (in bits).
+     */
+    private int arrival_size;
+    /**
+     * Timestamp and size of the record read by readRecord.
+     */
+    private double record_timestamp;
+    private int record_size;
+
+    /**
+     * Creates a new trace-driven traffic generator.
+     * The whole trace is scanned once to check it and to obtain its mean packet size and bit rate.
+     *
+     * @param file  the trace file
+     * @param scale factor applied to the arrival times of the trace (greater than 1 to slow the traffic down)
+     * @param loop  if true the trace is replayed in a loop
+     * @throws SimulationException if the trace file cannot be read or is not valid
+     */
+    public TraceTrafficGenerator(String file, double scale, boolean loop) {
+	super(0, 1);
+	if (!(scale > 0)) {
+	    throw new SimulationException("Invalid trace time scale: " + scale);
+	}
+	time_scale = scale;
+	this.loop = loop;
+	mapFile(file);
+
+	// Trace scanning
+	long num_packets = 0;
+	long num_bytes = 0;
+	double last_timestamp = 0;
+	offset = first_offset;
+	while (readRecord()) {
+	    if (num_packets == 0) {
+		first_timestamp = record_timestamp;
+	    } else if (!(record_timestamp >= last_timestamp)) {
+		throw new SimulationException("Invalid trace file: Timestamps are not in order in " + file + "!");
+	    }
+	    if (record_size <= 0) {
+		throw new SimulationException("Invalid trace file: Invalid packet size in " + file + "!");
+	    }
+	    last_timestamp = record_timestamp;
+	    num_packets++;
+	    num_bytes += record_size;
+	}
+	if (num_packets == 0) {
+	    throw new SimulationException("Invalid trace file: No packets in " + file + "!");
+	}
+	double duration = (last_timestamp - first_timestamp) * time_scale;
+	if (loop) {
+	    if (!(duration > 0)) {
+		throw new SimulationException("Invalid trace file: " + file + " is too short to be looped!");
+	    }
+	    loop_period = duration * num_packets / (num_packets - 1);
+	}
+	setPacketSize((int) Math.round(8.0 * num_bytes / num_packets));
+	if (duration > 0) {
+	    setRate(Math.round(8.0 * num_bytes / duration));
+	}
+
+	offset = first_offset;
+	loop_offset = 0;
+	last_time = 0;
+	arrival_size = packet_size;
+    }
+
+    /**
+     * Maps the specified trace file and detects its format.
+     */
+    private void mapFile(String file) {
+	RandomAccessFile raf;
+	try {
+	    raf = new RandomAccessFile(file, "r");
+	} catch (IOException e) {
+	    throw new SimulationException("Invalid trace file: " + file + " not found!");
+	}
+	try {
+	    FileChannel channel = raf.getChannel();
+	    file_size = channel.size();
+	    segments = new MappedByteBuffer[(int) ((file_size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+	    for (int i = 0; i < segments.length; i++) {
+		long start = (long) i << SEGMENT_BITS;
+		segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE + SEGMENT_OVERLAP, file_size - start));
+	    }
+	} catch (IOException e) {
+	    throw new SimulationException("Invalid trace file: " + e.getMessage());
+	} finally {
+	    try {
+		raf.close();
+	    } catch (IOException e) {
+	    }
+	}
+
+	pcap = false;
+	first_offset = 0;
+	if (file_size >= PCAP_HEADER_SIZE) {
+	    int magic = segments[0].getInt(0);
+	    ByteOrder order = null;
+	    if (magic == PCAP_MAGIC || magic == PCAP_NANOSECOND_MAGIC) {
+		order = ByteOrder.BIG_ENDIAN;
+	    } else if (Integer.reverseBytes(magic) == PCAP_MAGIC || Integer.reverseBytes(magic) == PCAP_NANOSECOND_MAGIC) {
+		order = ByteOrder.LITTLE_ENDIAN;
+		magic = Integer.reverseBytes(magic);
+	    }
+	    if (order != null) {
+		for (MappedByteBuffer segment : segments) {
+		    segment.order(order);
+		}
+		pcap = true;
+		pcap_resolution = magic == PCAP_MAGIC ? 1e-6 : 1e-9;
+		first_offset = PCAP_HEADER_SIZE;
+	    }
+	}
+	if (!pcap && file_size % RECORD_SIZE != 0) {
+	    throw new SimulationException("Invalid trace file: Truncated record in " + file + "!");
+	}
+    }
+
+    /**
+     * Reads the record at the current offset into record_timestamp and record_size and advances the offset, or returns false at the end of the trace.
+     */
+    private boolean readRecord() {
+	if (offset >= file_size) {
+	    return false;
+	}
+	MappedByteBuffer segment = segments[(int) (offset >>> SEGMENT_BITS)];
+	int position = (int) (offset & (SEGMENT_SIZE - 1));
+	if (pcap) {
+	    if (offset + PCAP_RECORD_HEADER_SIZE > file_size) {
+		throw new SimulationException("Invalid trace file: Truncated pcap record!");
+	    }
+	    record_timestamp = (segment.getInt(position) & 0xFFFFFFFFL) + (segment.getInt(position + 4) & 0xFFFFFFFFL) * pcap_resolution;
+	    record_size = segment.getInt(position + 12);
+	    offset += PCAP_RECORD_HEADER_SIZE + (segment.getInt(position + 8) & 0xFFFFFFFFL);
+	} else {
+	    record_timestamp = segment.getDouble(position);
+	    record_size = segment.getInt(position + 8);
+	    offset += RECORD_SIZE;
+	}
+	return true;
+    }
+
+    /**
+     * Returns the instant at which the next packet arrives.
+     *
+     * @return instant at which the next packet arrives (in seconds) or positive infinity if the trace has ended
+     */
+    public double getNextArrival() {
+	if (offset >= file_size && !loop) {
+	    return Double.POSITIVE_INFINITY;
+	}
+	return super.getNextArrival();
+    }
+
+    /**
+     * Returns the size of the packet that arrives at the instant returned by the last call to getNextArrival.
+     *
+     * @return size of the arriving packet (in bits)
+     */
+    public int getArrivalSize() {
+	return arrival_size;
+    }
+
+    /**
+     * Writes the state of this trace-driven traffic generator on the specified checkpoint stream.
+     *
+     * @param out the checkpoint stream
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+	super.writeState(out);
+	out.writeLong(offset);
+	out.writeDouble(loop_offset);
+	out.writeDouble(last_time);
+	out.writeInt(arrival_size);
+    }
+
+    /**
+     * Restores the state of this trace-driven traffic generator from the specified checkpoint stream.
+     *
+     * @param in the checkpoint stream
+     * @throws IOException if the state cannot be read
+     */
+    public void readState(DataInputStream in) throws IOException {
+	super.readState(in);
+	offset = in.readLong();
+	loop_offset = in.readDouble();
+	last_time = in.readDouble();
+	arrival_size = in.readInt();
+    }
+
+    /**
+     * Returns the time elapsed between the last packet arrival and the next one.
+     *
+     * @return time between consecutive packet arrivals (in seconds)
+     */
+    protected double getNextInterarrivalTime() {
+	if (!readRecord()) {
+	    offset = first_offset;
+	    loop_offset += loop_period;
+	    readRecord();
+	}
+	arrival_size = 8 * record_size;
+	double time = (record_timestamp - first_timestamp) * time_scale + loop_offset;
+	double interarrival_time = time - last_time;
+	last_time = time;
+	return interarrival_time;
+    }
+}
@@ -0,0 +1,332 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class writes a compact binary trace of the simulated events.
+ * Each record starts with its type. Event records follow with the difference between the bits of the event time and those of the previous event time and, for ONU events, with the ONU identifier, the ONU state and the event size and queue size if the event has them.
+ * All the integers are encoded as variable-length quantities, so most records take about a dozen bytes.
+ * Records are written into one of two buffers while a background thread writes the other one to the trace file.
+ * Records can be filtered by ONU identifier and by type. TraceDecoder converts a trace into the verbose text format.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class TraceWriter {
+    /**
+     * Bytes at the beginning of every trace file.
+     */
+    public static final byte[] MAGIC = {'E', 'P', 'O', 'N', 'T', 'R', 'C', '1'};
+
+    /* Record types */
+    public static final int PACKET_ARRIVAL = 0;
+    public static final int PACKET_DROP = 1;
+    public static final int PACKET_TRANSMISSION = 2;
+    public static final int TRANSMISSION_SLOT = 3;
+    public static final int TRAFFIC_REPORT = 4;
+    public static final int STATE_TRANSITION = 5;
+    public static final int GATE_MESSAGES = 6;
+    public static final int REPORT = 7;
+    public static final int OVERALL_REPORT = 8;
+
+    /**
+     * Names of the record types that can be used in filters, indexed by record type (overall reports are filtered as reports).
+     */
+    public static final String[] TYPE_NAMES = {"PacketArrivalEvent", "PacketDropEvent", "PacketTransmissionEvent", "TransmissionSlotEvent", "TrafficReportEvent", "StateTransitionEvent", "GateMessagesEvent", "Report"};
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAXIMUM_RECORD_SIZE = 64;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private BlockingQueue<ByteBuffer> free_buffers;
+    private BlockingQueue<ByteBuffer> full_buffers;
+    private Thread writer;
+    private volatile IOException write_error;
+
+    private int type_mask;
+    private boolean[] onu_mask;
+    private long previous_time_bits;
+
+    /**
+     * Creates a new trace writer on the specified file.
+     *
+     * @param file   the trace file
+     * @param onus   comma-separated list of ONU identifiers or ranges (e.g. 0,4-7) whose events are traced, or an empty string to trace all the ONUs
+     * @param events comma-separated list of record type names (see TYPE_NAMES) to be traced, or an empty string to trace all the records
+     * @throws SimulationException if the filters are invalid or the file cannot be created
+     */
+    public TraceWriter(String file, String onus, String events) {
+	type_mask = parseTypes(events);
+	onu_mask = parseOnus(onus);
+	previous_time_bits = 0;
+	try {
+	    channel = new FileOutputStream(file).getChannel();
+	} catch (IOException e) {
+	    throw new SimulationException("Invalid trace file: " + e.getMessage());
+	}
+
+	buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	buffer.put(MAGIC);
+	free_buffers = new ArrayBlockingQueue<ByteBuffer>(2);
+	full_buffers = new ArrayBlockingQueue<ByteBuffer>(2);
+	free_buffers.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+	writer = new Thread(new Runnable() {
+		public void run() {
+		    writeBuffers();
+		}
+	    }, "epon-trace");
+	writer.setDaemon(true);
+	writer.start();
+    }
+
+    /**
+     * Returns the bit mask of the record types contained in the specified list of names.
+     */
+    private static int parseTypes(String events) {
+	if (events.isEmpty()) {
+	    return ~0;
+	}
+	int mask = 0;
+	for (String name : events.split(",")) {
+	    int type = 0;
+	    while (type < TYPE_NAMES.length && !TYPE_NAMES[type].equals(name.trim())) {
+		type++;
+	    }
+	    if (type == TYPE_NAMES.length) {
+		throw new SimulationException("Invalid trace event type: " + name);
+	    }
+	    mask |= 1 << type;
+	    if (type == REPORT) {
+		mask |= 1 << OVERALL_REPORT;
+	    }
+	}
+	return mask;
+    }
+
+    /**
+     * Returns the ONUs contained in the specified list of identifiers and ranges, or null if the list is empty.
+     */
+    private static boolean[] parseOnus(String onus) {
+	if (onus.isEmpty()) {
+	    return null;
+	}
+	boolean[] mask = new boolean[0];
+	try {
+	    for (String range : onus.split(",")) {
+		String[] bounds = range.trim().split("-");
+		int first = Integer.parseInt(bounds[0]);
+		int last = bounds.length > 1 ? Integer.parseInt(bounds[1]) : first;
+		if (first < 0 || last < first || bounds.length > 2) {
+		    throw new NumberFormatException();
+		}
+		if (last >= mask.length) {
+		    mask = Arrays.copyOf(mask, last + 1);
+		}
+		for (int id = first; id <= last; id++) {
+		    mask[id] = true;
+		}
+	    }
+	} catch (NumberFormatException e) {
+	    throw new SimulationException("Invalid trace ONUs: " + onus);
+	}
+	return mask;
+    }
+
+    /**
+     * Writes the full buffers to the trace file until an empty buffer is received.
+     */
+    private void writeBuffers() {
+	try {
+	    while (true) {
+		ByteBuffer full = full_buffers.take();
+		if (!full.hasRemaining()) {
+		    return;
+		}
+		try {
+		    while (full.hasRemaining()) {
+			channel.write(full);
+		    }
+		} catch (IOException e) {
+		    write_error = e;
+		}
+		full.clear();
+		free_buffers.put(full);
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    /**
+     * Hands the current buffer to the background thread and continues with the other one.
+     */
+    private void swapBuffers() {
+	if (write_error != null) {
+	    throw new SimulationException("Error writing the trace file: " + write_error.getMessage());
+	}
+	buffer.flip();
+	try {
+	    full_buffers.put(buffer);
+	    buffer = free_buffers.take();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SimulationException("Trace writer interrupted!");
+	}
+    }
+
+    /**
+     * Writes the specified value as a variable-length quantity (7 bits per byte, least significant first).
+     */
+    private void putVarLong(long value) {
+	while ((value & ~0x7FL) != 0) {
+	    buffer.put((byte) ((value & 0x7F) | 0x80));
+	    value >>>= 7;
+	}
+	buffer.put((byte) value);
+    }
+
+    /**
+     * Writes the difference between the bits of the specified time and those of the previous time, zigzag encoded since it may be negative.
+     */
+    private void putTime(double time) {
+	long bits = Double.doubleToRawLongBits(time);
+	long delta = bits - previous_time_bits;
+	putVarLong((delta << 1) ^ (delta >> 63));
+	previous_time_bits = bits;
+    }
+
+    /**
+     * Returns true if the records of the specified type and ONU pass the filters.
+     */
+    private boolean isTraced(int type, int onu_id) {
+	return (type_mask & (1 << type)) != 0 && (onu_mask == null || (onu_id < onu_mask.length && onu_mask[onu_id]));
+    }
+
+    /**
+     * Returns true if the record type has a size and a queue size.
+     *
+     * @param type the record type
+     * @return true if the record type has a size and a queue size
+     */
+    public static boolean hasSizes(int type) {
+	return type <= TRANSMISSION_SLOT;
+    }
+
+    /**
+     * Writes a record describing the specified ONU event.
+     *
+     * @param type   the record type
+     * @param time   the event time
+     * @param onu_id the ONU identifier
+     * @param state  the ONU state
+     * @param size   the packet size or the data amount of the event (ignored if the type has no sizes)
+     * @param qsize  the size of the ONU upstream queue (ignored if the type has no sizes)
+     */
+    public void writeOnuEvent(int type, double time, int onu_id, OnuState state, int size, int qsize) {
+	if (!isTraced(type, onu_id)) {
+	    return;
+	}
+	if (buffer.remaining() < MAXIMUM_RECORD_SIZE) {
+	    swapBuffers();
+	}
+	buffer.put((byte) type);
+	putTime(time);
+	putVarLong(onu_id);
+	buffer.put((byte) state.ordinal());
+	if (hasSizes(type)) {
+	    putVarLong(size);
+	    putVarLong(qsize);
+	}
+    }
+
+    /**
+     * Writes a record describing a gate messages event.
+     *
+     * @param time the event time
+     */
+    public void writeGateMessages(double time) {
+	if ((type_mask & (1 << GATE_MESSAGES)) == 0) {
+	    return;
+	}
+	if (buffer.remaining() < MAXIMUM_RECORD_SIZE) {
+	    swapBuffers();
+	}
+	buffer.put((byte) GATE_MESSAGES);
+	putTime(time);
+    }
+
+    /**
+     * Writes a record describing a traffic report.
+     *
+     * @param onu_id the ONU identifier
+     * @param qsize  the amount of data stored in the upstream queue of the ONU
+     * @param tsize  the amount of data that the ONU can transmit in the next DBA cycle
+     */
+    public void writeReport(int onu_id, int qsize, int tsize) {
+	if (!isTraced(REPORT, onu_id)) {
+	    return;
+	}
+	if (buffer.remaining() < MAXIMUM_RECORD_SIZE) {
+	    swapBuffers();
+	}
+	buffer.put((byte) REPORT);
+	putVarLong(onu_id);
+	putVarLong(qsize);
+	putVarLong(tsize);
+    }
+
+    /**
+     * Writes a record describing the overall traffic reported by all the ONUs.
+     *
+     * @param qsize  the overall queue size
+     * @param tsize  the overall amount of data to transmit
+     * @param active the number of active ONUs
+     */
+    public void writeOverallReport(int qsize, int tsize, int active) {
+	if ((type_mask & (1 << OVERALL_REPORT)) == 0) {
+	    return;
+	}
+	if (buffer.remaining() < MAXIMUM_RECORD_SIZE) {
+	    swapBuffers();
+	}
+	buffer.put((byte) OVERALL_REPORT);
+	putVarLong(qsize);
+	putVarLong(tsize);
+	putVarLong(active);
+    }
+
+    /**
+     * Writes the pending records and closes the trace file.
+     *
+     * @throws SimulationException if the trace file cannot be written
+     */
+    public void close() {
+	if (buffer.position() > 0) {
+	    swapBuffers();
+	}
+	try {
+	    full_buffers.put(ByteBuffer.allocate(0));
+	    writer.join();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SimulationException("Trace writer interrupted!");
+	}
+	try {
+	    channel.close();
+	} catch (IOException e) {
+	    if (write_error == null) {
+		write_error = e;
+	    }
+	}
+	if (write_error != null) {
+	    throw new SimulationException("Error writing the trace file: " + write_error.getMessage());
+	}
+    }
+}
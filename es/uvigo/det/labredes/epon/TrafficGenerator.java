@@ -1,5 +1,9 @@
 package es.uvigo.det.labredes.epon;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * This class simulates the arrival of a stream of packets.
  *
@@ -7,6 +11,11 @@ package es.uvigo.det.labredes.epon;
  * @version 1.0
  */
 abstract public class TrafficGenerator {
+    /**
+     * Number of random variates generated at once by the random traffic generators.
+     */
+    protected static final int BATCH_SIZE = 256;
+
     /**
      * The bit rate (in b/s).
      */
@@ -23,6 +32,14 @@ abstract public class TrafficGenerator {
      * The instant at which the last packet arrived (in seconds).
      */
     public double arrival_time;
+    /**
+     * The tick at which the last packet arrived (if the simulation keeps event times as ticks).
+     */
+    public long arrival_ticks;
+    /**
+     * If true arrival times are accumulated as an integer number of ticks.
+     */
+    private boolean ticks;
 
     /**
      * Creates a new random traffic generator.
@@ -35,6 +52,8 @@ abstract public class TrafficGenerator {
 	packet_size = psize;
 	packet_rate = (double) bit_rate / packet_size;
 	arrival_time = 0.0;
+	arrival_ticks = 0;
+	ticks = false;
     }
 
     /**
@@ -57,10 +76,111 @@ abstract public class TrafficGenerator {
 	packet_rate = (double) bit_rate / packet_size;
     }
 
+    /**
+     * Sets whether arrival times are accumulated as an integer number of ticks (see Event.TICKS_PER_SECOND) instead of floating point values.
+     *
+     * @param tick_clock if true arrival times are accumulated as ticks
+     */
+    public void setTicks(boolean tick_clock) {
+	ticks = tick_clock;
+    }
+
     /**
      * Returns the instant at which the next packet arrives.
      *
      * @return instant at which the next packet arrives (in seconds)
      */
-    abstract public double getNextArrival();
+    public double getNextArrival() {
+	double interarrival_time = getNextInterarrivalTime();
+	if (ticks) {
+	    arrival_ticks += Event.toTicks(interarrival_time);
+	    arrival_time = Event.toTime(arrival_ticks);
+	} else {
+	    arrival_time += interarrival_time;
+	}
+	return arrival_time;
+    }
+
+    /**
+     * Stores in the specified array the instants at which the next packets arrive, as successive calls to getNextArrival would do.
+     * The interarrival times are first copied in blocks (see fillInterarrivalTimes) and then accumulated, so both loops can be vectorized by the JIT compiler.
+     *
+     * @param out array in which arrival instants are stored (in seconds)
+     * @param n   number of arrivals to be generated
+     */
+    public void fillNextArrivals(double[] out, int n) {
+	int i = 0;
+	while (i < n) {
+	    i += fillInterarrivalTimes(out, i, n - i);
+	}
+	if (ticks) {
+	    for (i = 0; i < n; i++) {
+		arrival_ticks += Event.toTicks(out[i]);
+		out[i] = Event.toTime(arrival_ticks);
+	    }
+	} else {
+	    for (i = 0; i < n; i++) {
+		arrival_time += out[i];
+		out[i] = arrival_time;
+	    }
+	}
+	if (n > 0) {
+	    arrival_time = out[n - 1];
+	}
+    }
+
+    /**
+     * Stores in the specified array, from the specified position, the time elapsed between the next packet arrivals, and returns the number of stored values.
+     * This implementation stores the specified number of values calling getNextInterarrivalTime. Random traffic generators override it to copy the values left in their current batch of variates.
+     *
+     * @param out    array in which interarrival times are stored (in seconds)
+     * @param offset position of the first value stored
+     * @param n      maximum number of values to be stored
+     * @return the number of stored values (at least 1 if n is positive)
+     */
+    protected int fillInterarrivalTimes(double[] out, int offset, int n) {
+	for (int i = 0; i < n; i++) {
+	    out[offset + i] = getNextInterarrivalTime();
+	}
+	return n;
+    }
+
+    /**
+     * Returns the size of the packet that arrives at the instant returned by the last call to getNextArrival.
+     *
+     * @return size of the arriving packet (in bits)
+     */
+    public int getArrivalSize() {
+	return packet_size;
+    }
+
+    /**
+     * Writes the state of this traffic generator on the specified checkpoint stream (see Simulation.writeCheckpoint).
+     *
+     * @param out the checkpoint stream
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+	out.writeDouble(arrival_time);
+	out.writeLong(arrival_ticks);
+    }
+
+    /**
+     * Restores the state of this traffic generator from the specified checkpoint stream.
+     * Random traffic generators also restore the state of their random number stream, which must be of the same algorithm as the saved one.
+     *
+     * @param in the checkpoint stream
+     * @throws IOException if the state cannot be read
+     */
+    public void readState(DataInputStream in) throws IOException {
+	arrival_time = in.readDouble();
+	arrival_ticks = in.readLong();
+    }
+
+    /**
+     * Returns the time elapsed between the last packet arrival and the next one.
+     *
+     * @return time between consecutive packet arrivals (in seconds)
+     */
+    abstract protected double getNextInterarrivalTime();
 }
@@ -1,5 +1,7 @@
 package es.uvigo.det.labredes.epon;
 
+import java.io.PrintStream;
+
 /**
  * This class extends Event class to represent the transmission of traffic reports from the ONUs to the OLT.
  *
@@ -19,9 +21,49 @@ public class TrafficReportEvent extends Event<ONU> {
     }
 
     /**
-     * Prints on standard output a message describing this traffic report event.
+     * Returns the name of the method that usually handles this event.
+     *
+     * @return "handleTrafficReportEvent"
+     */
+    protected String getUsualHandlerMethod() {
+	return "handleTrafficReportEvent";
+    }
+
+    /**
+     * Invokes the method that handles this event on the corresponding object.
+     */
+    public void dispatch() {
+	if (usual_handler) {
+	    handler.handleTrafficReportEvent(this);
+	} else {
+	    super.dispatch();
+	}
+    }
+
+    /**
+     * Prints on the specified output stream a message describing this traffic report event.
+     *
+     * @param out the output stream
+     */
+    public void printEvent(PrintStream out) {
+	out.format("%.9f ONU %d TrafficReportEvent%n", time, handler.onu_id);
+    }
+
+    /**
+     * Writes on the specified trace a record describing this traffic report event.
+     *
+     * @param trace the trace writer
+     */
+    public void traceEvent(TraceWriter trace) {
+	trace.writeOnuEvent(TraceWriter.TRAFFIC_REPORT, time, handler.onu_id, handler.getState(), 0, 0);
+    }
+
+    /**
+     * Returns the type of this traffic report event.
+     *
+     * @return TraceWriter.TRAFFIC_REPORT
      */
-    public void printEvent() {
-	System.out.format("%.9f ONU %d TrafficReportEvent%n", time, handler.onu_id);
+    public int getType() {
+	return TraceWriter.TRAFFIC_REPORT;
     }
 }
@@ -1,5 +1,7 @@
 package es.uvigo.det.labredes.epon;
 
+import java.io.PrintStream;
+
 /**
  * This class extends Event class to represent the beginning of the transmission slots from the ONUs to the OLT.
  *
@@ -26,9 +28,49 @@ public class TransmissionSlotEvent extends Event<ONU> {
     }
 
     /**
-     * Prints on standard output a message describing this transmission slot event.
+     * Returns the name of the method that usually handles this event.
+     *
+     * @return "handleTransmissionSlotEvent"
+     */
+    protected String getUsualHandlerMethod() {
+	return "handleTransmissionSlotEvent";
+    }
+
+    /**
+     * Invokes the method that handles this event on the corresponding object.
+     */
+    public void dispatch() {
+	if (usual_handler) {
+	    handler.handleTransmissionSlotEvent(this);
+	} else {
+	    super.dispatch();
+	}
+    }
+
+    /**
+     * Prints on the specified output stream a message describing this transmission slot event.
+     *
+     * @param out the output stream
+     */
+    public void printEvent(PrintStream out) {
+	out.format("%.9f ONU %d TransmissionSlotEvent %d %d %n", time, handler.onu_id, data_amount, handler.getQueueSize());
+    }
+
+    /**
+     * Writes on the specified trace a record describing this transmission slot event.
+     *
+     * @param trace the trace writer
+     */
+    public void traceEvent(TraceWriter trace) {
+	trace.writeOnuEvent(TraceWriter.TRANSMISSION_SLOT, time, handler.onu_id, handler.getState(), data_amount, handler.getQueueSize());
+    }
+
+    /**
+     * Returns the type of this transmission slot event.
+     *
+     * @return TraceWriter.TRANSMISSION_SLOT
      */
-    public void printEvent() {
-	System.out.format("%.9f ONU %d TransmissionSlotEvent %d %d %n", time, handler.onu_id, data_amount, handler.getQueueSize());
+    public int getType() {
+	return TraceWriter.TRANSMISSION_SLOT;
     }
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This class implements the MSER-5 warm-up detector for a series of observations taken once per DBA cycle.
+ * Each observation is the mean of the values accumulated during its cycle. Observations are grouped in batches of five, and the truncation point is the number of leading batches whose deletion minimizes the variance of the mean of the remaining batches.
+ * The truncation point is accepted once it falls in the first half of the series, since a minimum in the second half means that the series has not reached the steady state yet.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public class WarmupDetector {
+    /**
+     * Number of observations per batch.
+     */
+    public static final int BATCH_SIZE = 5;
+    /**
+     * Minimum number of batches before a truncation point is accepted.
+     */
+    public static final int MIN_BATCHES = 20;
+
+    /**
+     * The sum and number of values accumulated during the current cycle.
+     */
+    private double cycle_sum;
+    private long cycle_count;
+    /**
+     * The sum of the observations of the current batch, their number and the time of the first one.
+     */
+    private double batch_sum;
+    private int batch_count;
+    private double batch_time;
+    /**
+     * The mean and the time of the first observation of each complete batch.
+     */
+    private double[] batch_means;
+    private double[] batch_times;
+    private int num_batches;
+    /**
+     * The number of batches at which the truncation point is next computed.
+     */
+    private int next_check;
+    /**
+     * The accepted truncation point (in batches) or -1 if the series has not reached the steady state yet.
+     */
+    private int truncation_batch;
+
+    /**
+     * Creates a new warm-up detector.
+     */
+    public WarmupDetector() {
+	batch_means = new double[64];
+	batch_times = new double[64];
+	num_batches = 0;
+	next_check = MIN_BATCHES;
+	truncation_batch = -1;
+    }
+
+    /**
+     * Accumulates the specified values to the observation of the current cycle.
+     * This method is synchronized since the ONUs of different partitions accumulate their values concurrently in the parallel engine.
+     *
+     * @param sum   the sum of the values
+     * @param count the number of values
+     */
+    public synchronized void accumulate(double sum, long count) {
+	cycle_sum += sum;
+	cycle_count += count;
+    }
+
+    /**
+     * Ends the current cycle and adds its observation to the series, unless no value was accumulated during the cycle.
+     *
+     * @param time the end of the cycle (in seconds)
+     */
+    public synchronized void endCycle(double time) {
+	if (cycle_count == 0) {
+	    return;
+	}
+	double observation = cycle_sum / cycle_count;
+	cycle_sum = 0.0;
+	cycle_count = 0;
+
+	if (batch_count == 0) {
+	    batch_time = time;
+	}
+	batch_sum += observation;
+	if (++batch_count < BATCH_SIZE) {
+	    return;
+	}
+	if (num_batches == batch_means.length) {
+	    batch_means = Arrays.copyOf(batch_means, 2 * num_batches);
+	    batch_times = Arrays.copyOf(batch_times, 2 * num_batches);
+	}
+	batch_means[num_batches] = batch_sum / BATCH_SIZE;
+	batch_times[num_batches] = batch_time;
+	num_batches++;
+	batch_sum = 0.0;
+	batch_count = 0;
+
+	if (truncation_batch < 0 && num_batches >= next_check) {
+	    truncation_batch = computeTruncationPoint();
+	    next_check = num_batches + Math.max(1, num_batches / 32);
+	}
+    }
+
+    /**
+     * Returns true if a truncation point has been accepted.
+     *
+     * @return true if the series has reached the steady state
+     */
+    public synchronized boolean isTruncated() {
+	return truncation_batch >= 0;
+    }
+
+    /**
+     * Returns the time of the accepted truncation point.
+     *
+     * @return the time of the first observation after the truncation point (in seconds) or NaN if no truncation point has been accepted
+     */
+    public synchronized double getTruncationTime() {
+	return truncation_batch >= 0 ? batch_times[truncation_batch] : Double.NaN;
+    }
+
+    /**
+     * Writes the state of this detector on the specified checkpoint stream (see Simulation.writeCheckpoint).
+     *
+     * @param out the checkpoint stream
+     * @throws IOException if the state cannot be written
+     */
+    public synchronized void writeState(DataOutputStream out) throws IOException {
+	out.writeDouble(cycle_sum);
+	out.writeLong(cycle_count);
+	out.writeDouble(batch_sum);
+	out.writeInt(batch_count);
+	out.writeDouble(batch_time);
+	out.writeInt(num_batches);
+	for (int i = 0; i < num_batches; i++) {
+	    out.writeDouble(batch_means[i]);
+	    out.writeDouble(batch_times[i]);
+	}
+	out.writeInt(next_check);
+	out.writeInt(truncation_batch);
+    }
+
+    /**
+     * Replaces the state of this detector with the one read from the specified checkpoint stream.
+     *
+     * @param in the checkpoint stream
+     * @throws IOException if the state cannot be read
+     */
+    public synchronized void readState(DataInputStream in) throws IOException {
+	cycle_sum = in.readDouble();
+	cycle_count = in.readLong();
+	batch_sum = in.readDouble();
+	batch_count = in.readInt();
+	batch_time = in.readDouble();
+	num_batches = in.readInt();
+	batch_means = new double[Math.max(64, num_batches)];
+	batch_times = new double[batch_means.length];
+	for (int i = 0; i < num_batches; i++) {
+	    batch_means[i] = in.readDouble();
+	    batch_times[i] = in.readDouble();
+	}
+	next_check = in.readInt();
+	truncation_batch = in.readInt();
+    }
+
+    /**
+     * Returns the number of leading batches that minimizes the MSER statistic among the first half of the series, or -1 if the minimum is at the end of the first half.
+     */
+    private int computeTruncationPoint() {
+	// The variance of the remaining batches is updated with Welford's method while the truncation point moves backwards
+	double mean = 0.0;
+	double m2 = 0.0;
+	double best_mser = Double.POSITIVE_INFINITY;
+	int best_d = -1;
+	int max_d = num_batches / 2;
+	for (int d = num_batches - 1; d >= 0; d--) {
+	    int n = num_batches - d;
+	    double delta = batch_means[d] - mean;
+	    mean += delta / n;
+	    m2 += delta * (batch_means[d] - mean);
+	    if (d <= max_d) {
+		double mser = m2 / ((double) n * n);
+		if (mser <= best_mser) {
+		    best_mser = mser;
+		    best_d = d;
+		}
+	    }
+	}
+	return best_d < max_d ? best_d : -1;
+    }
+}
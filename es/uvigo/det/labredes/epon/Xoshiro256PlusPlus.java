@@ -0,0 +1,167 @@
+package es.uvigo.det.labredes.epon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.random.RandomGenerator;
+
+/**
+ * This class implements the xoshiro256++ random number generator with the same seeding, jumps and leaps as the Xoshiro256PlusPlus algorithm of java.util.random, so both generate the same values.
+ * Its state (four longs) can be saved in checkpoints, unlike that of the generators of the JDK.
+ *
+ * @author Sergio Herreria-Alonso 
+ * @version 1.0
+ */
+public final class Xoshiro256PlusPlus implements RandomGenerator {
+    /**
+     * Name of the algorithm.
+     */
+    public static final String NAME = "Xoshiro256PlusPlus";
+
+    private static final long GOLDEN_RATIO_64 = 0x9e3779b97f4a7c15L;
+    private static final long SILVER_RATIO_64 = 0x6a09e667f3bcc909L;
+    /**
+     * Polynomials that advance the generator 2^128 values (jump) and 2^192 values (leap).
+     */
+    private static final long[] JUMP_TABLE = {0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL, 0xa9582618e03fc9aaL, 0x39abdc4529b1661cL};
+    private static final long[] LEAP_TABLE = {0x76e15d3efefdcbbfL, 0xc5004e441c522fb3L, 0x77710069854ee241L, 0x39109bb02acbe635L};
+
+    private long x0, x1, x2, x3;
+
+    /**
+     * Creates a new generator with the specified state.
+     *
+     * @param s0 first word of the state
+     * @param s1 second word of the state
+     * @param s2 third word of the state
+     * @param s3 fourth word of the state
+     */
+    public Xoshiro256PlusPlus(long s0, long s1, long s2, long s3) {
+	x0 = s0;
+	x1 = s1;
+	x2 = s2;
+	x3 = s3;
+	if ((x0 | x1 | x2 | x3) == 0) {
+	    long v = 0;
+	    x0 = mixStafford13(v += GOLDEN_RATIO_64);
+	    x1 = (v += GOLDEN_RATIO_64);
+	    x2 = (v += GOLDEN_RATIO_64);
+	    x3 = (v += GOLDEN_RATIO_64);
+	}
+    }
+
+    /**
+     * Creates a new generator seeded with the specified value.
+     *
+     * @param seed initial seed
+     */
+    public Xoshiro256PlusPlus(long seed) {
+	this(mixStafford13(seed ^= SILVER_RATIO_64), mixStafford13(seed += GOLDEN_RATIO_64), mixStafford13(seed += GOLDEN_RATIO_64), mixStafford13(seed + GOLDEN_RATIO_64));
+    }
+
+    /**
+     * Returns the 64 bits of the Stafford variant 13 of the MurmurHash3 finalizer applied to the specified value.
+     *
+     * @param z the value to be mixed
+     * @return the mixed value
+     */
+    static long mixStafford13(long z) {
+	z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+	z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+	return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns a new generator with the same state as this generator.
+     *
+     * @return a copy of this generator
+     */
+    public Xoshiro256PlusPlus copy() {
+	return new Xoshiro256PlusPlus(x0, x1, x2, x3);
+    }
+
+    public long nextLong() {
+	long result = Long.rotateLeft(x0 + x3, 23) + x0;
+	long t = x1 << 17;
+	x2 ^= x0;
+	x3 ^= x1;
+	x1 ^= x2;
+	x0 ^= x3;
+	x2 ^= t;
+	x3 = Long.rotateLeft(x3, 45);
+	return result;
+    }
+
+    /**
+     * Advances this generator 2^128 values.
+     */
+    public void jump() {
+	jump(JUMP_TABLE);
+    }
+
+    /**
+     * Advances this generator 2^192 values.
+     */
+    public void leap() {
+	jump(LEAP_TABLE);
+    }
+
+    /**
+     * Returns a copy of this generator and then advances this generator 2^128 values.
+     *
+     * @return a copy of this generator before the jump
+     */
+    public Xoshiro256PlusPlus copyAndJump() {
+	Xoshiro256PlusPlus copy = copy();
+	jump();
+	return copy;
+    }
+
+    /**
+     * Advances this generator as many values as given by the specified jump polynomial.
+     */
+    private void jump(long[] table) {
+	long s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+	for (int i = 0; i < table.length; i++) {
+	    for (int b = 0; b < 64; b++) {
+		if ((table[i] & (1L << b)) != 0) {
+		    s0 ^= x0;
+		    s1 ^= x1;
+		    s2 ^= x2;
+		    s3 ^= x3;
+		}
+		nextLong();
+	    }
+	}
+	x0 = s0;
+	x1 = s1;
+	x2 = s2;
+	x3 = s3;
+    }
+
+    /**
+     * Writes the state of this generator on the specified checkpoint stream.
+     *
+     * @param out the checkpoint stream
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+	out.writeLong(x0);
+	out.writeLong(x1);
+	out.writeLong(x2);
+	out.writeLong(x3);
+    }
+
+    /**
+     * Restores the state of this generator from the specified checkpoint stream.
+     *
+     * @param in the checkpoint stream
+     * @throws IOException if the state cannot be read
+     */
+    public void readState(DataInputStream in) throws IOException {
+	x0 = in.readLong();
+	x1 = in.readLong();
+	x2 = in.readLong();
+	x3 = in.readLong();
+    }
+}